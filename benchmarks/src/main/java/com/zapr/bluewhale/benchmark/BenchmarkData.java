@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.benchmark;
+
+import com.zapr.bluewhale.cache.CacheSink;
+import com.zapr.bluewhale.cache.file.FileLineDelegate;
+import com.zapr.bluewhale.cache.file.FileReaderDelegate;
+import com.zapr.bluewhale.cache.primitive.LongObjectLoaderDelegate;
+import com.zapr.bluewhale.cache.sqlDB.DBDeltaLoaderDelegate;
+import com.zapr.bluewhale.cache.sqlDB.DBLoaderDelegate;
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+import com.zapr.bluewhale.map.LongObjectSink;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.HashMap;
+
+/**
+ * Generated data sets and delegates shared by the benchmarks. Every data set holds rows of the
+ * form (id, name) with ids 0 to rows - 1.
+ */
+final class BenchmarkData {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    static final String FULL_QUERY = "SELECT id, name FROM candidate WHERE updated_at > ?";
+
+    static final String DELTA_QUERY = "SELECT id, name, deleted FROM candidate WHERE updated_at > ?";
+
+    private BenchmarkData() {
+    }
+
+    static String name(long id) {
+        return "candidate-" + id;
+    }
+
+    /**
+     * Writes a csv file of rows lines to a temporary file, deleted on exit.
+     */
+    static File csvFile(int rows) throws IOException {
+        File file = File.createTempFile("bluewhale-benchmark", ".csv");
+        file.deleteOnExit();
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+                UTF_8), 1 << 16)) {
+            for (int id = 0; id < rows; id++) {
+                writer.write(Integer.toString(id));
+                writer.write(',');
+                writer.write(name(id));
+                writer.write('\n');
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Creates the candidate table with rows rows, all updated an hour ago.
+     */
+    static void createTable(Connection connection, int rows) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS candidate");
+            stmt.execute("CREATE TABLE candidate (id INT PRIMARY KEY, name VARCHAR(64), " +
+                    "deleted BOOLEAN, updated_at TIMESTAMP)");
+        }
+        Timestamp anHourAgo = new Timestamp(System.currentTimeMillis() - 3600 * 1000L);
+        try (PreparedStatement pstmt = connection.prepareStatement(
+                "INSERT INTO candidate VALUES (?, ?, FALSE, ?)")) {
+            for (int id = 0; id < rows; id++) {
+                pstmt.setInt(1, id);
+                pstmt.setString(2, name(id));
+                pstmt.setTimestamp(3, anHourAgo);
+                pstmt.addBatch();
+                if (id % 10000 == 9999) {
+                    pstmt.executeBatch();
+                }
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * Marks every stride-th row as updated now, so the next refresh picks it up.
+     */
+    static int touch(Connection connection, int stride) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(
+                "UPDATE candidate SET updated_at = ? WHERE MOD(id, ?) = 0")) {
+            pstmt.setTimestamp(1, new Timestamp(System.currentTimeMillis() + 1000L));
+            pstmt.setInt(2, stride);
+            return pstmt.executeUpdate();
+        }
+    }
+
+    static final class CsvReaderDelegate implements FileReaderDelegate {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <K, V> void addEntry(BufferedReader br, HashMap<K, V> entries) throws IOException {
+            String line;
+            while ((line = br.readLine()) != null) {
+                int comma = line.indexOf(',');
+                entries.put((K) Long.valueOf(line.substring(0, comma)), (V) line.substring(comma + 1));
+            }
+        }
+    }
+
+    static final class CsvLineDelegate implements FileLineDelegate<Long, String> {
+
+        @Override
+        public void addLine(String line, CacheSink<Long, String> sink) {
+            int comma = line.indexOf(',');
+            sink.put(Long.valueOf(line.substring(0, comma)), line.substring(comma + 1));
+        }
+    }
+
+    static final class CsvPrimitiveDelegate implements LongObjectLoaderDelegate<String, File> {
+
+        @Override
+        public void addEntries(File source, LongObjectSink<String> sink) throws BlueWhaleCacheException {
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(source), UTF_8), 1 << 16)) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    int comma = line.indexOf(',');
+                    sink.put(Long.parseLong(line.substring(0, comma)), line.substring(comma + 1));
+                }
+            } catch (IOException e) {
+                throw new BlueWhaleCacheException("Unable to read " + source, e);
+            }
+        }
+    }
+
+    static final class CandidateLoaderDelegate implements DBLoaderDelegate {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <K, V> void addEntry(ResultSet rs, HashMap<K, V> entries) throws SQLException {
+            while (rs.next()) {
+                entries.put((K) Long.valueOf(rs.getLong(1)), (V) rs.getString(2));
+            }
+        }
+    }
+
+    static final class CandidateDeltaDelegate implements DBDeltaLoaderDelegate<Long, String> {
+
+        @Override
+        public void addEntries(ResultSet rs, CacheSink<Long, String> sink) throws SQLException {
+            while (rs.next()) {
+                if (rs.getBoolean(3)) {
+                    sink.remove(rs.getLong(1));
+                } else {
+                    sink.put(rs.getLong(1), rs.getString(2));
+                }
+            }
+        }
+    }
+}
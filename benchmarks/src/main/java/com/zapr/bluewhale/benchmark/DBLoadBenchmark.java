@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.benchmark;
+
+import com.zapr.bluewhale.benchmark.BenchmarkData.CandidateDeltaDelegate;
+import com.zapr.bluewhale.benchmark.BenchmarkData.CandidateLoaderDelegate;
+import com.zapr.bluewhale.cache.sqlDB.DBBlueWhaleCache;
+import com.zapr.bluewhale.cache.sqlDB.KeyRangePartitionScheme;
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time taken by a full load from an in memory H2 database, on a single connection and
+ * partitioned over several, and by a delta refresh touching one row in a hundred.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class DBLoadBenchmark {
+
+    private static final String DB_URL = "jdbc:h2:mem:bluewhale-benchmark;DB_CLOSE_DELAY=-1";
+
+    @Param({"500000"})
+    private int rows;
+
+    @Param({"4"})
+    private int partitions;
+
+    private JdbcDataSource dataSource;
+
+    private Connection connection;
+
+    private DBBlueWhaleCache<Long, String> deltaCache;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, BlueWhaleCacheException {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL(DB_URL);
+        connection = dataSource.getConnection();
+        BenchmarkData.createTable(connection, rows);
+        deltaCache = new DBBlueWhaleCache<>(new CandidateDeltaDelegate(), "delta",
+                BenchmarkData.DELTA_QUERY, 60);
+        deltaCache.init(connection);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.createStatement().execute("DROP ALL OBJECTS");
+        connection.close();
+    }
+
+    /**
+     * Touches one row in a hundred before every delta refresh.
+     */
+    @State(Scope.Thread)
+    public static class Changes {
+
+        @Setup(Level.Invocation)
+        public void touchRows(DBLoadBenchmark benchmark) throws SQLException {
+            BenchmarkData.touch(benchmark.connection, 100);
+        }
+    }
+
+    @Benchmark
+    public int fullLoad() throws BlueWhaleCacheException {
+        DBBlueWhaleCache<Long, String> cache = new DBBlueWhaleCache<>(new CandidateLoaderDelegate(),
+                "full", BenchmarkData.FULL_QUERY, true, 60);
+        cache.init(connection);
+        return cache.getSize();
+    }
+
+    @Benchmark
+    public int partitionedLoad() throws BlueWhaleCacheException {
+        DBBlueWhaleCache<Long, String> cache = new DBBlueWhaleCache<>(new CandidateLoaderDelegate(),
+                "partitioned", BenchmarkData.FULL_QUERY, true, 60);
+        cache.init(dataSource, BenchmarkData.FULL_QUERY + " AND id >= ? AND id < ?",
+                KeyRangePartitionScheme.evenlySplit(0, rows - 1, partitions), partitions);
+        return cache.getSize();
+    }
+
+    @Benchmark
+    public int deltaRefresh(Changes changes) throws BlueWhaleCacheException {
+        deltaCache.refresh(connection);
+        return deltaCache.getSize();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.benchmark;
+
+import com.zapr.bluewhale.benchmark.BenchmarkData.CsvLineDelegate;
+import com.zapr.bluewhale.benchmark.BenchmarkData.CsvPrimitiveDelegate;
+import com.zapr.bluewhale.benchmark.BenchmarkData.CsvReaderDelegate;
+import com.zapr.bluewhale.cache.file.FileBlueWhaleCache;
+import com.zapr.bluewhale.cache.primitive.LongObjectCache;
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time taken by a full load of a csv file, through the buffered reader, the memory mapped
+ * parallel loader and the primitive keyed cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class FileLoadBenchmark {
+
+    @Param({"1000000"})
+    private int rows;
+
+    @Param({"1", "4"})
+    private int parallelism;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = BenchmarkData.csvFile(rows);
+    }
+
+    @Benchmark
+    public int bufferedReaderLoad() throws BlueWhaleCacheException {
+        FileBlueWhaleCache<Long, String> cache = new FileBlueWhaleCache<>(new CsvReaderDelegate(),
+                "reader", false, 60);
+        cache.init(file);
+        return cache.getSize();
+    }
+
+    @Benchmark
+    public int mappedLoad() throws BlueWhaleCacheException {
+        FileBlueWhaleCache<Long, String> cache = new FileBlueWhaleCache<>(new CsvLineDelegate(),
+                "mapped", false, 60);
+        cache.setParallelism(parallelism);
+        cache.init(file);
+        return cache.getSize();
+    }
+
+    @Benchmark
+    public int primitiveLoad() throws BlueWhaleCacheException {
+        LongObjectCache<String, File> cache = new LongObjectCache<>(new CsvPrimitiveDelegate(),
+                "primitive", false, 60);
+        cache.init(file);
+        return cache.getSize();
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.benchmark;
+
+import com.zapr.bluewhale.benchmark.BenchmarkData.CsvLineDelegate;
+import com.zapr.bluewhale.benchmark.BenchmarkData.CsvPrimitiveDelegate;
+import com.zapr.bluewhale.cache.file.FileBlueWhaleCache;
+import com.zapr.bluewhale.cache.primitive.LongObjectCache;
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query throughput of boxed and primitive keyed caches, alone and while the cache is being
+ * reloaded. Run with -prof gc to get allocation per query (gc.alloc.rate.norm), which should be
+ * zero for both kinds of lookups.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryBenchmark {
+
+    private static final int KEYS_PER_THREAD = 1 << 16;
+
+    @Param({"100000", "1000000"})
+    private int rows;
+
+    private File file;
+
+    private FileBlueWhaleCache<Long, String> boxedCache;
+
+    private LongObjectCache<String, File> primitiveCache;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, BlueWhaleCacheException {
+        file = BenchmarkData.csvFile(rows);
+        boxedCache = new FileBlueWhaleCache<>(new CsvLineDelegate(), "boxed", true, 60);
+        boxedCache.init(file);
+        primitiveCache = new LongObjectCache<>(new CsvPrimitiveDelegate(), "primitive", true, 60);
+        primitiveCache.init(file);
+    }
+
+    /**
+     * Random keys, a tenth of them missing from the cache, boxed up front so that boxing is not
+     * measured with the lookup.
+     */
+    @State(Scope.Thread)
+    public static class Keys {
+
+        private final long[] keys = new long[KEYS_PER_THREAD];
+
+        private final Long[] boxedKeys = new Long[KEYS_PER_THREAD];
+
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp(QueryBenchmark benchmark) {
+            Random random = new Random(Thread.currentThread().getId());
+            int bound = benchmark.rows + benchmark.rows / 10;
+            for (int i = 0; i < KEYS_PER_THREAD; i++) {
+                keys[i] = random.nextInt(bound);
+                boxedKeys[i] = keys[i];
+            }
+        }
+
+        long nextKey() {
+            return keys[next++ & (KEYS_PER_THREAD - 1)];
+        }
+
+        Long nextBoxedKey() {
+            return boxedKeys[next++ & (KEYS_PER_THREAD - 1)];
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String queryBoxed(Keys keys) {
+        return boxedCache.query(keys.nextBoxedKey());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String queryPrimitive(Keys keys) {
+        return primitiveCache.query(keys.nextKey());
+    }
+
+    @Benchmark
+    @Group("boxedDuringReload")
+    @GroupThreads(3)
+    public String boxedReader(Keys keys) {
+        return boxedCache.query(keys.nextBoxedKey());
+    }
+
+    @Benchmark
+    @Group("boxedDuringReload")
+    @GroupThreads(1)
+    public void boxedReloader() throws BlueWhaleCacheException {
+        boxedCache.unsafeUpdate(file);
+    }
+
+    @Benchmark
+    @Group("primitiveDuringReload")
+    @GroupThreads(3)
+    public String primitiveReader(Keys keys) {
+        return primitiveCache.query(keys.nextKey());
+    }
+
+    @Benchmark
+    @Group("primitiveDuringReload")
+    @GroupThreads(1)
+    public void primitiveReloader() throws BlueWhaleCacheException {
+        primitiveCache.unsafeUpdate(file);
+    }
+}
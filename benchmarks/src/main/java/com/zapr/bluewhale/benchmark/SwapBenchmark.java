@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.benchmark;
+
+import com.zapr.bluewhale.benchmark.BenchmarkData.CsvLineDelegate;
+import com.zapr.bluewhale.benchmark.BenchmarkData.CsvPrimitiveDelegate;
+import com.zapr.bluewhale.cache.file.FileBlueWhaleCache;
+import com.zapr.bluewhale.cache.primitive.LongObjectCache;
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap used while a loaded cache is replaced by a full reload, when the old and the new entries
+ * are both reachable. baselineHeapMegabytes is the heap in use by the loaded caches before an
+ * iteration, and peakHeapMegabytes the highest heap use seen during its reloads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class SwapBenchmark {
+
+    private static final long MEGABYTE = 1024 * 1024;
+
+    @Param({"1000000"})
+    private int rows;
+
+    private File file;
+
+    private FileBlueWhaleCache<Long, String> boxedCache;
+
+    private LongObjectCache<String, File> primitiveCache;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, BlueWhaleCacheException {
+        file = BenchmarkData.csvFile(rows);
+        boxedCache = new FileBlueWhaleCache<>(new CsvLineDelegate(), "boxed", true, 60);
+        boxedCache.init(file);
+        primitiveCache = new LongObjectCache<>(new CsvPrimitiveDelegate(), "primitive", true, 60);
+        primitiveCache.init(file);
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class HeapUsage {
+
+        public long baselineHeapMegabytes;
+
+        public long peakHeapMegabytes;
+
+        // Counters are only reported once the iteration is over, so baseline is kept aside till then
+        private long baselineHeap;
+
+        @Setup(Level.Iteration)
+        public void before() {
+            System.gc();
+            long used = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    used += pool.getUsage().getUsed();
+                    pool.resetPeakUsage();
+                }
+            }
+            baselineHeap = used;
+        }
+
+        @TearDown(Level.Iteration)
+        public void after() {
+            // Sum of peaks of every pool, which may be a little above the peak of the whole heap
+            long peak = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    peak += pool.getPeakUsage().getUsed();
+                }
+            }
+            baselineHeapMegabytes = baselineHeap / MEGABYTE;
+            peakHeapMegabytes = peak / MEGABYTE;
+        }
+    }
+
+    @Benchmark
+    public int boxedSwap(HeapUsage heapUsage) throws BlueWhaleCacheException {
+        boxedCache.unsafeUpdate(file);
+        return boxedCache.getSize();
+    }
+
+    @Benchmark
+    public int primitiveSwap(HeapUsage heapUsage) throws BlueWhaleCacheException {
+        primitiveCache.unsafeUpdate(file);
+        return primitiveCache.getSize();
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache;
+
+import com.zapr.bluewhale.exception.BlueWhaleCacheUpdationException;
+import com.zapr.bluewhale.metrics.CacheMetrics;
+import com.zapr.bluewhale.metrics.CacheMetricsListener;
+import com.zapr.bluewhale.metrics.CacheMetricsRecorder;
+import com.zapr.bluewhale.metrics.SizeEstimator;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Base of all caches, which keeps entries in an immutable {@link CacheSnapshot} published through
+ * a single volatile reference.
+ * <p>
+ * Readers do a single volatile read and never lock, while every load/refresh builds a fresh set
+ * of entries and publishes it at once, so readers on any core either see the old snapshot or the
+ * new, fully built one.
+ * <p>
+ * Every cache records {@link CacheMetrics}, and reports its loads to metricsListener if set.
+ * <p>
+ * Values can also be looked up by other attributes through secondary indexes, which are added
+ * once after creating the cache and rebuilt along with every snapshot.
+ */
+@Slf4j
+public abstract class AbstractBlueWhaleCache<K, V, S> implements BlueWhaleCache<K, V, S> {
+
+    public static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    private volatile CacheSnapshot<K, V> snapshot = CacheSnapshot.empty();
+
+    private final CacheMetricsRecorder metrics = new CacheMetricsRecorder();
+
+    // Written only under the lock of publish, replaced as a whole when an index is added
+    private volatile Map<String, IndexExtractor<? super V, ?>> indexExtractors = Collections.emptyMap();
+
+    @Getter
+    @Setter
+    private volatile CacheMetricsListener metricsListener;
+
+    // Estimates keys and values for CacheMetrics#getEstimatedRetainedBytes
+    @Getter
+    @Setter
+    @NonNull
+    private volatile SizeEstimator sizeEstimator = SizeEstimator.DEFAULT;
+
+    // Load factor of the tables entries are loaded into, lower trades memory for fewer collisions
+    @Getter
+    private volatile float loadFactor = DEFAULT_LOAD_FACTOR;
+
+    @Override
+    public V query(K key) {
+        return recordQuery(snapshot.get(key));
+    }
+
+    /**
+     * Reads all keys from the same snapshot.
+     */
+    @Override
+    public int queryInto(Iterable<? extends K> keys, Map<? super K, ? super V> values) {
+        CacheSnapshot<K, V> current = snapshot;
+        int found = 0;
+        int queried = 0;
+        for (K key : keys) {
+            V value = current.get(key);
+            queried++;
+            if (value != null) {
+                values.put(key, value);
+                found++;
+            }
+        }
+        recordQueries(found, queried - found);
+        return found;
+    }
+
+    /**
+     * Reads all keys from the same snapshot.
+     */
+    @Override
+    public int queryInto(K[] keys, V[] values) {
+        if (values.length < keys.length) {
+            throw new IllegalArgumentException("Values array is shorter than keys");
+        }
+        CacheSnapshot<K, V> current = snapshot;
+        int found = 0;
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = current.get(keys[i]);
+            if (values[i] != null) {
+                found++;
+            }
+        }
+        recordQueries(found, keys.length - found);
+        return found;
+    }
+
+    /**
+     * Values of current snapshot whose index key in index named indexName is indexKey. Pin a
+     * {@link #snapshot()} to look up several indexes and keys consistently.
+     *
+     * @return Read only values, empty if there are none
+     * @throws IllegalArgumentException if there is no such index
+     */
+    public Collection<V> queryBy(String indexName, Object indexKey) {
+        return snapshot.queryBy(indexName, indexKey);
+    }
+
+    /**
+     * Adds a secondary index, built right away over current entries and rebuilt with every
+     * load. Indexes are meant to be added right after creating the cache, before it is loaded.
+     *
+     * @param extractor index key of a value, null for values not to be indexed
+     */
+    public synchronized void addIndex(@NonNull String indexName, @NonNull IndexExtractor<? super V, ?> extractor) {
+        if (indexExtractors.containsKey(indexName)) {
+            throw new IllegalArgumentException("Cache " + getName() + " already has an index named " +
+                    indexName);
+        }
+        Map<String, IndexExtractor<? super V, ?>> extractors = new LinkedHashMap<>(indexExtractors);
+        extractors.put(indexName, extractor);
+        indexExtractors = extractors;
+
+        // Same entries and version as before, now along with the new index
+        Map<String, SecondaryIndex<K, V>> indexes = new LinkedHashMap<>(snapshot.indexes());
+        indexes.put(indexName, SecondaryIndex.build(indexName, extractor, snapshot.entries()));
+        snapshot = new CacheSnapshot<>(snapshot.entries(), snapshot.getLoadTimeStamp(),
+                snapshot.getVersion(), indexes);
+    }
+
+    public abstract String getName();
+
+    public void setLoadFactor(float loadFactor) {
+        if (!(loadFactor > 0 && loadFactor < 1)) {
+            throw new IllegalArgumentException("Load factor must be between 0 and 1, was " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+    }
+
+    public CacheMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return Unmodifiable view of current entries, which stays as is across refreshes
+     */
+    @Override
+    public Map<K, V> getAll() throws BlueWhaleCacheUpdationException {
+        return snapshot.getEntries();
+    }
+
+    /**
+     * @return Current snapshot, without copying it
+     */
+    @Override
+    public CacheSnapshot<K, V> snapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public int getSize() {
+        return snapshot.size();
+    }
+
+    /**
+     * Creates the map a load builds entries in, large enough to never resize while loading.
+     *
+     * @param sizeHint Entries the source is expected to hold, 0 if unknown, in which case as
+     *                 many entries as current ones are expected
+     */
+    protected final HashMap<K, V> newEntries(long sizeHint) {
+        return new HashMap<>(capacityFor(sizeHint > 0 ? sizeHint : snapshot.size(), loadFactor), loadFactor);
+    }
+
+    /**
+     * @return Table capacity which holds expectedSize entries without resizing at loadFactor
+     */
+    public static int capacityFor(long expectedSize, float loadFactor) {
+        return (int) Math.min(1 << 30, (long) Math.ceil(Math.max(expectedSize, 1) / (double) loadFactor) + 1);
+    }
+
+    protected final CacheSnapshot<K, V> currentSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return Entries of current snapshot as published, in the structure the cache built them
+     */
+    protected final Map<K, V> currentEntries() {
+        return snapshot.entries();
+    }
+
+    /**
+     * @return true if values have to be indexed, so loads know whether changed keys are needed
+     */
+    protected final boolean hasIndexes() {
+        return !indexExtractors.isEmpty();
+    }
+
+    /**
+     * Publishes fully built entries as the next version of this cache, along with indexes built
+     * from them. Entries must not be modified after being published.
+     */
+    protected final synchronized CacheSnapshot<K, V> publish(Map<K, V> entries, long loadTimeStamp) {
+        Map<String, SecondaryIndex<K, V>> indexes = new LinkedHashMap<>();
+        for (Map.Entry<String, IndexExtractor<? super V, ?>> extractor : indexExtractors.entrySet()) {
+            indexes.put(extractor.getKey(), SecondaryIndex.build(extractor.getKey(), extractor.getValue(),
+                    entries));
+        }
+        return publish(entries, loadTimeStamp, indexes);
+    }
+
+    /**
+     * Publishes entries which differ from current ones only in changedKeys, re-indexing just
+     * those keys.
+     *
+     * @param changedKeys Keys put or removed since current snapshot, may repeat
+     */
+    protected final synchronized CacheSnapshot<K, V> publish(Map<K, V> entries, long loadTimeStamp,
+                                                             Iterable<? extends K> changedKeys) {
+        Map<String, SecondaryIndex<K, V>> indexes = new LinkedHashMap<>();
+        for (SecondaryIndex<K, V> index : snapshot.indexes().values()) {
+            indexes.put(index.getName(), index.update(snapshot.entries(), entries, changedKeys));
+        }
+        return publish(entries, loadTimeStamp, indexes);
+    }
+
+    private CacheSnapshot<K, V> publish(Map<K, V> entries, long loadTimeStamp,
+                                        Map<String, SecondaryIndex<K, V>> indexes) {
+        CacheSnapshot<K, V> published = new CacheSnapshot<>(entries, loadTimeStamp,
+                snapshot.getVersion() + 1, indexes.isEmpty() ?
+                Collections.<String, SecondaryIndex<K, V>>emptyMap() : indexes);
+        this.snapshot = published;
+        metrics.recordEntries(entries, sizeEstimator);
+        return published;
+    }
+
+    /**
+     * Counts a query, for caches which look entries up without {@link #query(Object)}.
+     *
+     * @return value
+     */
+    protected final V recordQuery(V value) {
+        metrics.recordQuery(value != null);
+        return value;
+    }
+
+    /**
+     * Counts queries of a batch at once.
+     */
+    protected final void recordQueries(int hits, int misses) {
+        metrics.recordQueries(hits, misses);
+    }
+
+    /**
+     * Records a successful load and reports it to metricsListener.
+     *
+     * @param startNanos {@link System#nanoTime()} when load started
+     * @param rows       Entries loaded, or rows applied on top of current entries by refreshes
+     *                   which load only changed rows
+     */
+    protected final void recordLoad(boolean refresh, long startNanos, long rows) {
+        long durationNanos = System.nanoTime() - startNanos;
+        metrics.recordLoad(refresh, durationNanos, rows);
+        CacheMetricsListener listener = metricsListener;
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.onLoad(getName(), metrics, refresh, durationNanos, rows);
+        } catch (RuntimeException e) {
+            log.warn("Metrics listener failed for cache : " + getName(), e);
+        }
+    }
+
+    /**
+     * Records a failed load and reports it to metricsListener.
+     */
+    protected final void recordLoadFailure(Throwable cause) {
+        metrics.recordLoadFailure();
+        CacheMetricsListener listener = metricsListener;
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.onLoadFailure(getName(), metrics, cause);
+        } catch (RuntimeException e) {
+            log.warn("Metrics listener failed for cache : " + getName(), e);
+        }
+    }
+}
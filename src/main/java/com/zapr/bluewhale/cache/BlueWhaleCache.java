@@ -21,6 +21,8 @@ package com.zapr.bluewhale.cache;
 import com.zapr.bluewhale.exception.BlueWhaleCacheInitializationException;
 import com.zapr.bluewhale.exception.BlueWhaleCacheUpdationException;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -28,8 +30,8 @@ import java.util.Map;
  * It exposes unsafeUpdate function as well, which should be used only for those caches,
  * where updates are almost non-existent or very rare (such as handset, geo etc), otherwise
  * it may lead to inconsistency within the same request.
- * For frequently updating caches it is the responsibility of the client to atomically
- * replace cache instance, which is provided in the request context.
+ * For frequently updating caches, requests should hold on to a {@link #snapshot()} for their
+ * lifetime, so that all their lookups see the same entries.
  * <p>
  *
  * Created by siddharth on 8/12/15.
@@ -39,6 +41,57 @@ public interface BlueWhaleCache<K, V, S> {
 
     public V query(K key);
 
+    /**
+     * Looks up all keys at once. Caches backed by a snapshot read all of them from the same
+     * snapshot, hence see a consistent view even if a refresh is published meanwhile.
+     *
+     * @return Values of keys which are present
+     */
+    public default Map<K, V> queryAll(Collection<? extends K> keys) {
+        Map<K, V> values = new HashMap<>((int) (keys.size() / 0.75f) + 1);
+        queryInto(keys, values);
+        return values;
+    }
+
+    /**
+     * Same as {@link #queryAll(Collection)}, putting values of keys present into a map supplied
+     * (and possibly reused) by the caller.
+     *
+     * @return Number of keys present
+     */
+    public default int queryInto(Iterable<? extends K> keys, Map<? super K, ? super V> values) {
+        int found = 0;
+        for (K key : keys) {
+            V value = query(key);
+            if (value != null) {
+                values.put(key, value);
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Same as {@link #queryAll(Collection)}, setting values[i] to the value of keys[i], or null if
+     * it is absent. Allocates nothing, so values can be reused across requests.
+     *
+     * @param values At least as long as keys
+     * @return Number of keys present
+     */
+    public default int queryInto(K[] keys, V[] values) {
+        if (values.length < keys.length) {
+            throw new IllegalArgumentException("Values array is shorter than keys");
+        }
+        int found = 0;
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = query(keys[i]);
+            if (values[i] != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
     public void init(S source) throws BlueWhaleCacheInitializationException;
 
     public void unsafeUpdate(S source) throws BlueWhaleCacheUpdationException;
@@ -46,4 +99,18 @@ public interface BlueWhaleCache<K, V, S> {
     public Map<K, V> getAll() throws BlueWhaleCacheUpdationException;
 
     public int getSize();
+
+    /**
+     * Read only view of entries as of now, which a request may hold on to for its lifetime to
+     * see a consistent set of entries. Snapshot based caches hand out their current snapshot
+     * without copying, others copy {@link #getAll()}. Caches which free replaced entries
+     * explicitly, such as off heap ones, state how long their snapshots stay readable.
+     */
+    public default CacheSnapshot<K, V> snapshot() {
+        try {
+            return new CacheSnapshot<>(new HashMap<>(getAll()), System.currentTimeMillis(), 0L);
+        } catch (BlueWhaleCacheUpdationException e) {
+            throw new IllegalStateException("Can't take snapshot of cache", e);
+        }
+    }
 }
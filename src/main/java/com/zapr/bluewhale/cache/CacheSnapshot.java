@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache;
+
+import com.zapr.bluewhale.map.OffHeapMap;
+import com.zapr.bluewhale.map.PersistentHashMap;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+import lombok.Getter;
+
+/**
+ * Immutable view of a cache as of one load: entries along with the time they were loaded at and
+ * a version, which increases by one with every load published by the cache.
+ * <p>
+ * Entries of a published snapshot are never modified, refreshes always publish a new snapshot.
+ * A snapshot costs nothing to hand out, so a request can hold on to one for its lifetime and
+ * see the same entries across all its lookups, whatever gets published meanwhile. Snapshots of
+ * off heap caches are the exception, readable only for a grace period after being replaced, see
+ * {@link com.zapr.bluewhale.cache.offheap.OffHeapBlueWhaleCache}.
+ * <p>
+ * Secondary indexes of a cache are part of its snapshot, hence always agree with its entries.
+ */
+public final class CacheSnapshot<K, V> {
+
+    // Entries as built by the cache, for the cache itself
+    private final Map<K, V> entries;
+    // Read only view of entries, for everyone else
+    private final Map<K, V> view;
+    @Getter
+    private final long loadTimeStamp;
+    @Getter
+    private final long version;
+    // Secondary indexes by name, built from entries
+    private final Map<String, SecondaryIndex<K, V>> indexes;
+
+    public CacheSnapshot(Map<K, V> entries, long loadTimeStamp, long version) {
+        this(entries, loadTimeStamp, version, Collections.<String, SecondaryIndex<K, V>>emptyMap());
+    }
+
+    CacheSnapshot(Map<K, V> entries, long loadTimeStamp, long version,
+                  Map<String, SecondaryIndex<K, V>> indexes) {
+        this.entries = entries;
+        this.view = readOnlyView(entries);
+        this.loadTimeStamp = loadTimeStamp;
+        this.version = version;
+        this.indexes = indexes;
+    }
+
+    public static <K, V> CacheSnapshot<K, V> empty() {
+        return new CacheSnapshot<>(Collections.<K, V>emptyMap(), 0L, 0L);
+    }
+
+    public V get(K key) {
+        return entries.get(key);
+    }
+
+    public boolean containsKey(K key) {
+        return entries.containsKey(key);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return Read only values whose index key in index named indexName is indexKey, empty if
+     * there are none
+     * @throws IllegalArgumentException if there is no such index
+     */
+    public Collection<V> queryBy(String indexName, Object indexKey) {
+        return getIndex(indexName).get(indexKey);
+    }
+
+    /**
+     * @throws IllegalArgumentException if there is no such index
+     */
+    public SecondaryIndex<K, V> getIndex(String indexName) {
+        SecondaryIndex<K, V> index = indexes.get(indexName);
+        if (index == null) {
+            throw new IllegalArgumentException("No index named " + indexName);
+        }
+        return index;
+    }
+
+    /**
+     * @return Unmodifiable view of entries, not a copy
+     */
+    public Map<K, V> getEntries() {
+        return view;
+    }
+
+    Map<K, V> entries() {
+        return entries;
+    }
+
+    Map<String, SecondaryIndex<K, V>> indexes() {
+        return indexes;
+    }
+
+    private static <K, V> Map<K, V> readOnlyView(Map<K, V> entries) {
+        // These can't be modified through their Map interface anyway
+        if (entries instanceof PersistentHashMap || entries instanceof OffHeapMap ||
+                entries == Collections.emptyMap()) {
+            return entries;
+        }
+        return Collections.unmodifiableMap(entries);
+    }
+}
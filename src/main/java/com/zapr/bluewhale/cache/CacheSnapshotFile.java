@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache;
+
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+import com.zapr.bluewhale.serializer.ValueSerializer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Local binary copy of a cache snapshot, written after a successful load and read back on the
+ * next init instead of going to the source, if it is not older than maxAgeMillis.
+ * <p>
+ * Layout: magic, format version, load timestamp and entry count, followed by length prefixed
+ * key and value of every entry. File is written to a temporary file first and renamed over the
+ * previous one, so a crash while writing never leaves a partial snapshot behind.
+ */
+@Slf4j
+public class CacheSnapshotFile<K, V> {
+
+    private static final int MAGIC = 0x42575348; // BWSH
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+    // Largest region mapped at once while reading
+    private static final long MAX_MAPPED_REGION = 1L << 30;
+
+    @Getter
+    private final File file;
+    private final ValueSerializer<K> keySerializer;
+    private final ValueSerializer<V> valueSerializer;
+    @Getter
+    private final long maxAgeMillis;
+
+    public CacheSnapshotFile(@NonNull File file, @NonNull ValueSerializer<K> keySerializer,
+                             @NonNull ValueSerializer<V> valueSerializer, long maxAgeMillis) {
+        this.file = file;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * @return load timestamp of snapshot in file, 0 if there is no valid snapshot
+     */
+    public long getLoadTimeStamp() {
+        if (!file.isFile() || file.length() < HEADER_SIZE) {
+            return 0L;
+        }
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            if (randomAccessFile.readInt() != MAGIC || randomAccessFile.readInt() != FORMAT_VERSION) {
+                return 0L;
+            }
+            return randomAccessFile.readLong();
+        } catch (IOException e) {
+            log.warn("Can't read header of snapshot file " + file, e);
+            return 0L;
+        }
+    }
+
+    public boolean isFresh() {
+        long loadTimeStamp = getLoadTimeStamp();
+        return loadTimeStamp > 0 && System.currentTimeMillis() - loadTimeStamp <= maxAgeMillis;
+    }
+
+    public void write(CacheSnapshot<K, V> snapshot) throws BlueWhaleCacheException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(tempFile, "rw");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            randomAccessFile.setLength(0);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(snapshot.getLoadTimeStamp())
+                    .putInt(snapshot.size());
+            for (Map.Entry<K, V> entry : snapshot.getEntries().entrySet()) {
+                int keySize = keySerializer.serializedSize(entry.getKey());
+                int valueSize = valueSerializer.serializedSize(entry.getValue());
+                int recordSize = 8 + keySize + valueSize;
+                if (buffer.remaining() < recordSize) {
+                    flush(buffer, channel);
+                }
+                // Records larger than the write buffer get a buffer of their own
+                ByteBuffer recordBuffer = buffer.remaining() < recordSize ?
+                        ByteBuffer.allocate(recordSize) : buffer;
+                recordBuffer.putInt(keySize);
+                keySerializer.serialize(entry.getKey(), recordBuffer);
+                recordBuffer.putInt(valueSize);
+                valueSerializer.serialize(entry.getValue(), recordBuffer);
+                if (recordBuffer != buffer) {
+                    flush(recordBuffer, channel);
+                }
+            }
+            flush(buffer, channel);
+            channel.force(false);
+        } catch (IOException | RuntimeException e) {
+            tempFile.delete();
+            throw new BlueWhaleCacheException("Can't write snapshot file " + file, e);
+        }
+
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            tempFile.delete();
+            throw new BlueWhaleCacheException("Can't move snapshot file in place " + file, e);
+        }
+        log.info("Written snapshot of " + snapshot.size() + " entries to " + file);
+    }
+
+    /**
+     * Memory maps the snapshot and puts all its entries in sink.
+     *
+     * @return load timestamp of the snapshot
+     */
+    public long load(CacheSink<K, V> sink) throws BlueWhaleCacheException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                throw new BlueWhaleCacheException("Truncated snapshot file " + file);
+            }
+            MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    Math.min(fileSize, MAX_MAPPED_REGION));
+            if (region.getInt() != MAGIC || region.getInt() != FORMAT_VERSION) {
+                throw new BlueWhaleCacheException("Not a snapshot file " + file);
+            }
+            long loadTimeStamp = region.getLong();
+            int count = region.getInt();
+            long regionStart = 0;
+
+            for (int i = 0; i < count; i++) {
+                if (!hasRecord(region)) {
+                    // Record spans beyond the mapped region, map the next one from its start
+                    regionStart += region.position();
+                    if (regionStart >= fileSize) {
+                        throw new BlueWhaleCacheException("Truncated snapshot file " + file);
+                    }
+                    region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart,
+                            Math.min(fileSize - regionStart, MAX_MAPPED_REGION));
+                    if (!hasRecord(region)) {
+                        throw new BlueWhaleCacheException("Truncated snapshot file " + file);
+                    }
+                }
+                K key = keySerializer.deserialize(nextField(region));
+                V value = valueSerializer.deserialize(nextField(region));
+                sink.put(key, value);
+            }
+            return loadTimeStamp;
+        } catch (IOException | RuntimeException e) {
+            throw new BlueWhaleCacheException("Can't read snapshot file " + file, e);
+        }
+    }
+
+    private static boolean hasRecord(ByteBuffer region) {
+        int position = region.position();
+        if (region.remaining() < 4) {
+            return false;
+        }
+        int keySize = region.getInt(position);
+        if (region.remaining() < 8 + keySize) {
+            return false;
+        }
+        int valueSize = region.getInt(position + 4 + keySize);
+        return region.remaining() >= 8 + keySize + valueSize;
+    }
+
+    private static ByteBuffer nextField(ByteBuffer region) {
+        int size = region.getInt();
+        ByteBuffer field = region.duplicate();
+        field.limit(region.position() + size);
+        region.position(region.position() + size);
+        return field;
+    }
+
+    private static void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Passes entries on to a sink, counting them and optionally keeping their keys, for loads which
+ * apply changes on top of current entries and publish them through
+ * {@link AbstractBlueWhaleCache#publish(java.util.Map, long, Iterable)}.
+ */
+public class ChangeTrackingSink<K, V> implements CacheSink<K, V> {
+
+    private final CacheSink<K, V> sink;
+    // Keys put or removed in order, null unless keys are kept
+    @Getter
+    private final List<K> changedKeys;
+    // Entries put or removed
+    @Getter
+    private long count = 0L;
+
+    public ChangeTrackingSink(@NonNull CacheSink<K, V> sink, boolean keepKeys) {
+        this.sink = sink;
+        this.changedKeys = keepKeys ? new ArrayList<K>() : null;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        count++;
+        sink.put(key, value);
+        if (changedKeys != null) {
+            changedKeys.add(key);
+        }
+    }
+
+    @Override
+    public void remove(K key) {
+        count++;
+        sink.remove(key);
+        if (changedKeys != null) {
+            changedKeys.add(key);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache;
+
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * CacheSink which writes straight into a (not yet published) map.
+ */
+public class MapCacheSink<K, V> implements CacheSink<K, V> {
+
+    @Getter
+    private final Map<K, V> entries;
+
+    public MapCacheSink(@NonNull Map<K, V> entries) {
+        this.entries = entries;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        entries.put(key, value);
+    }
+
+    @Override
+    public void remove(K key) {
+        entries.remove(key);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache;
+
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Adapts delegates which fill a HashMap themselves to {@link CacheLoaderDelegate}, so that they
+ * work with caches which own the structure their entries are kept in.
+ * <p>
+ * A sink writing into a HashMap is handed to the delegate as is, hence such delegates cost
+ * nothing extra with caches that keep entries in a HashMap. For any other sink, entries are
+ * collected in a HashMap first and then put in the sink.
+ */
+public abstract class MapLoaderAdapter<K, V, S> implements CacheLoaderDelegate<K, V, S> {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void addEntries(S source, CacheSink<K, V> sink) throws BlueWhaleCacheException {
+        if (sink instanceof MapCacheSink && ((MapCacheSink<K, V>) sink).getEntries() instanceof HashMap) {
+            addEntries(source, (HashMap<K, V>) ((MapCacheSink<K, V>) sink).getEntries());
+            return;
+        }
+        HashMap<K, V> entries = new HashMap<>();
+        addEntries(source, entries);
+        for (Map.Entry<K, V> entry : entries.entrySet()) {
+            sink.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * @param entries Entries being loaded, which may already hold entries of the last load
+     */
+    protected abstract void addEntries(S source, HashMap<K, V> entries) throws BlueWhaleCacheException;
+}
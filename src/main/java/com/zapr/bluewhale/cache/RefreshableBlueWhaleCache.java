@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache;
+
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+
+/**
+ * A {@link BlueWhaleCache} which can be periodically refreshed from its source, every
+ * {@link #getRefreshInterval()} seconds. Such caches can be registered with a
+ * {@link com.zapr.bluewhale.cache.refresh.RefreshScheduler} instead of being refreshed by hand.
+ */
+public interface RefreshableBlueWhaleCache<K, V, S> extends BlueWhaleCache<K, V, S> {
+
+    public void refresh(S source) throws BlueWhaleCacheException;
+
+    public String getName();
+
+    public boolean isCacheUpdatable();
+
+    // refreshInterval in seconds
+    public int getRefreshInterval();
+}
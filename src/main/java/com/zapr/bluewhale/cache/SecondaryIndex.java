@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache;
+
+import com.zapr.bluewhale.map.PersistentHashMap;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import lombok.Getter;
+
+/**
+ * Immutable index of a snapshot's values by an attribute other than their key, published along
+ * with the entries it was built from.
+ * <p>
+ * Values of every index key are kept in a {@link PersistentHashMap} by their cache key, so an
+ * index can be updated for a few changed keys without copying the rest of it, and lookups hand
+ * out the read only values of that map as they are.
+ */
+public final class SecondaryIndex<K, V> {
+
+    @Getter
+    private final String name;
+    private final IndexExtractor<? super V, ?> extractor;
+    private final PersistentHashMap<Object, PersistentHashMap<K, V>> buckets;
+
+    private SecondaryIndex(String name, IndexExtractor<? super V, ?> extractor,
+                           PersistentHashMap<Object, PersistentHashMap<K, V>> buckets) {
+        this.name = name;
+        this.extractor = extractor;
+        this.buckets = buckets;
+    }
+
+    /**
+     * Indexes all entries.
+     */
+    static <K, V> SecondaryIndex<K, V> build(String name, IndexExtractor<? super V, ?> extractor,
+                                             Map<K, V> entries) {
+        Map<Object, PersistentHashMap.Editor<K, V>> editors = new HashMap<>();
+        for (Map.Entry<K, V> entry : entries.entrySet()) {
+            Object indexKey = extractor.extract(entry.getValue());
+            if (indexKey == null) {
+                continue;
+            }
+            PersistentHashMap.Editor<K, V> editor = editors.get(indexKey);
+            if (editor == null) {
+                editor = PersistentHashMap.<K, V>empty().edit();
+                editors.put(indexKey, editor);
+            }
+            editor.put(entry.getKey(), entry.getValue());
+        }
+        return new SecondaryIndex<>(name, extractor, persist(PersistentHashMap.<Object,
+                PersistentHashMap<K, V>>empty(), editors));
+    }
+
+    /**
+     * Re-indexes only changed keys, leaving this index as is.
+     *
+     * @param previous    Entries this index was built from
+     * @param current     Entries after the change
+     * @param changedKeys Keys put or removed since previous, in any order and possibly repeated
+     */
+    SecondaryIndex<K, V> update(Map<K, V> previous, Map<K, V> current, Iterable<? extends K> changedKeys) {
+        Map<Object, PersistentHashMap.Editor<K, V>> editors = new HashMap<>();
+        for (K key : changedKeys) {
+            V oldValue = previous.get(key);
+            if (oldValue != null) {
+                Object oldIndexKey = extractor.extract(oldValue);
+                if (oldIndexKey != null) {
+                    editor(editors, oldIndexKey).remove(key);
+                }
+            }
+            V newValue = current.get(key);
+            if (newValue != null) {
+                Object newIndexKey = extractor.extract(newValue);
+                if (newIndexKey != null) {
+                    editor(editors, newIndexKey).put(key, newValue);
+                }
+            }
+        }
+        return new SecondaryIndex<>(name, extractor, persist(buckets, editors));
+    }
+
+    /**
+     * @return Read only values whose index key is indexKey, empty if there are none
+     */
+    public Collection<V> get(Object indexKey) {
+        PersistentHashMap<K, V> bucket = indexKey == null ? null : buckets.get(indexKey);
+        return bucket == null ? Collections.<V>emptyList() : bucket.values();
+    }
+
+    /**
+     * @return Number of distinct index keys
+     */
+    public int size() {
+        return buckets.size();
+    }
+
+    private PersistentHashMap.Editor<K, V> editor(Map<Object, PersistentHashMap.Editor<K, V>> editors,
+                                                  Object indexKey) {
+        PersistentHashMap.Editor<K, V> editor = editors.get(indexKey);
+        if (editor == null) {
+            PersistentHashMap<K, V> bucket = buckets.get(indexKey);
+            editor = (bucket == null ? PersistentHashMap.<K, V>empty() : bucket).edit();
+            editors.put(indexKey, editor);
+        }
+        return editor;
+    }
+
+    private static <K, V> PersistentHashMap<Object, PersistentHashMap<K, V>> persist(
+            PersistentHashMap<Object, PersistentHashMap<K, V>> buckets,
+            Map<Object, PersistentHashMap.Editor<K, V>> editors) {
+        PersistentHashMap.Editor<Object, PersistentHashMap<K, V>> editor = buckets.edit();
+        for (Map.Entry<Object, PersistentHashMap.Editor<K, V>> entry : editors.entrySet()) {
+            PersistentHashMap<K, V> bucket = entry.getValue().persistent();
+            if (bucket.isEmpty()) {
+                editor.remove(entry.getKey());
+            } else {
+                editor.put(entry.getKey(), bucket);
+            }
+        }
+        return editor.persistent();
+    }
+}
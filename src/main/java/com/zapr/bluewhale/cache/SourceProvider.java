@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache;
+
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+
+/**
+ * Hands out a source (File, Connection, AerospikeClient etc) whenever a cache has to be loaded
+ * or refreshed in the background, and takes it back once the load is over.
+ */
+public interface SourceProvider<S> {
+
+    public S acquire() throws BlueWhaleCacheException;
+
+    /**
+     * Called once the cache is done with the source, whether the load succeeded or not.
+     */
+    public void release(S source);
+}
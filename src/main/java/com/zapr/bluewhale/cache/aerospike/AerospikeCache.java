@@ -20,29 +20,74 @@ package com.zapr.bluewhale.cache.aerospike;
 
 import com.aerospike.client.AerospikeClient;
 import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Key;
+import com.aerospike.client.Record;
+import com.aerospike.client.ScanCallback;
+import com.aerospike.client.cluster.Node;
 import com.aerospike.client.policy.QueryPolicy;
+import com.aerospike.client.policy.ScanPolicy;
 import com.aerospike.client.query.RecordSet;
 import com.aerospike.client.query.Statement;
-import com.zapr.bluewhale.cache.BlueWhaleCache;
+import com.zapr.bluewhale.cache.AbstractBlueWhaleCache;
+import com.zapr.bluewhale.cache.MapCacheSink;
 import com.zapr.bluewhale.exception.BlueWhaleCacheException;
 import com.zapr.bluewhale.exception.BlueWhaleCacheInitializationException;
 import com.zapr.bluewhale.exception.BlueWhaleCacheUpdationException;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 import lombok.Getter;
 import lombok.NonNull;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
 
-public class AerospikeCache<K, V> implements BlueWhaleCache<K, V, AerospikeClient> {
-
-    // No thread safety guarantees here, but will never be an issue
-    // as its reference will always change atomically
-    private Map<K, V> entries;
+@Slf4j
+public class AerospikeCache<K, V> extends AbstractBlueWhaleCache<K, V, AerospikeClient> {
 
     // Delegate which is responsible for populating cache after loading from source
     private AerospikeLoaderDelegate aerospikeLoaderDelegate;
 
+    // Delegate for caches loaded by scanning a set, used instead of aerospikeLoaderDelegate
+    private AerospikeRecordDelegate<K, V> aerospikeRecordDelegate;
+
+    // Namespace, set and bins scanned, when loaded by scanning a set
+    @Getter
+    private String namespace;
+    @Getter
+    private String setName;
+    private String[] binNames;
+
+    // ScanPolicy (to be send if want to override client's scan policy)
+    @Getter
+    private ScanPolicy scanPolicy;
+
+    // Nodes scanned at once, 0 scans all nodes at once
+    @Getter
+    @Setter
+    private int scanParallelism = 0;
+
+    // Records scanned per second across all nodes, 0 means no limit
+    @Getter
+    @Setter
+    private long maxRecordsPerSecond = 0L;
+
+    // Whether loads of an empty cache are sized after object counts of the set reported by
+    // nodes, at the cost of an info request per node. Later loads are sized after current entries.
+    @Getter
+    @Setter
+    private boolean sizedBySetStats = false;
+
     // Aerospike Query
     private Statement statement;
 
@@ -56,7 +101,7 @@ public class AerospikeCache<K, V> implements BlueWhaleCache<K, V, AerospikeClien
 
     // Keeps track if cache is initialized or not
     @Getter
-    private boolean isCacheInitialized = false;
+    private volatile boolean isCacheInitialized = false;
 
     /**
      * Intialises a bluewhale cache, which loads from aerospike.
@@ -75,22 +120,37 @@ public class AerospikeCache<K, V> implements BlueWhaleCache<K, V, AerospikeClien
         this.name = name;
         this.statement = statement;
         this.queryPolicy = queryPolicy;
-        this.entries = new HashMap<K, V>();
         this.isCacheInitialized = false;
     }
 
     /**
-     * Gets the item corresponding to key passed.
+     * Intialises a bluewhale cache, which loads by scanning a set on every node of the cluster
+     * in parallel. Cache is not populated through this function.
      *
-     * @param key Key corresponding to the required element.
+     * @param aerospikeRecordDelegate builds entries from records, called concurrently
+     * @param name                    Name of cache
+     * @param namespace               Namespace scanned
+     * @param setName                 Set scanned, null scans the whole namespace
+     * @param scanPolicy              ScanPolicy (to be send if want to override client's scan
+     *                                policy)
+     * @param binNames                Bins fetched, all bins if none
      */
-    @Override
-    public V query(K key) {
-        return this.entries.get(key);
+    public AerospikeCache(@NonNull AerospikeRecordDelegate<K, V> aerospikeRecordDelegate,
+                          @NonNull String name, @NonNull String namespace, String setName,
+                          ScanPolicy scanPolicy, String... binNames) {
+        this.aerospikeRecordDelegate = aerospikeRecordDelegate;
+        this.name = name;
+        this.namespace = namespace;
+        this.setName = setName;
+        this.scanPolicy = scanPolicy;
+        this.binNames = binNames;
+        this.isCacheInitialized = false;
     }
 
     /**
      * Builds up the cache and populate according to loaderdelegate, passed in constructor.
+     * Entries are built in a fresh map, so calling it again re-initialises the cache while the
+     * current entries keep serving queries.
      *
      * @param aerospikeClient AerospikeClient through which records will be fetched
      */
@@ -101,17 +161,165 @@ public class AerospikeCache<K, V> implements BlueWhaleCache<K, V, AerospikeClien
             throw new BlueWhaleCacheInitializationException("Aerospike Client cannot be null");
         }
 
-        this.entries.clear();
+        long initTimeStamp = System.currentTimeMillis();
+        long loadStart = System.nanoTime();
 
         try {
-            buildCache(aerospikeClient, this.entries);
+            Map<K, V> entries = loadEntries(aerospikeClient);
+            publish(entries, initTimeStamp);
             this.isCacheInitialized = true;
+            recordLoad(false, loadStart, entries.size());
         } catch (BlueWhaleCacheException exception) {
+            recordLoadFailure(exception);
             throw new BlueWhaleCacheInitializationException(exception.getMessage(), exception);
         }
 
     }
 
+    /**
+     * Builds up the cache on a thread of its own, and returns right away. Entries loaded earlier
+     * (if any) keep serving queries till the new ones are published all at once.
+     *
+     * @param aerospikeClient AerospikeClient through which records will be fetched
+     * @return Future completed once entries are published, or exceptionally with
+     * {@link BlueWhaleCacheInitializationException}
+     */
+    public CompletableFuture<Void> initAsync(final AerospikeClient aerospikeClient) {
+        return initAsync(aerospikeClient, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                Thread thread = new Thread(command, "bluewhale-init-" + name);
+                thread.setDaemon(true);
+                thread.start();
+            }
+        });
+    }
+
+    /**
+     * Same as {@link #initAsync(AerospikeClient)}, building up the cache on executor.
+     */
+    public CompletableFuture<Void> initAsync(final AerospikeClient aerospikeClient,
+                                            @NonNull Executor executor) {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        init(aerospikeClient);
+                        future.complete(null);
+                    } catch (BlueWhaleCacheInitializationException | RuntimeException e) {
+                        future.completeExceptionally(e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new BlueWhaleCacheInitializationException(
+                    "Init rejected by executor for cache " + name, e));
+        }
+        return future;
+    }
+
+    private Map<K, V> loadEntries(AerospikeClient aerospikeClient) throws BlueWhaleCacheException {
+        if (aerospikeRecordDelegate != null) {
+            return scanAllNodes(aerospikeClient);
+        }
+        Map<K, V> entries = newEntries(sizedBySetStats ? sizeHint(aerospikeClient.getNodes(),
+                statement.getNamespace(), statement.getSetName()) : 0L);
+        buildCache(aerospikeClient, entries);
+        return entries;
+    }
+
+    /**
+     * Scans every node on its own thread, at most scanParallelism at once, each into a map of its
+     * own. Nodes hold disjoint partitions, so maps are merged only once all of them are done.
+     */
+    private Map<K, V> scanAllNodes(final AerospikeClient aerospikeClient) throws BlueWhaleCacheException {
+
+        Node[] nodes = aerospikeClient.getNodes();
+        if (nodes == null || nodes.length == 0) {
+            throw new BlueWhaleCacheException("No aerospike node to scan for cache " + this.name);
+        }
+        int threads = scanParallelism > 0 ? Math.min(scanParallelism, nodes.length) : nodes.length;
+        long sizeHint = sizeHint(nodes, namespace, setName);
+        // Nodes are masters of about as many records each
+        final long nodeSizeHint = (sizeHint > 0 ? sizeHint : getSize()) / nodes.length;
+        final ScanThrottle throttle = maxRecordsPerSecond > 0 ? new ScanThrottle(maxRecordsPerSecond) : null;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<HashMap<K, V>>> futures = new ArrayList<>(nodes.length);
+        List<HashMap<K, V>> nodeEntries = new ArrayList<>(nodes.length);
+        try {
+            for (final Node node : nodes) {
+                futures.add(executor.submit(new Callable<HashMap<K, V>>() {
+                    @Override
+                    public HashMap<K, V> call() {
+                        return scanNode(aerospikeClient, node, throttle, nodeSizeHint);
+                    }
+                }));
+            }
+            for (Future<HashMap<K, V>> future : futures) {
+                nodeEntries.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw new BlueWhaleCacheException("Aerospike Exception while scanning aerospike for cache " +
+                    this.name, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BlueWhaleCacheException("Interrupted while scanning aerospike for cache " +
+                    this.name, e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int size = 0;
+        for (HashMap<K, V> entries : nodeEntries) {
+            size += entries.size();
+        }
+        HashMap<K, V> entries = newEntries(size);
+        for (HashMap<K, V> scanned : nodeEntries) {
+            entries.putAll(scanned);
+        }
+        log.info("Done scanning " + nodes.length + " nodes for cache : " + this.name);
+        return entries;
+    }
+
+    private HashMap<K, V> scanNode(AerospikeClient aerospikeClient, Node node,
+                                   final ScanThrottle throttle, long sizeHint) {
+        HashMap<K, V> entries = new HashMap<>(capacityFor(sizeHint, getLoadFactor()), getLoadFactor());
+        final MapCacheSink<K, V> sink = new MapCacheSink<>(entries);
+        aerospikeClient.scanNode(this.scanPolicy, node, this.namespace, this.setName,
+                new ScanCallback() {
+                    @Override
+                    public void scanCallback(Key key, Record record) throws AerospikeException {
+                        boolean interrupted = throttle != null ? !throttle.acquire()
+                                : Thread.currentThread().isInterrupted();
+                        // Stops the scan once another node failed and executor was shut down
+                        if (interrupted) {
+                            throw new AerospikeException.ScanTerminated();
+                        }
+                        aerospikeRecordDelegate.addRecord(key, record, sink);
+                    }
+                }, this.binNames);
+        return entries;
+    }
+
+    /**
+     * @return Records in set as per node statistics, 0 if cache is not sized by them, already
+     * has entries, or nodes don't report them
+     */
+    private long sizeHint(Node[] nodes, String namespace, String setName) {
+        if (!sizedBySetStats || getSize() > 0) {
+            return 0L;
+        }
+        try {
+            return SetStats.masterObjects(nodes, namespace, setName);
+        } catch (AerospikeException e) {
+            log.warn("Can't get set statistics, loading without size hint for cache " + this.name, e);
+            return 0L;
+        }
+    }
+
     /**
      * Builds cache
      */
@@ -146,33 +354,19 @@ public class AerospikeCache<K, V> implements BlueWhaleCache<K, V, AerospikeClien
             throw new BlueWhaleCacheUpdationException("Aerospike Client cannot be null");
         }
 
-        Map entries = new HashMap<>();
+        Map<K, V> entries;
+        long updateTimeStamp = System.currentTimeMillis();
+        long loadStart = System.nanoTime();
 
         try {
-            buildCache(aerospikeClient, entries);
-            this.isCacheInitialized = true;
+            entries = loadEntries(aerospikeClient);
         } catch (BlueWhaleCacheException exception) {
+            recordLoadFailure(exception);
             throw new BlueWhaleCacheUpdationException(exception.getMessage(), exception);
         }
 
-        synchronized (this) {
-            this.entries = entries;
-        }
-    }
-
-    /**
-     * Gets all entries of cache
-     */
-    @Override
-    public Map<K, V> getAll() throws BlueWhaleCacheUpdationException {
-        return this.entries;
-    }
-
-    /**
-     * Gets size of cache
-     */
-    @Override
-    public int getSize() {
-        return this.entries.size();
+        publish(entries, updateTimeStamp);
+        this.isCacheInitialized = true;
+        recordLoad(false, loadStart, entries.size());
     }
 }
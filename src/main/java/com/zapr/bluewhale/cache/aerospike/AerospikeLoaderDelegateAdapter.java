@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.aerospike;
+
+import com.aerospike.client.query.RecordSet;
+import com.zapr.bluewhale.cache.MapLoaderAdapter;
+
+import java.util.HashMap;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Loads entries through an {@link AerospikeLoaderDelegate}, for caches which take a
+ * {@link com.zapr.bluewhale.cache.CacheLoaderDelegate}. Record set is closed by whoever ran the
+ * query.
+ */
+public class AerospikeLoaderDelegateAdapter<K, V> extends MapLoaderAdapter<K, V, RecordSet> {
+
+    @Getter
+    private final AerospikeLoaderDelegate aerospikeLoaderDelegate;
+
+    public AerospikeLoaderDelegateAdapter(@NonNull AerospikeLoaderDelegate aerospikeLoaderDelegate) {
+        this.aerospikeLoaderDelegate = aerospikeLoaderDelegate;
+    }
+
+    @Override
+    protected void addEntries(RecordSet recordSet, HashMap<K, V> entries) {
+        aerospikeLoaderDelegate.addEntry(recordSet, entries);
+    }
+}
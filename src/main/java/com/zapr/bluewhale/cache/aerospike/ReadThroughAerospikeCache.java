@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.aerospike;
+
+import com.aerospike.client.AerospikeClient;
+import com.aerospike.client.Key;
+import com.aerospike.client.Record;
+import com.aerospike.client.Value;
+import com.aerospike.client.policy.BatchPolicy;
+import com.aerospike.client.policy.Policy;
+import com.zapr.bluewhale.cache.BlueWhaleCache;
+import com.zapr.bluewhale.exception.BlueWhaleCacheInitializationException;
+import com.zapr.bluewhale.exception.BlueWhaleCacheUpdationException;
+import com.zapr.bluewhale.map.StripedLruMap;
+import com.zapr.bluewhale.metrics.CacheMetrics;
+import com.zapr.bluewhale.metrics.CacheMetricsRecorder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+
+/**
+ * Aerospike backed cache for sets too large to be held in heap. Only the most recently used
+ * records are kept, up to maximumSize; a query for any other key reads it from aerospike and
+ * keeps it. Absent records are remembered as well, so that repeated lookups of unknown keys do
+ * not hit aerospike every time.
+ * <p>
+ * Concurrent misses on the same key are coalesced into a single read, which every querying
+ * thread waits for. Errors while reading are thrown from query as {@link
+ * com.aerospike.client.AerospikeException}, to every thread waiting for that read.
+ * <p>
+ * Unlike snapshot based caches, entries are read one at a time, hence two queries in a request
+ * may see records as of different times.
+ */
+public class ReadThroughAerospikeCache<K, V> implements BlueWhaleCache<K, V, AerospikeClient> {
+
+    private final AerospikeValueMapper<V> valueMapper;
+
+    private final StripedLruMap<K, Loaded<V>> hotEntries;
+
+    // Reads in progress, keyed by the key being read
+    private final ConcurrentHashMap<K, CompletableFuture<Loaded<V>>> reads = new ConcurrentHashMap<>();
+
+    // Count of invalidations, for batch reads to tell whether one ran while they were in progress
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final CacheMetricsRecorder metrics = new CacheMetricsRecorder();
+
+    // Name of cache
+    @Getter
+    private final String name;
+
+    @Getter
+    private final String namespace;
+
+    @Getter
+    private final String setName;
+
+    // Bins read, all bins if none
+    private final String[] binNames;
+
+    // Policy of single reads, client's default if null
+    @Getter
+    @Setter
+    private Policy readPolicy;
+
+    // Policy of batch reads, client's default if null
+    @Getter
+    @Setter
+    private BatchPolicy batchPolicy;
+
+    // Entries older than this are read again, 0 keeps them till evicted
+    @Getter
+    @Setter
+    private long expireAfterWriteMillis = 0L;
+
+    private volatile AerospikeClient aerospikeClient;
+
+    @Getter
+    private volatile boolean isCacheInitialized = false;
+
+    /**
+     * @param valueMapper builds values out of records
+     * @param name        Name of cache
+     * @param namespace   Namespace of records
+     * @param setName     Set of records
+     * @param maximumSize Entries (including absent ones) kept at most
+     * @param binNames    Bins read, all bins if none
+     */
+    public ReadThroughAerospikeCache(@NonNull AerospikeValueMapper<V> valueMapper, @NonNull String name,
+                                     @NonNull String namespace, String setName, int maximumSize,
+                                     String... binNames) {
+        this.valueMapper = valueMapper;
+        this.name = name;
+        this.namespace = namespace;
+        this.setName = setName;
+        this.binNames = binNames;
+        this.hotEntries = new StripedLruMap<>(maximumSize);
+    }
+
+    /**
+     * Starts reading through aerospikeClient. Nothing is loaded up front.
+     */
+    @Override
+    public void init(AerospikeClient aerospikeClient) throws BlueWhaleCacheInitializationException {
+        if (aerospikeClient == null) {
+            throw new BlueWhaleCacheInitializationException("Aerospike Client cannot be null");
+        }
+        this.aerospikeClient = aerospikeClient;
+        this.isCacheInitialized = true;
+    }
+
+    /**
+     * Starts reading through aerospikeClient, and drops all entries read so far.
+     */
+    @Override
+    public void unsafeUpdate(AerospikeClient aerospikeClient) throws BlueWhaleCacheUpdationException {
+        if (aerospikeClient == null) {
+            throw new BlueWhaleCacheUpdationException("Aerospike Client cannot be null");
+        }
+        this.aerospikeClient = aerospikeClient;
+        this.isCacheInitialized = true;
+        invalidateAll();
+    }
+
+    @Override
+    public V query(K key) {
+        if (key == null) {
+            return null;
+        }
+        Loaded<V> loaded = hotEntries.get(key);
+        if (isFresh(loaded)) {
+            metrics.recordQuery(true);
+            return loaded.value;
+        }
+        metrics.recordQuery(false);
+        return read(key).value;
+    }
+
+    /**
+     * Looks up keys, reading all those not held in a single batch read.
+     *
+     * @return Values of keys which are present
+     */
+    @Override
+    public Map<K, V> queryAll(Collection<? extends K> keys) {
+        Map<K, V> values = new HashMap<>();
+        List<K> missing = new ArrayList<>();
+        for (K key : keys) {
+            if (key == null) {
+                continue;
+            }
+            Loaded<V> loaded = hotEntries.get(key);
+            boolean fresh = isFresh(loaded);
+            metrics.recordQuery(fresh);
+            if (!fresh) {
+                missing.add(key);
+            } else if (loaded.value != null) {
+                values.put(key, loaded.value);
+            }
+        }
+        if (missing.isEmpty()) {
+            return values;
+        }
+
+        Key[] aerospikeKeys = new Key[missing.size()];
+        for (int i = 0; i < aerospikeKeys.length; i++) {
+            aerospikeKeys[i] = toAerospikeKey(missing.get(i));
+        }
+        AerospikeClient client = requireClient();
+        long invalidationsBefore = invalidations.get();
+        Record[] records = binNames.length == 0 ? client.get(batchPolicy, aerospikeKeys)
+                : client.get(batchPolicy, aerospikeKeys, binNames);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < records.length; i++) {
+            Loaded<V> loaded = new Loaded<>(records[i] == null ? null : valueMapper.toValue(records[i]), now);
+            hotEntries.put(missing.get(i), loaded);
+            if (loaded.value != null) {
+                values.put(missing.get(i), loaded.value);
+            }
+        }
+        if (invalidations.get() != invalidationsBefore) {
+            // Records read before an invalidation must not outlive it, whichever keys it dropped
+            for (K key : missing) {
+                hotEntries.remove(key);
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public int queryInto(Iterable<? extends K> keys, Map<? super K, ? super V> values) {
+        List<K> keyList = new ArrayList<>();
+        for (K key : keys) {
+            keyList.add(key);
+        }
+        Map<K, V> found = queryAll(keyList);
+        values.putAll(found);
+        return found.size();
+    }
+
+    @Override
+    public int queryInto(K[] keys, V[] values) {
+        if (values.length < keys.length) {
+            throw new IllegalArgumentException("Values array is shorter than keys");
+        }
+        Map<K, V> found = queryAll(Arrays.asList(keys));
+        int present = 0;
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = keys[i] == null ? null : found.get(keys[i]);
+            if (values[i] != null) {
+                present++;
+            }
+        }
+        return present;
+    }
+
+    /**
+     * Drops key, so that it is read again on its next query. A read of key in progress still
+     * returns to the threads waiting for it, but its record is not kept.
+     */
+    public void invalidate(K key) {
+        invalidations.incrementAndGet();
+        reads.remove(key);
+        hotEntries.remove(key);
+    }
+
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        reads.clear();
+        hotEntries.clear();
+    }
+
+    /**
+     * @return Copy of entries held at the moment, not all entries of the set
+     */
+    @Override
+    public Map<K, V> getAll() {
+        Map<K, V> entries = new HashMap<>();
+        for (Map.Entry<K, Loaded<V>> entry : hotEntries.copy().entrySet()) {
+            if (entry.getValue().value != null && isFresh(entry.getValue())) {
+                entries.put(entry.getKey(), entry.getValue().value);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * @return Entries held at the moment, including absent ones
+     */
+    @Override
+    public int getSize() {
+        return hotEntries.size();
+    }
+
+    public CacheMetrics getMetrics() {
+        return metrics;
+    }
+
+    private Loaded<V> read(K key) {
+        CompletableFuture<Loaded<V>> read = new CompletableFuture<>();
+        CompletableFuture<Loaded<V>> inProgress = reads.putIfAbsent(key, read);
+        if (inProgress != null) {
+            return await(inProgress);
+        }
+        try {
+            // Another read may have completed between the miss and registering this one
+            Loaded<V> loaded = hotEntries.get(key);
+            if (!isFresh(loaded)) {
+                long loadStart = System.nanoTime();
+                Record record = binNames.length == 0
+                        ? requireClient().get(readPolicy, toAerospikeKey(key))
+                        : requireClient().get(readPolicy, toAerospikeKey(key), binNames);
+                loaded = new Loaded<>(record == null ? null : valueMapper.toValue(record),
+                        System.currentTimeMillis());
+                hotEntries.put(key, loaded);
+                // Invalidated while reading, invalidate drops the read before the entry, so either
+                // it removes what was put above or the read is no longer registered here
+                if (reads.get(key) != read) {
+                    hotEntries.remove(key);
+                }
+                metrics.recordLoad(false, System.nanoTime() - loadStart, 1L);
+            }
+            read.complete(loaded);
+            return loaded;
+        } catch (Throwable e) {
+            // Errors too, threads waiting for this read would otherwise wait forever
+            metrics.recordLoadFailure();
+            read.completeExceptionally(e);
+            throw e;
+        } finally {
+            reads.remove(key, read);
+        }
+    }
+
+    private Loaded<V> await(CompletableFuture<Loaded<V>> read) {
+        try {
+            return read.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private AerospikeClient requireClient() {
+        AerospikeClient client = this.aerospikeClient;
+        if (client == null) {
+            throw new IllegalStateException("Cache " + name + " is queried before init");
+        }
+        return client;
+    }
+
+    private Key toAerospikeKey(K key) {
+        return new Key(namespace, setName, Value.get(key));
+    }
+
+    private boolean isFresh(Loaded<V> loaded) {
+        return loaded != null && (expireAfterWriteMillis <= 0 ||
+                System.currentTimeMillis() - loaded.loadTimeStamp < expireAfterWriteMillis);
+    }
+
+    /**
+     * Value read from aerospike, null if record was absent, and when it was read.
+     */
+    private static final class Loaded<V> {
+
+        private final V value;
+        private final long loadTimeStamp;
+
+        private Loaded(V value, long loadTimeStamp) {
+            this.value = value;
+            this.loadTimeStamp = loadTimeStamp;
+        }
+    }
+}
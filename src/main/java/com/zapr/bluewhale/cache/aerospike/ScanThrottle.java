@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.aerospike;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Spaces out records scanned by any number of threads to at most maxRecordsPerSecond. Every
+ * record is given the next free slot on a shared schedule, and its thread parks till then.
+ * Slots are never handed out in the past, so a slow scan does not build up a burst.
+ */
+final class ScanThrottle {
+
+    private final long intervalNanos;
+    private final AtomicLong nextSlot;
+
+    ScanThrottle(long maxRecordsPerSecond) {
+        if (maxRecordsPerSecond <= 0) {
+            throw new IllegalArgumentException("maxRecordsPerSecond must be positive");
+        }
+        this.intervalNanos = Math.max(1L, TimeUnit.SECONDS.toNanos(1) / maxRecordsPerSecond);
+        this.nextSlot = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Waits for the slot of the next record.
+     *
+     * @return false if thread was interrupted while waiting
+     */
+    boolean acquire() {
+        long now = System.nanoTime();
+        long slot;
+        while (true) {
+            long next = nextSlot.get();
+            slot = next - now > 0 ? next : now;
+            if (nextSlot.compareAndSet(next, slot + intervalNanos)) {
+                break;
+            }
+        }
+        long waitNanos = slot - now;
+        while (waitNanos > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(this, waitNanos);
+            waitNanos = slot - System.nanoTime();
+        }
+        return !Thread.currentThread().isInterrupted();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.aerospike;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Info;
+import com.aerospike.client.cluster.Node;
+
+/**
+ * Number of records in a set (or namespace) as per the statistics of cluster nodes, to size a
+ * load before it starts. Counts are as of the last time nodes updated them, good enough for a
+ * hint only.
+ */
+final class SetStats {
+
+    private SetStats() {
+    }
+
+    /**
+     * @param setName Set whose records are counted, null counts the whole namespace
+     * @return Records of the set without their replicas, 0 if nodes don't report them
+     */
+    static long masterObjects(Node[] nodes, String namespace, String setName) throws AerospikeException {
+        if (nodes == null || nodes.length == 0) {
+            return 0L;
+        }
+        long objects = 0L;
+        for (Node node : nodes) {
+            String stats = setName != null ? Info.request(node, "sets/" + namespace + "/" + setName)
+                    : Info.request(node, "namespace/" + namespace);
+            objects += Math.max(stat(stats, "objects", "n_objects"), 0L);
+        }
+        // Every node counts replicas along with the records it is master of
+        long replicationFactor = stat(Info.request(nodes[0], "namespace/" + namespace),
+                "effective_replication_factor", "replication-factor", "repl-factor");
+        return objects / Math.min(Math.max(replicationFactor, 1L), nodes.length);
+    }
+
+    /**
+     * @return Value of the first of names found in stats of the form name=value separated by
+     * ':' or ';', -1 if none is found
+     */
+    static long stat(String stats, String... names) {
+        if (stats == null) {
+            return -1L;
+        }
+        for (String name : names) {
+            for (String stat : stats.split("[:;]")) {
+                int separator = stat.indexOf('=');
+                if (separator > 0 && stat.substring(0, separator).trim().equals(name)) {
+                    try {
+                        return Long.parseLong(stat.substring(separator + 1).trim());
+                    } catch (NumberFormatException e) {
+                        return -1L;
+                    }
+                }
+            }
+        }
+        return -1L;
+    }
+}
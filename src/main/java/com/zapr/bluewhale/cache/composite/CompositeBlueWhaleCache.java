@@ -0,0 +1,411 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.composite;
+
+import com.zapr.bluewhale.cache.CacheSnapshot;
+import com.zapr.bluewhale.cache.RefreshableBlueWhaleCache;
+import com.zapr.bluewhale.cache.SourceProvider;
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+import com.zapr.bluewhale.exception.BlueWhaleCacheInitializationException;
+import com.zapr.bluewhale.exception.BlueWhaleCacheUpdationException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Group of caches which are loaded together and switch to their new entries together, so that
+ * readers never see one member refreshed and another not.
+ * <p>
+ * Members are loaded in parallel, each through its own init or refresh, after which their
+ * snapshots are published at once as the next {@link Generation}. If any member fails, the
+ * others are interrupted, the load waits for all of them to finish, and the current generation
+ * stays. Members which did load have published their new entries in their own caches by then,
+ * so direct {@code member.cache.query} (or snapshot) calls see those, mismatched with members
+ * which failed. Readers pin a generation through {@link #generation()} and look up every member
+ * in it, hence members must be read only through the composite, and refreshed only by it.
+ * <p>
+ * The source of a composite is the executor its members are loaded on. Composite can be
+ * registered with a {@link com.zapr.bluewhale.cache.refresh.RefreshScheduler} like any other
+ * cache, with a {@link com.zapr.bluewhale.cache.FixedSourceProvider} of that executor.
+ */
+@Slf4j
+public class CompositeBlueWhaleCache
+        implements RefreshableBlueWhaleCache<String, CacheSnapshot<?, ?>, Executor> {
+
+    private final List<Member<?, ?, ?>> members = new ArrayList<>();
+
+    @Getter
+    private final String name;
+    // refreshInterval in seconds
+    @Getter
+    private final int refreshInterval;
+
+    private volatile Generation generation = new Generation(new CacheSnapshot<?, ?>[0], 0L);
+
+    @Getter
+    private volatile boolean isCacheInitialized = false;
+
+    public CompositeBlueWhaleCache(@NonNull String name, int refreshInterval) {
+        this.name = name;
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * Adds a member, loaded from sources of sourceProvider. Members are added before the
+     * composite is initialized.
+     *
+     * @return handle through which entries of the member are looked up in a generation
+     */
+    public synchronized <K, V, S> Member<K, V, S> add(@NonNull RefreshableBlueWhaleCache<K, V, S> cache,
+                                                     @NonNull SourceProvider<S> sourceProvider) {
+        if (isCacheInitialized) {
+            throw new IllegalStateException("Members can't be added to initialized cache " + name);
+        }
+        for (Member<?, ?, ?> member : members) {
+            if (member.cache.getName().equals(cache.getName())) {
+                throw new IllegalArgumentException("Cache " + name + " already has a member named " +
+                        cache.getName());
+            }
+        }
+        Member<K, V, S> member = new Member<>(cache, sourceProvider, members.size());
+        members.add(member);
+        return member;
+    }
+
+    /**
+     * @return Current generation, which a request can hold on to for its lifetime
+     */
+    public Generation generation() {
+        return generation;
+    }
+
+    /**
+     * Initializes all members on executor, and publishes them as the first generation.
+     */
+    @Override
+    public void init(Executor executor) throws BlueWhaleCacheInitializationException {
+        if (executor == null) {
+            throw new BlueWhaleCacheInitializationException("Executor cannot be null");
+        }
+        try {
+            load(executor, false);
+        } catch (BlueWhaleCacheException e) {
+            throw new BlueWhaleCacheInitializationException("Init failed!! for cache named : " + name, e);
+        }
+        isCacheInitialized = true;
+    }
+
+    /**
+     * Initializes all members, each on a thread of its own.
+     */
+    public void init() throws BlueWhaleCacheInitializationException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, members.size()));
+        try {
+            init(executor);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Refreshes all updatable members on executor, and publishes them as the next generation.
+     * Members which are not updatable keep their entries.
+     */
+    @Override
+    public void refresh(Executor executor) throws BlueWhaleCacheUpdationException {
+        if (executor == null || !isCacheInitialized) {
+            throw new BlueWhaleCacheUpdationException("refresh failed due to unmet preconditions!!");
+        }
+        try {
+            load(executor, true);
+        } catch (BlueWhaleCacheException e) {
+            throw new BlueWhaleCacheUpdationException("Refresh failed!! for cache named : " + name, e);
+        }
+    }
+
+    /**
+     * Refreshes all updatable members, each on a thread of its own.
+     */
+    public void refresh() throws BlueWhaleCacheUpdationException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, members.size()));
+        try {
+            refresh(executor);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Same as {@link #init(Executor)}, for an initialized composite.
+     */
+    @Override
+    public void unsafeUpdate(Executor executor) throws BlueWhaleCacheUpdationException {
+        if (executor == null) {
+            throw new BlueWhaleCacheUpdationException("Executor cannot be null");
+        }
+        try {
+            load(executor, false);
+        } catch (BlueWhaleCacheException e) {
+            throw new BlueWhaleCacheUpdationException("Update failed!! for cache named : " + name, e);
+        }
+        isCacheInitialized = true;
+    }
+
+    /**
+     * @return Snapshot of member named key in the current generation
+     */
+    @Override
+    public CacheSnapshot<?, ?> query(String key) {
+        return generation.getAll().get(key);
+    }
+
+    /**
+     * @return Snapshots of all members in the current generation, by name
+     */
+    @Override
+    public Map<String, CacheSnapshot<?, ?>> getAll() {
+        return generation.getAll();
+    }
+
+    /**
+     * @return Number of members
+     */
+    @Override
+    public int getSize() {
+        return members.size();
+    }
+
+    @Override
+    public boolean isCacheUpdatable() {
+        return refreshInterval > 0;
+    }
+
+    // Synchronized so that two loads never interleave their members. Returns (or throws) only
+    // once every member load it started has finished, so the next load never overlaps one.
+    private synchronized void load(Executor executor, boolean refresh) throws BlueWhaleCacheException {
+        List<MemberLoad> loads = new ArrayList<>(members.size());
+        for (Member<?, ?, ?> member : members) {
+            MemberLoad load = new MemberLoad(member, refresh);
+            try {
+                executor.execute(load);
+            } catch (RejectedExecutionException e) {
+                abortAndAwait(loads);
+                throw new BlueWhaleCacheException("Executor rejected load of member " + member.getName() +
+                        " of cache named : " + name, e);
+            }
+            loads.add(load);
+        }
+
+        CacheSnapshot<?, ?>[] snapshots = new CacheSnapshot<?, ?>[members.size()];
+        try {
+            for (int i = 0; i < snapshots.length; i++) {
+                snapshots[i] = loads.get(i).get();
+            }
+        } catch (ExecutionException e) {
+            abortAndAwait(loads);
+            throw new BlueWhaleCacheException("Member load failed, keeping generation " +
+                    generation.getNumber() + " of cache named : " + name, e.getCause());
+        } catch (InterruptedException e) {
+            abortAndAwait(loads);
+            Thread.currentThread().interrupt();
+            throw new BlueWhaleCacheException("Interrupted while loading cache named : " + name, e);
+        }
+
+        generation = new Generation(snapshots, generation.getNumber() + 1);
+        log.info("Published generation " + generation.getNumber() + " of cache : " + name);
+    }
+
+    private Map<String, CacheSnapshot<?, ?>> byName(CacheSnapshot<?, ?>[] snapshots) {
+        Map<String, CacheSnapshot<?, ?>> byName = new LinkedHashMap<>();
+        for (int i = 0; i < snapshots.length; i++) {
+            byName.put(members.get(i).cache.getName(), snapshots[i]);
+        }
+        return Collections.unmodifiableMap(byName);
+    }
+
+    /**
+     * Interrupts member loads still running, keeps the ones not started yet from starting, and
+     * waits for all of them to finish, as most loaders don't stop on interrupt.
+     */
+    private static void abortAndAwait(List<MemberLoad> loads) {
+        for (MemberLoad load : loads) {
+            load.abort();
+        }
+        boolean interrupted = false;
+        for (MemberLoad load : loads) {
+            while (true) {
+                try {
+                    load.done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Load of one member on the executor, which can be aborted and awaited whether it started or
+     * not.
+     */
+    private static final class MemberLoad implements Runnable {
+
+        private final Member<?, ?, ?> member;
+        private final boolean refresh;
+        private final CountDownLatch done = new CountDownLatch(1);
+        // Guarded by this
+        private boolean aborted = false;
+        private Thread runner;
+        private CacheSnapshot<?, ?> snapshot;
+        private Throwable failure;
+
+        private MemberLoad(Member<?, ?, ?> member, boolean refresh) {
+            this.member = member;
+            this.refresh = refresh;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (aborted) {
+                    failure = new BlueWhaleCacheException("Load of member " + member.getName() + " aborted");
+                    done.countDown();
+                    return;
+                }
+                runner = Thread.currentThread();
+            }
+            try {
+                snapshot = member.load(refresh);
+            } catch (Throwable e) {
+                failure = e;
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                    // Clears an interrupt from abort, which is not meant for the next task
+                    Thread.interrupted();
+                }
+                done.countDown();
+            }
+        }
+
+        private synchronized void abort() {
+            aborted = true;
+            if (runner != null) {
+                runner.interrupt();
+            }
+        }
+
+        private CacheSnapshot<?, ?> get() throws ExecutionException, InterruptedException {
+            done.await();
+            if (failure != null) {
+                throw new ExecutionException(failure);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Typed handle of a member cache, through which its entries are looked up in a generation.
+     */
+    public static final class Member<K, V, S> {
+
+        private final RefreshableBlueWhaleCache<K, V, S> cache;
+        private final SourceProvider<S> sourceProvider;
+        private final int index;
+
+        private Member(RefreshableBlueWhaleCache<K, V, S> cache, SourceProvider<S> sourceProvider,
+                       int index) {
+            this.cache = cache;
+            this.sourceProvider = sourceProvider;
+            this.index = index;
+        }
+
+        public String getName() {
+            return cache.getName();
+        }
+
+        private CacheSnapshot<K, V> load(boolean refresh) throws BlueWhaleCacheException {
+            if (refresh && !cache.isCacheUpdatable()) {
+                return cache.snapshot();
+            }
+            S source = sourceProvider.acquire();
+            try {
+                if (refresh) {
+                    cache.refresh(source);
+                } else {
+                    cache.init(source);
+                }
+            } finally {
+                sourceProvider.release(source);
+            }
+            return cache.snapshot();
+        }
+    }
+
+    /**
+     * Snapshots of all members as of one load of the composite. Generations are numbered from 1
+     * on, 0 being the empty generation before init.
+     */
+    public final class Generation {
+
+        private final CacheSnapshot<?, ?>[] snapshots;
+        private final Map<String, CacheSnapshot<?, ?>> all;
+        @Getter
+        private final long number;
+
+        private Generation(CacheSnapshot<?, ?>[] snapshots, long number) {
+            this.snapshots = snapshots;
+            this.all = byName(snapshots);
+            this.number = number;
+        }
+
+        @SuppressWarnings("unchecked")
+        public <K, V> CacheSnapshot<K, V> get(Member<K, V, ?> member) {
+            if (member.index >= snapshots.length || members.get(member.index) != member) {
+                throw new IllegalArgumentException("Member " + member.getName() +
+                        " is not loaded in generation " + number + " of cache " + name);
+            }
+            return (CacheSnapshot<K, V>) snapshots[member.index];
+        }
+
+        public <K, V> V query(Member<K, V, ?> member, K key) {
+            return get(member).get(key);
+        }
+
+        public Map<String, CacheSnapshot<?, ?>> getAll() {
+            return all;
+        }
+    }
+}
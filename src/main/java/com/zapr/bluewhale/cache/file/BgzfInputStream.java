@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.file;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import lombok.NonNull;
+
+/**
+ * Decompresses BGZF, gzip made of independent deflate blocks which know their size, by reading
+ * blocks ahead and inflating them on parallelism threads, while handing them out in order.
+ */
+public class BgzfInputStream extends InputStream {
+
+    // Blocks being inflated at once per thread
+    private static final int BLOCKS_AHEAD_PER_THREAD = 4;
+    private static final byte[] NO_BYTES = new byte[0];
+
+    private final DataInputStream in;
+    private final ExecutorService executor;
+    private final int blocksAhead;
+    private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+    private byte[] block = NO_BYTES;
+    private int position = 0;
+    private boolean endOfInput = false;
+
+    public BgzfInputStream(@NonNull InputStream in, int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism should be positive");
+        }
+        this.in = new DataInputStream(in);
+        this.blocksAhead = parallelism * BLOCKS_AHEAD_PER_THREAD;
+        this.executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "bluewhale-bgzf-inflate");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureBlock()) {
+            return -1;
+        }
+        return block[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!ensureBlock()) {
+            return -1;
+        }
+        int n = Math.min(length, block.length - position);
+        System.arraycopy(block, position, bytes, offset, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return block.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        in.close();
+    }
+
+    /**
+     * @return false at the end of input, else true with bytes left in block
+     */
+    private boolean ensureBlock() throws IOException {
+        while (position == block.length) {
+            while (!endOfInput && pending.size() < blocksAhead) {
+                final byte[] compressed = readBlock();
+                if (compressed == null) {
+                    endOfInput = true;
+                } else {
+                    pending.add(executor.submit(new Callable<byte[]>() {
+                        @Override
+                        public byte[] call() throws IOException {
+                            return inflate(compressed);
+                        }
+                    }));
+                }
+            }
+            if (pending.isEmpty()) {
+                return false;
+            }
+            try {
+                block = pending.poll().get();
+            } catch (ExecutionException e) {
+                throw new IOException("Can't inflate BGZF block", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while inflating BGZF block", e);
+            }
+            position = 0;
+        }
+        return true;
+    }
+
+    /**
+     * @return Deflated data of the next block followed by its CRC32 and size, null at the end of
+     * input
+     */
+    private byte[] readBlock() throws IOException {
+        int first = in.read();
+        if (first < 0) {
+            return null;
+        }
+        byte[] header = new byte[12];
+        header[0] = (byte) first;
+        in.readFully(header, 1, header.length - 1);
+        if ((header[0] & 0xff) != 0x1f || (header[1] & 0xff) != 0x8b || header[2] != 8 || (header[3] & 0x04) == 0) {
+            throw new IOException("Not a BGZF block");
+        }
+        int extraLength = littleEndianShort(header, 10);
+        byte[] extra = new byte[extraLength];
+        in.readFully(extra);
+        int blockSize = -1;
+        for (int i = 0; i + 4 <= extraLength; ) {
+            int subfieldLength = littleEndianShort(extra, i + 2);
+            if (extra[i] == 'B' && extra[i + 1] == 'C' && subfieldLength == 2 && i + 6 <= extraLength) {
+                blockSize = littleEndianShort(extra, i + 4) + 1;
+            }
+            i += 4 + subfieldLength;
+        }
+        if (blockSize < 0) {
+            throw new IOException("BGZF block without size");
+        }
+        int remaining = blockSize - header.length - extraLength;
+        if (remaining < 8) {
+            throw new IOException("Invalid BGZF block size " + blockSize);
+        }
+        byte[] data = new byte[remaining];
+        try {
+            in.readFully(data);
+        } catch (EOFException e) {
+            throw new IOException("Truncated BGZF block", e);
+        }
+        return data;
+    }
+
+    private static byte[] inflate(byte[] data) throws IOException {
+        int trailer = data.length - 8;
+        int size = littleEndianInt(data, trailer + 4);
+        byte[] inflated = new byte[size];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data, 0, trailer);
+            int n = 0;
+            while (n < size) {
+                int inflatedNow = inflater.inflate(inflated, n, size - n);
+                if (inflatedNow == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("BGZF block shorter than its size " + size);
+                }
+                n += inflatedNow;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt BGZF block", e);
+        } finally {
+            inflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(inflated, 0, size);
+        if ((int) crc.getValue() != littleEndianInt(data, trailer)) {
+            throw new IOException("CRC mismatch of BGZF block");
+        }
+        return inflated;
+    }
+
+    private static int littleEndianShort(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8;
+    }
+
+    private static int littleEndianInt(byte[] bytes, int offset) {
+        return littleEndianShort(bytes, offset) | littleEndianShort(bytes, offset + 2) << 16;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.file;
+
+import com.zapr.bluewhale.cache.CacheSink;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parses a chunk of a file, which ends at a line boundary, into a map of its own, so chunks can
+ * be parsed in parallel and then applied to a sink in order.
+ */
+abstract class ChunkParser<K, V> {
+
+    private static final Object REMOVED = new Object();
+
+    /**
+     * Chunks are cut at the raw 0x0A byte, so only charsets which encode line feeds (and
+     * carriage returns) as their ASCII byte, and never use that byte within another character,
+     * can be parsed in chunks. UTF-8, ISO-8859-* and the like are, UTF-16 and UTF-32 are not.
+     *
+     * @throws IllegalArgumentException if charset is not such a charset
+     */
+    static Charset checkLineFeedCompatible(Charset charset) {
+        if (!charset.canEncode() || !Arrays.equals("\r\n".getBytes(charset), new byte[]{'\r', '\n'})) {
+            throw new IllegalArgumentException("Charset " + charset + " isn't ASCII compatible, lines can't be " +
+                    "split at line feed bytes");
+        }
+        return charset;
+    }
+
+    /**
+     * @param buffer Bytes of chunk, from 0 up to its limit
+     * @param first  Whether chunk is the head of the file
+     */
+    Map<K, Object> parse(ByteBuffer buffer, boolean first) {
+        final HashMap<K, Object> chunkEntries = new HashMap<>();
+        parse(buffer, first, new CacheSink<K, V>() {
+            @Override
+            public void put(K key, V value) {
+                chunkEntries.put(key, value);
+            }
+
+            @Override
+            public void remove(K key) {
+                chunkEntries.put(key, REMOVED);
+            }
+        });
+        return chunkEntries;
+    }
+
+    /**
+     * Parses lines of buffer, the last of which may lack its line feed, into sink.
+     */
+    protected abstract void parse(ByteBuffer buffer, boolean first, CacheSink<K, V> sink);
+
+    @SuppressWarnings("unchecked")
+    void apply(Map<K, Object> chunkEntries, CacheSink<K, V> sink) {
+        for (Map.Entry<K, Object> entry : chunkEntries.entrySet()) {
+            if (entry.getValue() == REMOVED) {
+                sink.remove(entry.getKey());
+            } else {
+                sink.put(entry.getKey(), (V) entry.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.file;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Compression formats file caches decompress while loading, told apart by the magic bytes at the
+ * head of a file rather than by its name. Only codecs of the JDK are used. ZLIB is never detected,
+ * as its two byte header is also the head of plain text such as "HK," or "x^", and has to be set
+ * explicitly.
+ */
+public enum Compression {
+
+    NONE {
+        @Override
+        InputStream decompress(InputStream in, int bufferSize, int parallelism) {
+            return in;
+        }
+    },
+    GZIP {
+        @Override
+        InputStream decompress(InputStream in, int bufferSize, int parallelism) throws IOException {
+            // Reads every member of multi member files, such as concatenated gzip files
+            return new GZIPInputStream(in, bufferSize);
+        }
+    },
+    /**
+     * Gzip made of independent blocks of at most 64KB, as written by bgzip, which are
+     * decompressed in parallel.
+     */
+    BGZF {
+        @Override
+        InputStream decompress(InputStream in, int bufferSize, int parallelism) {
+            return new BgzfInputStream(in, parallelism);
+        }
+    },
+    /**
+     * Deflate stream with zlib header, as written by java.util.zip.DeflaterOutputStream. Not
+     * detected, as text can pass its header check.
+     */
+    ZLIB {
+        @Override
+        InputStream decompress(InputStream in, int bufferSize, int parallelism) {
+            return new InflaterInputStream(in, new Inflater(), bufferSize);
+        }
+    },
+    /**
+     * Zip archive, whose entries are read one after another. Every entry should end with a line
+     * feed, as its last line is otherwise joined with the first line of the next one.
+     */
+    ZIP {
+        @Override
+        InputStream decompress(InputStream in, int bufferSize, int parallelism) {
+            return new ZipEntriesInputStream(new ZipInputStream(in));
+        }
+    };
+
+    // Bytes at the head of a file needed to tell formats apart
+    private static final int HEADER_BYTES = 18;
+
+    abstract InputStream decompress(InputStream in, int bufferSize, int parallelism) throws IOException;
+
+    /**
+     * @return Compression of file, NONE if it is not compressed in a format with an unambiguous
+     * magic number (gzip, bgzip or zip)
+     */
+    public static Compression detect(File file) throws IOException {
+        byte[] header = new byte[HEADER_BYTES];
+        int read = 0;
+        try (InputStream in = new FileInputStream(file)) {
+            int n;
+            while (read < header.length && (n = in.read(header, read, header.length - read)) > 0) {
+                read += n;
+            }
+        }
+        return detect(header, read);
+    }
+
+    static Compression detect(byte[] header, int length) {
+        if (length >= 4 && (header[0] & 0xff) == 0x1f && (header[1] & 0xff) == 0x8b && header[2] == 8) {
+            // FEXTRA with a BC subfield first, holding the size of the block
+            boolean bgzf = length >= 16 && (header[3] & 0x04) != 0 && header[12] == 'B' && header[13] == 'C' &&
+                    header[14] == 2 && header[15] == 0;
+            return bgzf ? BGZF : GZIP;
+        }
+        if (length >= 4 && header[0] == 'P' && header[1] == 'K' && header[2] == 3 && header[3] == 4) {
+            return ZIP;
+        }
+        return NONE;
+    }
+
+    /**
+     * Opens file decompressing it as per this compression.
+     *
+     * @param bufferSize  Bytes of file read at once
+     * @param parallelism Threads decompressing at once, for formats which can be decompressed in
+     *                    parallel
+     */
+    public InputStream open(File file, int bufferSize, int parallelism) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file), bufferSize);
+        try {
+            return decompress(in, bufferSize, parallelism);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the entries of a zip archive as a single stream.
+     */
+    private static class ZipEntriesInputStream extends InputStream {
+
+        private final ZipInputStream zip;
+        private boolean inEntry = false;
+
+        private ZipEntriesInputStream(ZipInputStream zip) {
+            this.zip = zip;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int n = read(single, 0, 1);
+            return n < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (true) {
+                if (!inEntry) {
+                    if (zip.getNextEntry() == null) {
+                        return -1;
+                    }
+                    inEntry = true;
+                }
+                int n = zip.read(bytes, offset, length);
+                if (n >= 0) {
+                    return n;
+                }
+                zip.closeEntry();
+                inEntry = false;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            zip.close();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.file;
+
+import com.zapr.bluewhale.cache.CacheSink;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses a chunk of a delimited text file byte by byte into a {@link DelimitedRecord} reused for
+ * every line, handing records to a {@link DelimitedRecordMapper}.
+ */
+class DelimitedChunkParser<K, V> extends ChunkParser<K, V> {
+
+    private static final int HEADER_BUFFER_SIZE = 8192;
+
+    private final DelimitedFormat format;
+    private final DelimitedRecordMapper<K, V> mapper;
+    private final Charset charset;
+    private final List<String> columnNames;
+    private final Map<String, Integer> columns;
+
+    /**
+     * @param columnNames Names of the columns as of the header of the file, empty if it has none
+     */
+    DelimitedChunkParser(DelimitedFormat format, DelimitedRecordMapper<K, V> mapper, Charset charset,
+                         List<String> columnNames) {
+        this.format = format;
+        this.mapper = mapper;
+        this.charset = charset;
+        this.columnNames = columnNames;
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = columnNames.size() - 1; i >= 0; i--) {
+            columns.put(columnNames.get(i), i);
+        }
+        this.columns = columns;
+    }
+
+    @Override
+    protected void parse(ByteBuffer buffer, boolean first, CacheSink<K, V> sink) {
+        DelimitedRecord record = new DelimitedRecord(charset, columnNames, columns);
+        boolean skipHeader = first && format.isHeader();
+        int limit = buffer.limit();
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int end = lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            if (end > lineStart) {
+                if (skipHeader) {
+                    skipHeader = false;
+                } else {
+                    split(buffer, lineStart, end, format, record);
+                    mapper.map(record, sink);
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+    }
+
+    /**
+     * Splits [start, end) of buffer into fields of record, unquoting them.
+     */
+    static void split(ByteBuffer buffer, int start, int end, DelimitedFormat format, DelimitedRecord record) {
+        byte delimiter = (byte) format.getDelimiter();
+        char quote = format.getQuote();
+        record.clear();
+        int i = start;
+        while (true) {
+            int fieldStart = record.length();
+            if (quote != DelimitedFormat.NO_QUOTE && i < end && buffer.get(i) == quote) {
+                i++;
+                while (i < end) {
+                    byte b = buffer.get(i);
+                    if (b == quote) {
+                        if (i + 1 < end && buffer.get(i + 1) == quote) {
+                            record.append(b);
+                            i += 2;
+                            continue;
+                        }
+                        i++;
+                        break;
+                    }
+                    record.append(b);
+                    i++;
+                }
+            }
+            // Unquoted field, or whatever follows the closing quote up to the delimiter
+            while (i < end && buffer.get(i) != delimiter) {
+                record.append(buffer.get(i));
+                i++;
+            }
+            record.endField(fieldStart);
+            if (i >= end) {
+                return;
+            }
+            // Past the delimiter, a line ending with one ends with an empty field
+            i++;
+        }
+    }
+
+    /**
+     * Creates a parser for file, reading the names of its columns first if format has a header.
+     */
+    static <K, V> DelimitedChunkParser<K, V> of(File file, Compression compression, DelimitedFormat format,
+                                                DelimitedRecordMapper<K, V> mapper, Charset charset)
+            throws IOException {
+        List<String> columnNames = Collections.emptyList();
+        if (format.isHeader()) {
+            try (InputStream in = compression.open(file, HEADER_BUFFER_SIZE, 1)) {
+                columnNames = readHeader(in, format, charset);
+            }
+        }
+        return new DelimitedChunkParser<>(format, mapper, charset, columnNames);
+    }
+
+    /**
+     * Reads the names of the columns from the first non-empty line of in, the line parse skips as
+     * the header.
+     */
+    static List<String> readHeader(InputStream in, DelimitedFormat format, Charset charset) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        byte[] bytes;
+        int end;
+        int b;
+        do {
+            line.reset();
+            while ((b = in.read()) >= 0 && b != '\n') {
+                line.write(b);
+            }
+            bytes = line.toByteArray();
+            end = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+        } while (end == 0 && b >= 0);
+        if (end == 0) {
+            return Collections.emptyList();
+        }
+        DelimitedRecord record = new DelimitedRecord(charset, Collections.<String>emptyList(),
+                Collections.<String, Integer>emptyMap());
+        split(ByteBuffer.wrap(bytes), 0, end, format, record);
+        List<String> names = new ArrayList<>(record.getFieldCount());
+        for (int column = 0; column < record.getFieldCount(); column++) {
+            names.add(record.getString(column).trim());
+        }
+        return Collections.unmodifiableList(names);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.file;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Format of delimited text files parsed into {@link DelimitedRecord}s: the byte between fields,
+ * the byte quoting fields, and whether the first line of a file is a header naming its columns.
+ * <p>
+ * Quoted fields can hold delimiters, and quotes doubled, but not line breaks, as files are split
+ * at line feeds to be parsed in parallel.
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public final class DelimitedFormat {
+
+    // Quote of formats whose fields are never quoted
+    public static final char NO_QUOTE = 0;
+
+    public static final DelimitedFormat CSV = new DelimitedFormat(',', '"', false);
+    public static final DelimitedFormat TSV = new DelimitedFormat('\t', NO_QUOTE, false);
+
+    private final char delimiter;
+    private final char quote;
+    private final boolean header;
+
+    /**
+     * @param delimiter ASCII character between fields
+     * @param quote     ASCII character quoting fields, NO_QUOTE if fields are never quoted
+     * @param header    Whether first line of a file names its columns, instead of being a record
+     */
+    public DelimitedFormat(char delimiter, char quote, boolean header) {
+        if (delimiter == 0 || delimiter >= 0x80 || delimiter == '\n' || delimiter == '\r') {
+            throw new IllegalArgumentException("Delimiter should be an ASCII character other than line breaks");
+        }
+        if (quote >= 0x80 || quote == delimiter || quote == '\n' || quote == '\r') {
+            throw new IllegalArgumentException("Quote should be an ASCII character other than delimiter");
+        }
+        this.delimiter = delimiter;
+        this.quote = quote;
+        this.header = header;
+    }
+
+    public DelimitedFormat withHeader(boolean header) {
+        return new DelimitedFormat(delimiter, quote, header);
+    }
+}
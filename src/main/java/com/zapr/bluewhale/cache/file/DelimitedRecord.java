@@ -0,0 +1,352 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.file;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fields of a line of a delimited text file, unquoted, as slices of a byte array which is reused
+ * from line to line. Numbers are parsed straight from the bytes, so reading a numeric field does
+ * not create any object.
+ * <p>
+ * Columns are numbered from 0, and can be looked up by name in files with a header.
+ */
+public final class DelimitedRecord {
+
+    // Parses decimals with at most this many digits exactly without Double.parseDouble
+    private static final double[] DOUBLE_POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    private static final float[] FLOAT_POWERS_OF_TEN = {
+            1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+    // Largest mantissas which double and float hold exactly
+    private static final long MAX_EXACT_DOUBLE_MANTISSA = 1L << 53;
+    private static final long MAX_EXACT_FLOAT_MANTISSA = 1L << 24;
+
+    private final Charset charset;
+    private final Map<String, Integer> columns;
+    private final List<String> columnNames;
+    private final CharsetDecoder decoder;
+    private byte[] bytes = new byte[256];
+    private int length = 0;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int fieldCount = 0;
+    // Reused to decode fields for getChars
+    private ByteBuffer byteView = ByteBuffer.wrap(bytes);
+    private CharBuffer chars = CharBuffer.allocate(64);
+
+    DelimitedRecord(Charset charset, List<String> columnNames, Map<String, Integer> columns) {
+        this.charset = charset;
+        this.columnNames = columnNames;
+        this.columns = columns;
+        this.decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * @return Fields of this line, which may be fewer or more than the columns of the header
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * @return Names of the columns as of the header of the file, empty if it has none
+     */
+    public List<String> getColumnNames() {
+        return Collections.unmodifiableList(columnNames);
+    }
+
+    /**
+     * @return Column named name in the header of the file, -1 if there is none
+     */
+    public int column(String name) {
+        Integer column = columns.get(name);
+        return column == null ? -1 : column;
+    }
+
+    /**
+     * @return Bytes of field
+     */
+    public int length(int column) {
+        checkColumn(column);
+        return ends[column] - starts[column];
+    }
+
+    /**
+     * @return true if field is empty, or missing from this line
+     */
+    public boolean isEmpty(int column) {
+        return column >= fieldCount || starts[column] == ends[column];
+    }
+
+    public String getString(int column) {
+        checkColumn(column);
+        return new String(bytes, starts[column], ends[column] - starts[column], charset);
+    }
+
+    /**
+     * @return Characters of field, in a buffer reused by the next call, so they must be copied to
+     * be kept
+     */
+    public CharSequence getChars(int column) {
+        checkColumn(column);
+        int fieldLength = ends[column] - starts[column];
+        int capacity = (int) Math.ceil(fieldLength * (double) decoder.maxCharsPerByte());
+        if (chars.capacity() < capacity) {
+            chars = CharBuffer.allocate(Math.max(capacity, 2 * chars.capacity()));
+        }
+        if (byteView.array() != bytes) {
+            byteView = ByteBuffer.wrap(bytes);
+        }
+        byteView.limit(ends[column]).position(starts[column]);
+        chars.clear();
+        decoder.reset();
+        decoder.decode(byteView, chars, true);
+        decoder.flush(chars);
+        chars.flip();
+        return chars;
+    }
+
+    /**
+     * @return Field as a long, surrounding spaces ignored
+     * @throws NumberFormatException If it is not a decimal integer in the range of long
+     */
+    public long getLong(int column) {
+        checkColumn(column);
+        int start = trimStart(column);
+        int end = trimEnd(column, start);
+        if (start == end) {
+            throw numberFormatException(column);
+        }
+        boolean negative = bytes[start] == '-';
+        if (negative || bytes[start] == '+') {
+            start++;
+            if (start == end) {
+                throw numberFormatException(column);
+            }
+        }
+        // Accumulated negatively, as Long.MIN_VALUE has no positive counterpart
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplyLimit = limit / 10;
+        long result = 0;
+        for (int i = start; i < end; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9 || result < multiplyLimit) {
+                throw numberFormatException(column);
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw numberFormatException(column);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * @return Field as an int, surrounding spaces ignored
+     * @throws NumberFormatException If it is not a decimal integer in the range of int
+     */
+    public int getInt(int column) {
+        long value = getLong(column);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw numberFormatException(column);
+        }
+        return (int) value;
+    }
+
+    /**
+     * @return Field as a double, surrounding spaces ignored. Plain decimals of up to 15 digits
+     * are parsed in place, others through {@link Double#parseDouble(String)}.
+     */
+    public double getDouble(int column) {
+        checkColumn(column);
+        int start = trimStart(column);
+        int end = trimEnd(column, start);
+        long decimal = parseDecimal(start, end);
+        if (decimal >= 0) {
+            long mantissa = decimal >>> 8;
+            int scale = (int) (decimal & 0x7f);
+            if (mantissa < MAX_EXACT_DOUBLE_MANTISSA && scale < DOUBLE_POWERS_OF_TEN.length) {
+                // Both exact, so the division is rounded correctly
+                double value = mantissa / DOUBLE_POWERS_OF_TEN[scale];
+                return bytes[start] == '-' ? -value : value;
+            }
+        }
+        return Double.parseDouble(getString(column));
+    }
+
+    /**
+     * @return Field as a float, surrounding spaces ignored. Plain decimals of up to 7 digits are
+     * parsed in place, others through {@link Float#parseFloat(String)}.
+     */
+    public float getFloat(int column) {
+        checkColumn(column);
+        int start = trimStart(column);
+        int end = trimEnd(column, start);
+        long decimal = parseDecimal(start, end);
+        if (decimal >= 0) {
+            long mantissa = decimal >>> 8;
+            int scale = (int) (decimal & 0x7f);
+            if (mantissa < MAX_EXACT_FLOAT_MANTISSA && scale < FLOAT_POWERS_OF_TEN.length) {
+                float value = mantissa / FLOAT_POWERS_OF_TEN[scale];
+                return bytes[start] == '-' ? -value : value;
+            }
+        }
+        return Float.parseFloat(getString(column));
+    }
+
+    public String getString(String columnName) {
+        return getString(requireColumn(columnName));
+    }
+
+    public long getLong(String columnName) {
+        return getLong(requireColumn(columnName));
+    }
+
+    public int getInt(String columnName) {
+        return getInt(requireColumn(columnName));
+    }
+
+    public double getDouble(String columnName) {
+        return getDouble(requireColumn(columnName));
+    }
+
+    public float getFloat(String columnName) {
+        return getFloat(requireColumn(columnName));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("DelimitedRecord[");
+        for (int column = 0; column < fieldCount; column++) {
+            builder.append(column == 0 ? "" : ", ").append(getString(column));
+        }
+        return builder.append(']').toString();
+    }
+
+    /**
+     * Parses [start, end) as an optionally signed plain decimal, such as -12.50.
+     *
+     * @return Digits without sign and point shifted left by 8, ORed with the number of digits
+     * after the point, or -1 if bytes are not a plain decimal of at most 16 digits
+     */
+    private long parseDecimal(int start, int end) {
+        int i = start;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; i < end; i++) {
+            byte b = bytes[i];
+            if (b == '.' && scale < 0) {
+                scale = 0;
+            } else if (b >= '0' && b <= '9') {
+                mantissa = 10 * mantissa + (b - '0');
+                if (scale >= 0) {
+                    scale++;
+                }
+                if (++digits > 16) {
+                    return -1;
+                }
+            } else {
+                return -1;
+            }
+        }
+        if (digits == 0) {
+            return -1;
+        }
+        return mantissa << 8 | Math.max(scale, 0);
+    }
+
+    private int trimStart(int column) {
+        int start = starts[column];
+        while (start < ends[column] && bytes[start] == ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private int trimEnd(int column, int start) {
+        int end = ends[column];
+        while (end > start && bytes[end - 1] == ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private void checkColumn(int column) {
+        if (column < 0 || column >= fieldCount) {
+            throw new IndexOutOfBoundsException("No column " + column + " in line of " + fieldCount + " fields");
+        }
+    }
+
+    private int requireColumn(String columnName) {
+        Integer column = columns.get(columnName);
+        if (column == null) {
+            throw new IllegalArgumentException("No column named " + columnName);
+        }
+        return column;
+    }
+
+    private NumberFormatException numberFormatException(int column) {
+        return new NumberFormatException("For input string: \"" + getString(column) + "\"");
+    }
+
+    void clear() {
+        length = 0;
+        fieldCount = 0;
+    }
+
+    void append(byte b) {
+        if (length == bytes.length) {
+            bytes = Arrays.copyOf(bytes, 2 * bytes.length);
+        }
+        bytes[length++] = b;
+    }
+
+    /**
+     * Ends the field started at fieldStart, bytes appended since making it up.
+     */
+    void endField(int fieldStart) {
+        if (fieldCount == starts.length) {
+            starts = Arrays.copyOf(starts, 2 * starts.length);
+            ends = Arrays.copyOf(ends, 2 * ends.length);
+        }
+        starts[fieldCount] = fieldStart;
+        ends[fieldCount] = length;
+        fieldCount++;
+    }
+
+    int length() {
+        return length;
+    }
+}
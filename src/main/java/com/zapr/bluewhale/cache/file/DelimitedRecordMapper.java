@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.file;
+
+import com.zapr.bluewhale.cache.CacheSink;
+
+/**
+ * Maps records of delimited text files to entries of a file cache. Records are handed out from
+ * several threads at once, so implementations must be thread safe, ideally stateless.
+ */
+public interface DelimitedRecordMapper<K, V> {
+
+    /**
+     * @param record Fields of a line, valid only until map returns as record is reused for the
+     *               next line
+     * @param sink   Put (or remove) entries parsed from record in it
+     */
+    public void map(DelimitedRecord record, CacheSink<K, V> sink);
+}
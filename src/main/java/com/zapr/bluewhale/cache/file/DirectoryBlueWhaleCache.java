@@ -0,0 +1,390 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.file;
+
+import com.zapr.bluewhale.cache.AbstractBlueWhaleCache;
+import com.zapr.bluewhale.cache.ChangeTrackingSink;
+import com.zapr.bluewhale.cache.MapCacheSink;
+import com.zapr.bluewhale.cache.RefreshableBlueWhaleCache;
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+import com.zapr.bluewhale.exception.BlueWhaleCacheInitializationException;
+import com.zapr.bluewhale.exception.BlueWhaleCacheUpdationException;
+import com.zapr.bluewhale.map.PersistentHashMap;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cache loaded from the part files of a directory, such as the part-00000.. files written by a
+ * map reduce or spark job, without concatenating them first.
+ * <p>
+ * Parts are parsed in parallel, each into its own map, and merged in order of their names, so an
+ * entry of a later part replaces the one of an earlier part with the same key. Every part keeps
+ * the modification time and size it was loaded at, and a refresh parses again only the parts
+ * which were added or changed since, dropping the ones which are gone. The merged entries are
+ * published at once, only after every changed part was parsed.
+ * <p>
+ * Merged entries are kept in a {@link PersistentHashMap}, so a refresh applies only the keys of
+ * changed (or dropped) parts on top of current entries, each resolved to the last part holding
+ * it, instead of merging every part again. The per part maps are kept for that, so heap holds
+ * every key twice: once in its part, and once in the merged entries.
+ */
+@Slf4j
+public class DirectoryBlueWhaleCache<K, V> extends AbstractBlueWhaleCache<K, V, File>
+        implements RefreshableBlueWhaleCache<K, V, File> {
+
+    // Skips hidden files, and marker or metadata files such as _SUCCESS
+    public static final FileFilter DEFAULT_PART_FILTER = new FileFilter() {
+        @Override
+        public boolean accept(File file) {
+            String fileName = file.getName();
+            return file.isFile() && !fileName.startsWith(".") && !fileName.startsWith("_");
+        }
+    };
+
+    @Getter
+    private final boolean isCacheUpdatable;
+    //refreshInterval in seconds, used only in case of updatable caches
+    @Getter
+    private final int refreshInterval;
+    private FileReaderDelegate fileLoaderDelegate;
+    @Getter
+    private FileLineDelegate<K, V> fileLineDelegate;
+    @Getter
+    private DelimitedFormat delimitedFormat;
+    @Getter
+    private DelimitedRecordMapper<K, V> recordMapper;
+    @Getter
+    private String name;
+    @Getter
+    private volatile boolean cacheInitialized = false;
+    // Time at which directory was last checked for modifications
+    @Getter
+    private volatile long lastLoadTimeStamp;
+    // Charset of part files, platform default unless set
+    @Getter
+    @Setter
+    @NonNull
+    private Charset charset = Charset.defaultCharset();
+    // Parts parsed at once
+    @Getter
+    @Setter
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    // Files of directory which are parts of the cache
+    @Getter
+    @Setter
+    @NonNull
+    private FileFilter partFilter = DEFAULT_PART_FILTER;
+    // Whether compressed parts (gzip, bgzip or zip) are detected by their head and decompressed
+    // while loading
+    @Getter
+    @Setter
+    private boolean decompress = true;
+    // Compression of every part if known up front, detected by the head of each part unless set.
+    // Needed for zlib, whose header plain text can pass. Ignored if decompress is off.
+    @Getter
+    @Setter
+    private Compression compression;
+    // Parts as of the last load by file name, in the order they are merged
+    private TreeMap<String, Part<K, V>> parts = new TreeMap<>();
+
+    public DirectoryBlueWhaleCache(FileReaderDelegate fileReaderDelegate, String name,
+                                   boolean isUpdatable, int refreshInterval) {
+        this.fileLoaderDelegate = fileReaderDelegate;
+        this.name = name;
+        this.isCacheUpdatable = isUpdatable;
+        this.lastLoadTimeStamp = 0L;
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * Creates a cache which memory maps every part, handing every line to fileLineDelegate.
+     */
+    public DirectoryBlueWhaleCache(FileLineDelegate<K, V> fileLineDelegate, String name,
+                                   boolean isUpdatable, int refreshInterval) {
+        this((FileReaderDelegate) null, name, isUpdatable, refreshInterval);
+        this.fileLineDelegate = fileLineDelegate;
+    }
+
+    /**
+     * Creates a cache which parses every part as delimited text, handing every record to
+     * recordMapper. With a header, every part is expected to start with one.
+     */
+    public DirectoryBlueWhaleCache(@NonNull DelimitedFormat delimitedFormat,
+                                   @NonNull DelimitedRecordMapper<K, V> recordMapper, String name,
+                                   boolean isUpdatable, int refreshInterval) {
+        this((FileReaderDelegate) null, name, isUpdatable, refreshInterval);
+        this.delimitedFormat = delimitedFormat;
+        this.recordMapper = recordMapper;
+    }
+
+    public void init(File directory) throws BlueWhaleCacheInitializationException {
+        if (directory == null || !directory.isDirectory()) {
+            throw new BlueWhaleCacheInitializationException("Null or Invalid directory path!!");
+        }
+        try {
+            load(directory, false, true);
+        } catch (BlueWhaleCacheException e) {
+            throw new BlueWhaleCacheInitializationException("Init failed!!", e);
+        }
+        cacheInitialized = true;
+    }
+
+    /**
+     * Throws the same exceptions as {@link FileBlueWhaleCache#refresh(File)}: initialization
+     * exceptions for a bad directory or a failed load, updation exceptions for non updatable
+     * caches.
+     */
+    public void refresh(File directory) throws BlueWhaleCacheInitializationException,
+            BlueWhaleCacheUpdationException {
+        if (directory == null || !directory.isDirectory()) {
+            throw new BlueWhaleCacheInitializationException("Null or Invalid directory path!!");
+        }
+        if (!isCacheUpdatable()) {
+            throw new BlueWhaleCacheUpdationException("Refresh failed for nonUpdatable cache");
+        }
+        try {
+            load(directory, true, false);
+        } catch (BlueWhaleCacheException e) {
+            throw new BlueWhaleCacheInitializationException("Refresh failed!!", e);
+        }
+    }
+
+    public void unsafeUpdate(File directory) throws BlueWhaleCacheUpdationException {
+        if (directory == null || !directory.isDirectory()) {
+            throw new BlueWhaleCacheUpdationException("Null or Invalid directory path while unsafeUpdate!!");
+        }
+        try {
+            load(directory, false, true);
+        } catch (BlueWhaleCacheException e) {
+            throw new BlueWhaleCacheUpdationException("Update failed!!", e);
+        }
+    }
+
+    /**
+     * @return Names of the parts as of the last load, in the order they were merged
+     */
+    public synchronized List<String> getPartNames() {
+        return new ArrayList<>(parts.keySet());
+    }
+
+    /**
+     * Parses the parts of directory which changed since the last load, or all of them if asked
+     * to, and publishes the merge of all parts. Parts are updated only once every changed part
+     * was parsed, so a failed load leaves both them and the published entries as they were.
+     */
+    private synchronized void load(File directory, boolean refresh, boolean fully)
+            throws BlueWhaleCacheException {
+        long loadTimeStamp = System.currentTimeMillis();
+        long loadStart = System.nanoTime();
+        try {
+            File[] files = directory.listFiles(partFilter);
+            if (files == null) {
+                throw new BlueWhaleCacheException("Can't list directory " + directory + " of cache named : " + name);
+            }
+            TreeMap<String, Part<K, V>> loadedParts = new TreeMap<>();
+            Map<String, File> changedFiles = new LinkedHashMap<>();
+            for (File file : files) {
+                Part<K, V> part = parts.get(file.getName());
+                if (fully || part == null || part.loaded.isModifiedSince(file)) {
+                    changedFiles.put(file.getName(), file);
+                } else {
+                    loadedParts.put(file.getName(), part);
+                }
+            }
+            if (changedFiles.isEmpty() && loadedParts.size() == parts.size() && !fully) {
+                this.lastLoadTimeStamp = loadTimeStamp;
+                recordLoad(refresh, loadStart, 0L);
+                return;
+            }
+
+            loadedParts.putAll(loadParts(changedFiles, loadTimeStamp));
+            Map<K, V> current = currentEntries();
+            long rows;
+            if (fully || !(current instanceof PersistentHashMap)) {
+                PersistentHashMap.Editor<K, V> editor = PersistentHashMap.<K, V>empty().edit();
+                for (Part<K, V> part : loadedParts.values()) {
+                    for (Map.Entry<K, V> entry : part.entries.entrySet()) {
+                        editor.put(entry.getKey(), entry.getValue());
+                    }
+                }
+                PersistentHashMap<K, V> entries = editor.persistent();
+                publish(entries, loadTimeStamp);
+                rows = entries.size();
+            } else {
+                rows = merge((PersistentHashMap<K, V>) current, loadedParts, loadTimeStamp);
+            }
+            this.parts = loadedParts;
+            this.lastLoadTimeStamp = loadTimeStamp;
+            recordLoad(refresh, loadStart, rows);
+            log.info("Done loading cache : " + name + ", parsed " + changedFiles.size() + " of " +
+                    loadedParts.size() + " parts");
+        } catch (BlueWhaleCacheException e) {
+            recordLoadFailure(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Publishes current entries with the keys of parts which were replaced or dropped, and of
+     * parts which were added, resolved against loadedParts.
+     *
+     * @return Entries changed
+     */
+    private long merge(PersistentHashMap<K, V> current, TreeMap<String, Part<K, V>> loadedParts,
+                       long loadTimeStamp) {
+        Set<K> touchedKeys = new HashSet<>();
+        for (Map.Entry<String, Part<K, V>> part : parts.entrySet()) {
+            if (loadedParts.get(part.getKey()) != part.getValue()) {
+                touchedKeys.addAll(part.getValue().entries.keySet());
+            }
+        }
+        for (Map.Entry<String, Part<K, V>> part : loadedParts.entrySet()) {
+            if (parts.get(part.getKey()) != part.getValue()) {
+                touchedKeys.addAll(part.getValue().entries.keySet());
+            }
+        }
+
+        // Later parts win, so a key resolves to the last part holding it
+        Collection<Part<K, V>> lastFirst = loadedParts.descendingMap().values();
+        PersistentHashMap.Editor<K, V> editor = current.edit();
+        ChangeTrackingSink<K, V> sink = new ChangeTrackingSink<>(editor, hasIndexes());
+        for (K key : touchedKeys) {
+            Part<K, V> last = null;
+            for (Part<K, V> part : lastFirst) {
+                if (part.entries.containsKey(key)) {
+                    last = part;
+                    break;
+                }
+            }
+            if (last == null) {
+                if (current.containsKey(key)) {
+                    sink.remove(key);
+                }
+            } else if (last.entries.get(key) != current.get(key) || !current.containsKey(key)) {
+                sink.put(key, last.entries.get(key));
+            }
+        }
+        PersistentHashMap<K, V> entries = editor.persistent();
+        if (sink.getChangedKeys() != null) {
+            publish(entries, loadTimeStamp, sink.getChangedKeys());
+        } else {
+            publish(entries, loadTimeStamp);
+        }
+        return sink.getCount();
+    }
+
+    private Map<String, Part<K, V>> loadParts(Map<String, File> files, final long loadTimeStamp)
+            throws BlueWhaleCacheException {
+        Map<String, Part<K, V>> loaded = new HashMap<>();
+        if (files.isEmpty()) {
+            return loaded;
+        }
+        if (parallelism <= 0) {
+            throw new BlueWhaleCacheException("Parallelism should be positive, cache named : " + name);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, files.size()));
+        Map<String, Future<Part<K, V>>> futures = new LinkedHashMap<>();
+        try {
+            for (final File file : files.values()) {
+                futures.put(file.getName(), executor.submit(new Callable<Part<K, V>>() {
+                    @Override
+                    public Part<K, V> call() throws Exception {
+                        return loadPart(file, loadTimeStamp);
+                    }
+                }));
+            }
+            for (Map.Entry<String, Future<Part<K, V>>> future : futures.entrySet()) {
+                loaded.put(future.getKey(), future.getValue().get());
+            }
+            return loaded;
+        } catch (ExecutionException e) {
+            throw new BlueWhaleCacheException("Load of parts failed for cache named : " + name, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BlueWhaleCacheException("Interrupted during load of parts for cache named : " + name, e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Part<K, V> loadPart(File file, long loadTimeStamp) throws IOException, BlueWhaleCacheException {
+        // Read before parsing, so writes made meanwhile are picked up by the next refresh
+        long modified = file.lastModified();
+        long length = file.length();
+        HashMap<K, V> entries = new HashMap<>();
+        Compression compression = !decompress ? Compression.NONE :
+                this.compression != null ? this.compression : Compression.detect(file);
+        if (fileLineDelegate != null || recordMapper != null) {
+            ChunkParser<K, V> parser = recordMapper == null ? new LineChunkParser<>(fileLineDelegate, charset) :
+                    DelimitedChunkParser.of(file, compression, delimitedFormat, recordMapper, charset);
+            if (compression == Compression.NONE) {
+                new MappedFileLoader<>(parser, charset, 1).load(file, new MapCacheSink<>(entries));
+            } else {
+                new StreamingFileLoader<>(parser, charset, 1).load(file, compression, new MapCacheSink<>(entries));
+            }
+        } else {
+            InputStream in = compression == Compression.NONE ? new FileInputStream(file) :
+                    StreamingFileLoader.openReadAhead(file, compression, 1);
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(in, charset))) {
+                fileLoaderDelegate.addEntry(br, entries);
+            }
+        }
+        return new Part<>(new LoadedFile(modified, length, loadTimeStamp), entries);
+    }
+
+    /**
+     * A part file as of its last load, along with the entries parsed from it.
+     */
+    private static class Part<K, V> {
+
+        private final LoadedFile loaded;
+        private final HashMap<K, V> entries;
+
+        private Part(LoadedFile loaded, HashMap<K, V> entries) {
+            this.loaded = loaded;
+            this.entries = entries;
+        }
+    }
+}
@@ -18,48 +18,120 @@
 
 package com.zapr.bluewhale.cache.file;
 
-import com.zapr.bluewhale.cache.BlueWhaleCache;
+import com.zapr.bluewhale.cache.AbstractBlueWhaleCache;
+import com.zapr.bluewhale.cache.CacheSnapshotFile;
+import com.zapr.bluewhale.cache.ChangeTrackingSink;
+import com.zapr.bluewhale.cache.MapCacheSink;
+import com.zapr.bluewhale.cache.RefreshableBlueWhaleCache;
 import com.zapr.bluewhale.exception.BlueWhaleCacheException;
 import com.zapr.bluewhale.exception.BlueWhaleCacheInitializationException;
 import com.zapr.bluewhale.exception.BlueWhaleCacheUpdationException;
+import com.zapr.bluewhale.map.PersistentHashMap;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.HashMap;
-import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32;
 
 import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
-public class FileBlueWhaleCache<K, V> implements BlueWhaleCache<K, V, File> {
+public class FileBlueWhaleCache<K, V> extends AbstractBlueWhaleCache<K, V, File>
+        implements RefreshableBlueWhaleCache<K, V, File> {
+
+    // Bytes read from the head of a file to estimate its number of lines before the first load
+    private static final int SIZE_HINT_SAMPLE_BYTES = 64 * 1024;
+    // Bytes just before the end of the last load which must be unchanged for a file to be taken
+    // as the same file grown by appends
+    private static final int APPENDED_FILE_CHECK_BYTES = 4096;
 
     @Getter
     private final boolean isCacheUpdatable;
     //refreshInterval in seconds, used only in case of updatable caches
     @Getter
     private final int refreshInterval;
-    // No thread safety guarantees here, but will never be an issue
-    // as its reference will always change atomically
-    private HashMap<K, V> entries;
     // delegate who exposes actual implementation of adding entries in cache
     private FileReaderDelegate fileLoaderDelegate;
+    // line level delegate, used instead of fileLoaderDelegate for memory mapped parallel loads
+    @Getter
+    private FileLineDelegate<K, V> fileLineDelegate;
+    // format and mapper of delimited text files, used instead of fileLineDelegate to parse
+    // fields straight from bytes
+    @Getter
+    private DelimitedFormat delimitedFormat;
+    @Getter
+    private DelimitedRecordMapper<K, V> recordMapper;
     @Getter
     private String name;
     @Getter
-    private boolean cacheInitialized = false;
+    private volatile boolean cacheInitialized = false;
+    // Time at which file was last checked for modifications
     @Getter
-    private long lastLoadTimeStamp;
-
+    private volatile long lastLoadTimeStamp;
+    // Charset of file, platform default unless set
+    @Getter
+    @Setter
+    @NonNull
+    private Charset charset = Charset.defaultCharset();
+    // Threads parsing the file at once, used only with fileLineDelegate
+    @Getter
+    @Setter
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    // Local copy of entries, written after every load and read on init if newer than the file
+    @Getter
+    @Setter
+    private CacheSnapshotFile<K, V> snapshotFile;
+    // Bytes of file per entry as of the last load, to size the next one after the file's size
+    private volatile double bytesPerEntry = 0;
+    // Whether a modified file is hashed before reloading, to skip reloads of files whose
+    // content is the same, such as files merely touched or copied over by a deploy
+    @Getter
+    @Setter
+    private boolean skipUnchangedContent = false;
+    // Modification time, size and (if skipUnchangedContent) fingerprint of file as loaded, and
+    // time at which it was loaded
+    private volatile LoadedFile loaded = LoadedFile.NONE;
+    private volatile FileFingerprint loadedFingerprint;
+    // Whether file only ever grows by lines appended to it, such as a log. Refreshes then load
+    // only the lines appended since the last load, on top of current entries. Needs a
+    // fileLineDelegate, and doesn't use snapshotFile.
+    @Getter
+    @Setter
+    private boolean appendOnly = false;
+    // Position after the last line loaded, identity (inode) of file, and CRC32 of the bytes just
+    // before that position, as of the last load of an appendOnly file
+    private volatile long appendedOffset = 0L;
+    private volatile Object appendedFileKey;
+    private volatile long appendedCheckCrc;
+    // Whether compressed files (gzip, bgzip or zip) are detected by their head and decompressed
+    // while loading, on a thread other than the ones parsing them
+    @Getter
+    @Setter
+    private boolean decompress = true;
+    // Compression of file if known up front, detected by its head unless set. Needed for zlib,
+    // whose header plain text can pass. Ignored if decompress is off.
+    @Getter
+    @Setter
+    private Compression compression;
 
     public FileBlueWhaleCache(FileReaderDelegate fileReaderDelegate, String name,
                               boolean isUpdatable, int refreshInterval) {
         this.fileLoaderDelegate = fileReaderDelegate;
         this.name = name;
-        this.entries = new HashMap<K, V>();
         this.isCacheUpdatable = isUpdatable;
         this.lastLoadTimeStamp = 0L;
         this.refreshInterval = refreshInterval;
@@ -70,8 +142,26 @@ public class FileBlueWhaleCache<K, V> implements BlueWhaleCache<K, V, File> {
         this(fileReaderDelegate, name, true, refreshInterval);
     }
 
-    public V query(K key) {
-        return entries.get(key);
+    /**
+     * Creates a cache which memory maps the file and parses it in chunks on parallelism threads,
+     * handing every line to fileLineDelegate.
+     */
+    public FileBlueWhaleCache(FileLineDelegate<K, V> fileLineDelegate, String name,
+                              boolean isUpdatable, int refreshInterval) {
+        this((FileReaderDelegate) null, name, isUpdatable, refreshInterval);
+        this.fileLineDelegate = fileLineDelegate;
+    }
+
+    /**
+     * Creates a cache which parses the file as delimited text in chunks on parallelism threads,
+     * handing every record to recordMapper.
+     */
+    public FileBlueWhaleCache(@NonNull DelimitedFormat delimitedFormat,
+                              @NonNull DelimitedRecordMapper<K, V> recordMapper, String name,
+                              boolean isUpdatable, int refreshInterval) {
+        this((FileReaderDelegate) null, name, isUpdatable, refreshInterval);
+        this.delimitedFormat = delimitedFormat;
+        this.recordMapper = recordMapper;
     }
 
     public void init(File file) throws BlueWhaleCacheInitializationException {
@@ -79,14 +169,37 @@ public class FileBlueWhaleCache<K, V> implements BlueWhaleCache<K, V, File> {
         if (file == null || !file.exists()) {
             throw new BlueWhaleCacheInitializationException("Null or Invalid file path!!");
         }
+        if (appendOnly) {
+            try {
+                loadAppended(file, false, true);
+            } catch (BlueWhaleCacheException e) {
+                throw new BlueWhaleCacheInitializationException("Init failed!!", e);
+            }
+            cacheInitialized = true;
+            return;
+        }
+        if (loadFromSnapshotFile(file)) {
+            cacheInitialized = true;
+            return;
+        }
+        long loadStart = System.nanoTime();
         try {
             long initTimeStamp = System.currentTimeMillis();
-            BuildFileBasedCache(file, this.entries);
+            long modified = file.lastModified();
+            long length = file.length();
+            FileFingerprint fingerprint = skipUnchangedContent ? fingerprint(file) : null;
+            HashMap<K, V> newEntries = newEntries(sizeHint(file));
+            BuildFileBasedCache(file, newEntries);
+            publish(newEntries, initTimeStamp);
             this.lastLoadTimeStamp = initTimeStamp;
+            markLoaded(modified, length, initTimeStamp, fingerprint);
+            recordLoad(false, loadStart, newEntries.size());
         } catch (BlueWhaleCacheException e) {
+            recordLoadFailure(e);
             throw new BlueWhaleCacheInitializationException("Init failed!!", e);
         }
         cacheInitialized = true;
+        writeSnapshotFile();
 
     }
 
@@ -101,35 +214,308 @@ public class FileBlueWhaleCache<K, V> implements BlueWhaleCache<K, V, File> {
             throw new BlueWhaleCacheUpdationException("Refresh failed for nonUpdatable cache");
         }
 
+        if (appendOnly) {
+            try {
+                loadAppended(file, true, false);
+            } catch (BlueWhaleCacheException e) {
+                throw new BlueWhaleCacheInitializationException("Refresh failed!!", e);
+            }
+            return;
+        }
+
+        long loadStart = System.nanoTime();
         try {
             long refreshTimeStamp = System.currentTimeMillis();
-            if (file.lastModified() > this.lastLoadTimeStamp) {
-                HashMap<K, V> newEntries = new HashMap<>();
-                BuildFileBasedCache(file, newEntries);
-                synchronized (this) {
-                    this.entries = newEntries;
+            if (loaded.isModifiedSince(file)) {
+                long modified = file.lastModified();
+                long length = file.length();
+                FileFingerprint fingerprint = skipUnchangedContent ? fingerprint(file) : null;
+                if (fingerprint != null && fingerprint.equals(loadedFingerprint)) {
+                    log.info("Content of file unchanged, skipping reload of cache : " + name);
+                    this.lastLoadTimeStamp = refreshTimeStamp;
+                    markLoaded(modified, length, refreshTimeStamp, fingerprint);
+                    recordLoad(true, loadStart, 0L);
+                    return;
                 }
+                HashMap<K, V> newEntries = newEntries(sizeHint(file));
+                BuildFileBasedCache(file, newEntries);
+                publish(newEntries, refreshTimeStamp);
+                this.lastLoadTimeStamp = refreshTimeStamp;
+                markLoaded(modified, length, refreshTimeStamp, fingerprint);
+                recordLoad(true, loadStart, newEntries.size());
+                writeSnapshotFile();
+            } else {
+                this.lastLoadTimeStamp = refreshTimeStamp;
+                recordLoad(true, loadStart, 0L);
             }
-            this.lastLoadTimeStamp = refreshTimeStamp;
         } catch (BlueWhaleCacheException e) {
+            recordLoadFailure(e);
             throw new BlueWhaleCacheInitializationException("Refresh failed!!", e);
         }
     }
 
+    /**
+     * Writes current entries to snapshotFile.
+     */
+    public void saveSnapshot() throws BlueWhaleCacheException {
+        if (snapshotFile == null) {
+            throw new BlueWhaleCacheException("No snapshot file set for cache named : " + name);
+        }
+        snapshotFile.write(currentSnapshot());
+    }
+
+    /**
+     * Loads entries from snapshotFile if it is fresh, and the file has not been modified since
+     * the snapshot was taken.
+     */
+    private boolean loadFromSnapshotFile(File file) {
+        if (snapshotFile == null || !snapshotFile.isFresh()) {
+            return false;
+        }
+        if (file.lastModified() > snapshotFile.getLoadTimeStamp()) {
+            log.info("File modified after snapshot, loading from file for cache : " + name);
+            return false;
+        }
+        long loadStart = System.nanoTime();
+        try {
+            HashMap<K, V> newEntries = new HashMap<>();
+            long snapshotTimeStamp = snapshotFile.load(new MapCacheSink<>(newEntries));
+            publish(newEntries, snapshotTimeStamp);
+            this.lastLoadTimeStamp = snapshotTimeStamp;
+            markLoaded(file.lastModified(), file.length(), snapshotTimeStamp, null);
+            recordLoad(false, loadStart, newEntries.size());
+            log.info("Done loading cache : " + name + " from snapshot " + snapshotFile.getFile());
+            return true;
+        } catch (BlueWhaleCacheException e) {
+            log.warn("Can't load snapshot, loading from file for cache : " + name, e);
+            return false;
+        }
+    }
+
+    private void writeSnapshotFile() {
+        if (snapshotFile == null) {
+            return;
+        }
+        try {
+            snapshotFile.write(currentSnapshot());
+        } catch (BlueWhaleCacheException e) {
+            log.warn("Can't write snapshot of cache : " + name + ". Cache was populated though. " +
+                    "Hence I don't care and will swallow this", e);
+        }
+    }
+
+    /**
+     * Refreshes the cache whenever file changes, from a thread of its own, instead of polling
+     * it. Changes are picked up once file has not been written for debounceMillis, and files
+     * renamed in place of file are picked up as well. Refreshes of the watcher must not overlap
+     * with other refreshes, so a watched cache must not also be registered with a
+     * {@link com.zapr.bluewhale.cache.refresh.RefreshScheduler}.
+     *
+     * @return watcher, to be closed once cache is not needed any more
+     */
+    public FileWatcher watch(@NonNull File file, long debounceMillis) throws BlueWhaleCacheException {
+        if (!isCacheUpdatable()) {
+            throw new BlueWhaleCacheException("Can't watch file of nonUpdatable cache : " + name);
+        }
+        try {
+            return new FileWatcher(this, file, debounceMillis);
+        } catch (IOException e) {
+            throw new BlueWhaleCacheException("Can't watch file of cache : " + name, e);
+        }
+    }
+
+    /**
+     * Loads lines appended to an appendOnly file since the last load, on top of current entries.
+     * All of file is loaded instead if asked to, or if file is not the one loaded last time
+     * grown by appends: it was rotated (has another identity), truncated, or rewritten. A last
+     * line without line feed is left for the next load, as it may still be being written.
+     */
+    private void loadAppended(File file, boolean refresh, boolean fully) throws BlueWhaleCacheException {
+        if (fileLineDelegate == null && recordMapper == null) {
+            throw new BlueWhaleCacheException("Append only loading needs a FileLineDelegate or " +
+                    "DelimitedRecordMapper, cache : " + name);
+        }
+        if (compressionOf(file) != Compression.NONE) {
+            throw new BlueWhaleCacheException("Append only loading of compressed files isn't supported, cache : " +
+                    name);
+        }
+        long loadTimeStamp = System.currentTimeMillis();
+        long loadStart = System.nanoTime();
+        try {
+            Object fileKey = Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+            long offset = appendedOffset;
+            boolean appended = !fully && offset > 0 && currentEntries() instanceof PersistentHashMap &&
+                    Objects.equals(fileKey, appendedFileKey) && file.length() >= offset &&
+                    checkCrc(file, offset) == appendedCheckCrc;
+            if (!appended && !fully && offset > 0) {
+                log.info("File rotated or truncated, loading all of it for cache : " + name);
+            }
+            if (appended && file.length() == offset) {
+                this.lastLoadTimeStamp = loadTimeStamp;
+                recordLoad(refresh, loadStart, 0L);
+                return;
+            }
+
+            PersistentHashMap.Editor<K, V> editor = (appended ? (PersistentHashMap<K, V>) currentEntries()
+                    : PersistentHashMap.<K, V>empty()).edit();
+            ChangeTrackingSink<K, V> sink = new ChangeTrackingSink<>(editor, appended && hasIndexes());
+            long loadedOffset = new MappedFileLoader<>(newChunkParser(file, Compression.NONE), charset, parallelism)
+                    .load(file, appended ? offset : 0L, true, sink);
+            PersistentHashMap<K, V> entries = editor.persistent();
+            if (sink.getChangedKeys() != null) {
+                publish(entries, loadTimeStamp, sink.getChangedKeys());
+            } else {
+                publish(entries, loadTimeStamp);
+            }
+            this.appendedOffset = loadedOffset;
+            this.appendedFileKey = fileKey;
+            this.appendedCheckCrc = checkCrc(file, loadedOffset);
+            this.lastLoadTimeStamp = loadTimeStamp;
+            recordLoad(refresh, loadStart, appended ? sink.getCount() : entries.size());
+            log.info("Done loading cache : " + name + " up to byte " + loadedOffset);
+        } catch (IOException e) {
+            BlueWhaleCacheException exception = new BlueWhaleCacheException("IOException while reading file. " +
+                    "Init/Update failed!! for cache named : " + name, e);
+            recordLoadFailure(exception);
+            throw exception;
+        } catch (BlueWhaleCacheException e) {
+            recordLoadFailure(e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return CRC32 of the APPENDED_FILE_CHECK_BYTES of file just before offset
+     */
+    private static long checkCrc(File file, long offset) throws IOException {
+        long start = Math.max(0L, offset - APPENDED_FILE_CHECK_BYTES);
+        ByteBuffer buffer = ByteBuffer.allocate((int) (offset - start));
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    // Shrunk meanwhile, can't be the same file grown by appends
+                    return -1L;
+                }
+            }
+        }
+        buffer.flip();
+        CRC32 crc = new CRC32();
+        crc.update(buffer);
+        return crc.getValue();
+    }
+
+    private void markLoaded(long modified, long length, long loadTimeStamp, FileFingerprint fingerprint) {
+        this.loaded = new LoadedFile(modified, length, loadTimeStamp);
+        this.loadedFingerprint = fingerprint;
+    }
+
+    private ChunkParser<K, V> newChunkParser(File file, Compression compression) throws BlueWhaleCacheException {
+        if (recordMapper == null) {
+            return new LineChunkParser<>(fileLineDelegate, charset);
+        }
+        try {
+            return DelimitedChunkParser.of(file, compression, delimitedFormat, recordMapper, charset);
+        } catch (IOException e) {
+            throw new BlueWhaleCacheException("Can't read header of file of cache named : " + name, e);
+        }
+    }
+
+    private Compression compressionOf(File file) throws BlueWhaleCacheException {
+        if (!decompress) {
+            return Compression.NONE;
+        }
+        if (compression != null) {
+            return compression;
+        }
+        try {
+            return Compression.detect(file);
+        } catch (IOException e) {
+            throw new BlueWhaleCacheException("Can't read head of file of cache named : " + name, e);
+        }
+    }
+
+    private FileFingerprint fingerprint(File file) throws BlueWhaleCacheException {
+        try {
+            return FileFingerprint.of(file);
+        } catch (IOException e) {
+            throw new BlueWhaleCacheException("Can't fingerprint file of cache named : " + name, e);
+        }
+    }
+
+    /**
+     * Expected entries in file: its size over bytes per entry of the last load, or over average
+     * length of the lines at its head before the first load. 0 if unknown.
+     */
+    private long sizeHint(File file) {
+        long length = file.length();
+        if (bytesPerEntry > 0) {
+            return (long) (length / bytesPerEntry);
+        }
+        byte[] sample = new byte[(int) Math.min(length, SIZE_HINT_SAMPLE_BYTES)];
+        int read = 0;
+        try (FileInputStream in = new FileInputStream(file)) {
+            int n;
+            while (read < sample.length && (n = in.read(sample, read, sample.length - read)) > 0) {
+                read += n;
+            }
+        } catch (IOException e) {
+            log.debug("Can't sample file of cache : " + name, e);
+            return 0L;
+        }
+        if (decompress && (compression != null ? compression : Compression.detect(sample, read)) !=
+                Compression.NONE) {
+            // Line feeds of compressed bytes don't tell anything
+            return 0L;
+        }
+        long lines = 0;
+        for (int i = 0; i < read; i++) {
+            if (sample[i] == '\n') {
+                lines++;
+            }
+        }
+        return read == 0 ? 0L : lines * length / read;
+    }
+
     private void BuildFileBasedCache(File file, HashMap<K, V> entries)
             throws BlueWhaleCacheException {
 
+        Compression compression = compressionOf(file);
+        if (fileLineDelegate != null || recordMapper != null) {
+            try {
+                if (compression == Compression.NONE) {
+                    new MappedFileLoader<>(newChunkParser(file, compression), charset, parallelism)
+                            .load(file, new MapCacheSink<>(entries));
+                } else {
+                    new StreamingFileLoader<>(newChunkParser(file, compression), charset, parallelism)
+                            .load(file, compression, new MapCacheSink<>(entries));
+                }
+            } catch (BlueWhaleCacheException e) {
+                throw new BlueWhaleCacheException("Init/Update failed!! for cache named : " + name, e);
+            }
+            recordBytesPerEntry(file, entries.size());
+            log.info("Done loading cache : " + name);
+            return;
+        }
+
         BufferedReader br;
         try {
-            br = new BufferedReader(new FileReader(file));
+            if (compression == Compression.NONE) {
+                br = new BufferedReader(new InputStreamReader(new FileInputStream(file), charset));
+            } else {
+                br = new BufferedReader(new InputStreamReader(
+                        StreamingFileLoader.openReadAhead(file, compression, parallelism), charset));
+            }
         } catch (FileNotFoundException e) {
             throw new BlueWhaleCacheException("Can't read given file");
+        } catch (IOException e) {
+            throw new BlueWhaleCacheException("Can't decompress given file", e);
         }
 
         try {
             try {
                 // Code to populate cache
                 fileLoaderDelegate.addEntry(br, entries);
+                recordBytesPerEntry(file, entries.size());
                 log.info("Done loading cache : " + name);
             } catch (IOException e) {
                 throw new BlueWhaleCacheException("IOException while reading file. " +
@@ -147,36 +533,45 @@ public class FileBlueWhaleCache<K, V> implements BlueWhaleCache<K, V, File> {
         }
     }
 
+    private void recordBytesPerEntry(File file, int entries) {
+        if (entries > 0) {
+            bytesPerEntry = file.length() / (double) entries;
+        }
+    }
+
     public void unsafeUpdate(File fileSource) throws BlueWhaleCacheUpdationException {
 
-        HashMap<K, V> auxiliaryCache = new HashMap<>();
         long updateTimestamp = System.currentTimeMillis();
 
         if (fileSource == null || !fileSource.exists()) {
             throw new BlueWhaleCacheUpdationException("Null or Invalid file path while unsafeUpdate!!");
         }
+        if (appendOnly) {
+            try {
+                loadAppended(fileSource, false, true);
+            } catch (BlueWhaleCacheException e) {
+                throw new BlueWhaleCacheUpdationException("Update failed!!", e);
+            }
+            return;
+        }
+        HashMap<K, V> auxiliaryCache = newEntries(sizeHint(fileSource));
+        long loadStart = System.nanoTime();
+        long modified = fileSource.lastModified();
+        long length = fileSource.length();
+        FileFingerprint fingerprint;
         try {
+            fingerprint = skipUnchangedContent ? fingerprint(fileSource) : null;
             BuildFileBasedCache(fileSource, auxiliaryCache);
         } catch (BlueWhaleCacheException e) {
+            recordLoadFailure(e);
             throw new BlueWhaleCacheUpdationException("Update failed!!", e);
         }
 
-        // Almost contention free, so not very expensive
-        synchronized (this) {
-            this.entries = auxiliaryCache;
-            this.lastLoadTimeStamp = updateTimestamp;
-        }
-    }
-
-    @Override
-    public Map<K, V> getAll() throws BlueWhaleCacheUpdationException {
-        return entries;
+        publish(auxiliaryCache, updateTimestamp);
+        this.lastLoadTimeStamp = updateTimestamp;
+        markLoaded(modified, length, updateTimestamp, fingerprint);
+        recordLoad(false, loadStart, auxiliaryCache.size());
+        writeSnapshotFile();
     }
 
-    @Override
-    public int getSize() {
-        return this.entries.size();
-    }
-
-
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Size and CRC32 of the content of a file, to tell whether a file whose modification time
+ * changed still holds the same bytes. Hashing streams the file through a direct buffer, which
+ * is many times faster than parsing it.
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public final class FileFingerprint {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final long length;
+    private final long crc;
+
+    private FileFingerprint(long length, long crc) {
+        this.length = length;
+        this.crc = crc;
+    }
+
+    public static FileFingerprint of(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        long length = 0;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                length += buffer.remaining();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return new FileFingerprint(length, crc.getValue());
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.file;
+
+import com.zapr.bluewhale.cache.CacheSink;
+
+/**
+ * Line level delegate for file caches. Lines are handed out from several threads at once, so
+ * implementations must be thread safe, ideally stateless.
+ */
+public interface FileLineDelegate<K, V> {
+
+    /**
+     * @param line Line without its line terminator, never empty
+     * @param sink Put (or remove) entries parsed from line in it
+     */
+    public void addLine(String line, CacheSink<K, V> sink);
+}
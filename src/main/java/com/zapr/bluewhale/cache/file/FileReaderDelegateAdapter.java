@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.file;
+
+import com.zapr.bluewhale.cache.MapLoaderAdapter;
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.HashMap;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Loads entries through a {@link FileReaderDelegate}, for caches which take a
+ * {@link com.zapr.bluewhale.cache.CacheLoaderDelegate}. Reader is closed by whoever opened it.
+ */
+public class FileReaderDelegateAdapter<K, V> extends MapLoaderAdapter<K, V, BufferedReader> {
+
+    @Getter
+    private final FileReaderDelegate fileReaderDelegate;
+
+    public FileReaderDelegateAdapter(@NonNull FileReaderDelegate fileReaderDelegate) {
+        this.fileReaderDelegate = fileReaderDelegate;
+    }
+
+    @Override
+    protected void addEntries(BufferedReader br, HashMap<K, V> entries) throws BlueWhaleCacheException {
+        try {
+            fileReaderDelegate.addEntry(br, entries);
+        } catch (IOException e) {
+            throw new BlueWhaleCacheException("IOException while reading file", e);
+        }
+    }
+}
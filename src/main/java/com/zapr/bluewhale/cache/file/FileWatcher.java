@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.file;
+
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Refreshes a {@link FileBlueWhaleCache} when its file changes, as reported by a
+ * {@link WatchService} on the directory of the file.
+ * <p>
+ * Directory is watched rather than the file, so that a file written elsewhere and renamed in
+ * place of it (the safe way to replace a file being read) is picked up like one written in
+ * place. Events of other files of the directory are ignored. A refresh starts only once the file
+ * has seen no event for debounceMillis, so that a file being written is read only after the
+ * writer is done with it.
+ *
+ * @see FileBlueWhaleCache#watch(File, long)
+ */
+@Slf4j
+public class FileWatcher implements Closeable {
+
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 500L;
+
+    private final FileBlueWhaleCache<?, ?> cache;
+    @Getter
+    private final File file;
+    @Getter
+    private final long debounceMillis;
+    private final Path fileName;
+    private final WatchService watchService;
+    private volatile boolean closed = false;
+
+    FileWatcher(FileBlueWhaleCache<?, ?> cache, File file, long debounceMillis) throws IOException {
+        if (debounceMillis < 0) {
+            throw new IllegalArgumentException("Debounce can't be negative");
+        }
+        this.cache = cache;
+        this.file = file.getAbsoluteFile();
+        this.debounceMillis = debounceMillis;
+        this.fileName = this.file.toPath().getFileName();
+        Path directory = this.file.toPath().getParent();
+        this.watchService = directory.getFileSystem().newWatchService();
+        try {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            watchService.close();
+            throw e;
+        }
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watch();
+            }
+        }, "bluewhale-watch-" + cache.getName());
+        thread.setDaemon(true);
+        thread.start();
+        log.info("Watching " + this.file + " for cache : " + cache.getName());
+    }
+
+    /**
+     * Stops watching. A refresh which is already running is allowed to complete.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        watchService.close();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private void watch() {
+        try {
+            while (!closed) {
+                if (!isFileEvent(watchService.take())) {
+                    continue;
+                }
+                // Writer may not be done yet, wait till the file is quiet for debounceMillis
+                long lastEventAt = System.nanoTime();
+                long quietNanos;
+                while ((quietNanos = TimeUnit.MILLISECONDS.toNanos(debounceMillis) -
+                        (System.nanoTime() - lastEventAt)) > 0) {
+                    WatchKey key = watchService.poll(quietNanos, TimeUnit.NANOSECONDS);
+                    if (key != null && isFileEvent(key)) {
+                        lastEventAt = System.nanoTime();
+                    }
+                }
+                refresh();
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Closed while waiting for events
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            log.info("Stopped watching " + file + " for cache : " + cache.getName());
+        }
+    }
+
+    private void refresh() {
+        // Deleted to be replaced by a rename, which comes as an event of its own
+        if (closed || !file.exists()) {
+            return;
+        }
+        try {
+            cache.refresh(file);
+        } catch (BlueWhaleCacheException | RuntimeException e) {
+            log.warn("Refresh on change of " + file + " failed for cache : " + cache.getName(), e);
+        }
+    }
+
+    /**
+     * @return Whether any event of key is of the watched file, or may have been
+     */
+    private boolean isFileEvent(WatchKey key) {
+        boolean fileEvent = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+                fileEvent = true;
+            }
+        }
+        key.reset();
+        return fileEvent;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.file;
+
+import com.zapr.bluewhale.cache.CacheSink;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Parses a chunk line by line through a {@link FileLineDelegate}.
+ */
+class LineChunkParser<K, V> extends ChunkParser<K, V> {
+
+    private final FileLineDelegate<K, V> lineDelegate;
+    private final Charset charset;
+
+    LineChunkParser(FileLineDelegate<K, V> lineDelegate, Charset charset) {
+        this.lineDelegate = lineDelegate;
+        this.charset = charset;
+    }
+
+    @Override
+    protected void parse(ByteBuffer buffer, boolean first, CacheSink<K, V> sink) {
+        byte[] lineBytes = new byte[256];
+        int limit = buffer.limit();
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int length = lineEnd - lineStart;
+            if (length > 0 && buffer.get(lineEnd - 1) == '\r') {
+                length--;
+            }
+            if (length > 0) {
+                if (length > lineBytes.length) {
+                    lineBytes = new byte[Math.max(length, 2 * lineBytes.length)];
+                }
+                buffer.position(lineStart);
+                buffer.get(lineBytes, 0, length);
+                lineDelegate.addLine(new String(lineBytes, 0, length, charset), sink);
+            }
+            lineStart = lineEnd + 1;
+        }
+    }
+}
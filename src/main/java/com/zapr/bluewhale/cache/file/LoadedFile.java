@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.file;
+
+import java.io.File;
+
+/**
+ * Modification time and size of a file as of its last load, which tell whether it has been
+ * modified since.
+ */
+final class LoadedFile {
+
+    // Coarsest modification time granularity of common filesystems (FAT), writes this close to a
+    // load may not change the modification time seen at load
+    static final long MTIME_GRANULARITY_MILLIS = 2000L;
+
+    // A file never loaded, taken as modified whatever its state
+    static final LoadedFile NONE = new LoadedFile(-1L, -1L, 0L);
+
+    private final long modified;
+    private final long length;
+    private final long loadedAt;
+
+    /**
+     * @param modified Modification time of file read before loading it
+     * @param length   Size of file read before loading it
+     * @param loadedAt Time of the load
+     */
+    LoadedFile(long modified, long length, long loadedAt) {
+        this.modified = modified;
+        this.length = length;
+        this.loadedAt = loadedAt;
+    }
+
+    /**
+     * Whether file has been modified since it was loaded. Files modified within
+     * MTIME_GRANULARITY_MILLIS of their load are taken as modified, as later writes may not have
+     * moved their modification time.
+     */
+    boolean isModifiedSince(File file) {
+        long fileModified = file.lastModified();
+        return fileModified != modified || file.length() != length ||
+                fileModified + MTIME_GRANULARITY_MILLIS > loadedAt;
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.file;
+
+import com.zapr.bluewhale.cache.CacheSink;
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Loads a file by memory mapping it, splitting it at line boundaries into chunks and parsing the
+ * chunks in parallel through a {@link FileLineDelegate} (or {@link DelimitedRecordMapper}).
+ * <p>
+ * Every chunk is parsed into its own map, and chunks are then applied to the sink in file order,
+ * so the outcome is the same as parsing the file line by line on a single thread. At most a few
+ * chunks per thread are parsed ahead of the one being applied, and a chunk's map is dropped once
+ * applied, so parsed chunks waiting for the sink don't add up to a second copy of the file.
+ * <p>
+ * Lines are split at the 0x0A byte, whatever the charset, so charset has to be ASCII compatible
+ * (UTF-8 or ISO-8859-1 for instance, not UTF-16).
+ */
+@Slf4j
+public class MappedFileLoader<K, V> {
+
+    // Largest region mapped at once, well under the 2GB limit of a MappedByteBuffer
+    static final long MAX_CHUNK_SIZE = 1L << 30;
+    // Files smaller than this are parsed as a single chunk
+    static final long MIN_CHUNK_SIZE = 1L << 20;
+    private static final int CHUNKS_PER_THREAD = 4;
+    // Chunks parsing, or parsed and waiting to be applied, per thread at most
+    private static final int QUEUED_PER_THREAD = 2;
+
+    private final ChunkParser<K, V> parser;
+    @Getter
+    private final Charset charset;
+    @Getter
+    private final int parallelism;
+
+    public MappedFileLoader(@NonNull FileLineDelegate<K, V> lineDelegate, @NonNull Charset charset,
+                            int parallelism) {
+        this(new LineChunkParser<>(lineDelegate, charset), charset, parallelism);
+    }
+
+    MappedFileLoader(@NonNull ChunkParser<K, V> parser, @NonNull Charset charset, int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism should be positive");
+        }
+        this.parser = parser;
+        this.charset = ChunkParser.checkLineFeedCompatible(charset);
+        this.parallelism = parallelism;
+    }
+
+    public void load(File file, CacheSink<K, V> sink) throws BlueWhaleCacheException {
+        load(file, 0L, false, sink);
+    }
+
+    /**
+     * Loads lines of file starting at byte position from, which must be the start of a line.
+     *
+     * @param completeLinesOnly Whether a last line not terminated by a line feed yet is left
+     *                          out, as it may still be being written
+     * @return Position just after the last line loaded
+     */
+    public long load(File file, long from, boolean completeLinesOnly, CacheSink<K, V> sink)
+            throws BlueWhaleCacheException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            long size = channel.size();
+            long end = completeLinesOnly ? lastLineEnd(channel, from, size) : size;
+            List<long[]> chunks = split(channel, from, end);
+            if (chunks.size() == 1) {
+                parser.apply(parseChunk(channel, chunks.get(0)[0], chunks.get(0)[1]), sink);
+            } else {
+                loadInParallel(channel, chunks, sink);
+            }
+            return Math.max(end, from);
+        } catch (IOException e) {
+            throw new BlueWhaleCacheException("IOException while reading file " + file, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw new BlueWhaleCacheException("IOException while reading file " + file, e.getCause());
+            }
+            throw new BlueWhaleCacheException("Load of file " + file + " failed", e.getCause());
+        } catch (RuntimeException e) {
+            // Thrown by the delegate or sink, reported as when thrown on a parsing thread
+            throw new BlueWhaleCacheException("Load of file " + file + " failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BlueWhaleCacheException("Interrupted during parallel load of file " + file, e);
+        }
+    }
+
+    /**
+     * Parses chunks on up to parallelism threads and applies them in file order, parsing at most
+     * QUEUED_PER_THREAD chunks per thread ahead of the one being applied.
+     */
+    private void loadInParallel(final FileChannel channel, List<long[]> chunks, CacheSink<K, V> sink)
+            throws ExecutionException, InterruptedException {
+
+        int threads = Math.min(parallelism, chunks.size());
+        int maxQueued = threads * QUEUED_PER_THREAD;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        ArrayDeque<Future<Map<K, Object>>> parsing = new ArrayDeque<>(maxQueued);
+        try {
+            for (final long[] chunk : chunks) {
+                while (parsing.size() >= maxQueued) {
+                    parser.apply(parsing.poll().get(), sink);
+                }
+                parsing.add(executor.submit(new Callable<Map<K, Object>>() {
+                    @Override
+                    public Map<K, Object> call() throws IOException {
+                        return parseChunk(channel, chunk[0], chunk[1]);
+                    }
+                }));
+            }
+            while (!parsing.isEmpty()) {
+                parser.apply(parsing.poll().get(), sink);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Splits [from, to) into [start, end) ranges, every range ending just after a line feed (or
+     * at to).
+     */
+    private List<long[]> split(FileChannel channel, long from, long to) throws IOException {
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, (to - from) / ((long) parallelism * CHUNKS_PER_THREAD));
+        chunkSize = Math.min(chunkSize, MAX_CHUNK_SIZE);
+
+        List<long[]> chunks = new ArrayList<>();
+        ByteBuffer probe = ByteBuffer.allocate(8192);
+        long start = from;
+        while (start < to) {
+            long end = Math.min(start + chunkSize, to);
+            if (end < to) {
+                end = nextLineStart(channel, end, to, probe);
+            }
+            chunks.add(new long[]{start, end});
+            start = end;
+        }
+        if (chunks.isEmpty()) {
+            chunks.add(new long[]{from, from});
+        }
+        return chunks;
+    }
+
+    /**
+     * @return Position just after the last line feed in [from, size), from if there is none
+     */
+    private static long lastLineEnd(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(8192);
+        long end = size;
+        while (end > from) {
+            long start = Math.max(from, end - probe.capacity());
+            probe.clear();
+            probe.limit((int) (end - start));
+            int read = 0;
+            while (probe.hasRemaining()) {
+                int n = channel.read(probe, start + read);
+                if (n < 0) {
+                    throw new IOException("File shrunk while being read");
+                }
+                read += n;
+            }
+            for (int i = read - 1; i >= 0; i--) {
+                if (probe.get(i) == '\n') {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return from;
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, long fileSize,
+                                      ByteBuffer probe) throws IOException {
+        while (position < fileSize) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return fileSize;
+    }
+
+    private Map<K, Object> parseChunk(FileChannel channel, long start, long end) throws IOException {
+        if (end <= start) {
+            return new HashMap<>();
+        }
+        return parser.parse(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start), start == 0);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import lombok.NonNull;
+
+/**
+ * Reads a stream ahead on a thread of its own into a bounded queue of buffers, so that
+ * decompressing a file overlaps with parsing it. The reader blocks once the queue is full, which
+ * bounds the memory held by buffers read ahead.
+ */
+public class ReadAheadInputStream extends InputStream {
+
+    private static final byte[] END = new byte[0];
+
+    private final InputStream in;
+    private final BlockingQueue<byte[]> buffers;
+    private final Thread reader;
+    private volatile Throwable failure;
+    private byte[] buffer = new byte[0];
+    private int position = 0;
+    private boolean ended = false;
+
+    /**
+     * @param bufferSize Bytes read into every buffer
+     * @param buffers    Buffers read ahead at most
+     */
+    public ReadAheadInputStream(@NonNull InputStream in, final int bufferSize, int buffers, String threadName) {
+        if (bufferSize <= 0 || buffers <= 0) {
+            throw new IllegalArgumentException("Buffer size and buffers should be positive");
+        }
+        this.in = in;
+        this.buffers = new ArrayBlockingQueue<>(buffers);
+        this.reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                readAhead(bufferSize);
+            }
+        }, threadName);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private void readAhead(int bufferSize) {
+        boolean closed = false;
+        try {
+            while (true) {
+                byte[] bytes = new byte[bufferSize];
+                int filled = 0;
+                int n = 0;
+                while (filled < bytes.length && (n = in.read(bytes, filled, bytes.length - filled)) >= 0) {
+                    filled += n;
+                }
+                if (filled > 0) {
+                    buffers.put(filled == bytes.length ? bytes : Arrays.copyOf(bytes, filled));
+                }
+                if (n < 0) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            // Closed by the consumer
+            closed = true;
+        } catch (Throwable e) {
+            // Anything else, even an OutOfMemoryError or unchecked decompressor failure, has to
+            // reach the consumer, which otherwise waits for END forever
+            failure = e;
+        } finally {
+            if (!closed) {
+                try {
+                    buffers.put(END);
+                } catch (InterruptedException e) {
+                    // Closed by the consumer
+                }
+            }
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureBuffer()) {
+            return -1;
+        }
+        return buffer[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!ensureBuffer()) {
+            return -1;
+        }
+        int n = Math.min(length, buffer.length - position);
+        System.arraycopy(buffer, position, bytes, offset, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return buffer.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.interrupt();
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        in.close();
+    }
+
+    private boolean ensureBuffer() throws IOException {
+        while (position == buffer.length) {
+            if (ended) {
+                return false;
+            }
+            try {
+                buffer = buffers.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for stream to be read ahead", e);
+            }
+            position = 0;
+            if (buffer == END) {
+                ended = true;
+                if (failure != null) {
+                    throw new IOException("Can't read ahead stream", failure);
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.file;
+
+import com.zapr.bluewhale.cache.CacheSink;
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Loads a stream which can't be memory mapped, such as a compressed file, through a
+ * {@link FileLineDelegate}. The stream is decompressed on a thread of its own, cut at line
+ * boundaries into chunks, and chunks are parsed on parallelism threads and applied to the sink in
+ * order, the outcome being the same as parsing the stream line by line on a single thread.
+ * Lines are cut at the 0x0A byte, so charset has to be ASCII compatible (not UTF-16, say).
+ */
+public class StreamingFileLoader<K, V> {
+
+    // Bytes decompressed into every buffer read ahead, and parsed at once
+    static final int CHUNK_SIZE = 1 << 20;
+    // Buffers read ahead, and chunks parsing, per parsing thread at most
+    private static final int QUEUED_PER_THREAD = 2;
+
+    private final ChunkParser<K, V> parser;
+    @Getter
+    private final Charset charset;
+    @Getter
+    private final int parallelism;
+
+    public StreamingFileLoader(@NonNull FileLineDelegate<K, V> lineDelegate, @NonNull Charset charset,
+                               int parallelism) {
+        this(new LineChunkParser<>(lineDelegate, charset), charset, parallelism);
+    }
+
+    StreamingFileLoader(@NonNull ChunkParser<K, V> parser, @NonNull Charset charset, int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism should be positive");
+        }
+        this.parser = parser;
+        this.charset = ChunkParser.checkLineFeedCompatible(charset);
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Loads file decompressing it as per compression.
+     */
+    public void load(File file, Compression compression, CacheSink<K, V> sink) throws BlueWhaleCacheException {
+        try (InputStream in = openReadAhead(file, compression, parallelism)) {
+            load(in, sink);
+        } catch (IOException e) {
+            throw new BlueWhaleCacheException("IOException while reading file " + file, e);
+        }
+    }
+
+    /**
+     * Opens file decompressing it as per compression on a thread of its own, which stays at most
+     * a few buffers ahead of the reader.
+     */
+    static InputStream openReadAhead(File file, Compression compression, int parallelism) throws IOException {
+        return new ReadAheadInputStream(compression.open(file, CHUNK_SIZE, parallelism), CHUNK_SIZE,
+                parallelism * QUEUED_PER_THREAD, "bluewhale-decompress-" + file.getName());
+    }
+
+    public void load(InputStream in, CacheSink<K, V> sink) throws BlueWhaleCacheException {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        ArrayDeque<Future<Map<K, Object>>> parsing = new ArrayDeque<>();
+        try {
+            byte[] chunk = new byte[CHUNK_SIZE];
+            int filled = 0;
+            boolean first = true;
+            while (true) {
+                int n = in.read(chunk, filled, chunk.length - filled);
+                if (n < 0) {
+                    if (filled > 0) {
+                        submit(executor, parsing, chunk, filled, first, sink);
+                    }
+                    break;
+                }
+                filled += n;
+                if (filled < chunk.length) {
+                    continue;
+                }
+                int end = lastLineEnd(chunk, filled);
+                if (end == 0) {
+                    // Line longer than a chunk
+                    chunk = Arrays.copyOf(chunk, 2 * chunk.length);
+                    continue;
+                }
+                byte[] next = new byte[Math.max(CHUNK_SIZE, 2 * (filled - end))];
+                System.arraycopy(chunk, end, next, 0, filled - end);
+                submit(executor, parsing, chunk, end, first, sink);
+                first = false;
+                filled -= end;
+                chunk = next;
+            }
+            while (!parsing.isEmpty()) {
+                parser.apply(parsing.poll().get(), sink);
+            }
+        } catch (IOException e) {
+            throw new BlueWhaleCacheException("IOException while reading stream", e);
+        } catch (ExecutionException e) {
+            throw new BlueWhaleCacheException("Parallel load of stream failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BlueWhaleCacheException("Interrupted during parallel load of stream", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Parses [0, length) of chunk, the head of the stream if first, on executor. Parsed chunks
+     * are applied (in order) before, while too many are parsing.
+     */
+    private void submit(ExecutorService executor, ArrayDeque<Future<Map<K, Object>>> parsing, byte[] chunk,
+                        int length, final boolean first, CacheSink<K, V> sink) throws ExecutionException, InterruptedException {
+        while (parsing.size() >= parallelism * QUEUED_PER_THREAD) {
+            parser.apply(parsing.poll().get(), sink);
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(chunk, 0, length);
+        parsing.add(executor.submit(new Callable<Map<K, Object>>() {
+            @Override
+            public Map<K, Object> call() {
+                return parser.parse(buffer, first);
+            }
+        }));
+    }
+
+    /**
+     * @return Position just after the last line feed in [0, length) of chunk, 0 if there is none
+     */
+    private static int lastLineEnd(byte[] chunk, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (chunk[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+}
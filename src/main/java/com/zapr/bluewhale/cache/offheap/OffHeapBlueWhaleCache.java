@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.offheap;
+
+import com.zapr.bluewhale.cache.AbstractBlueWhaleCache;
+import com.zapr.bluewhale.cache.CacheLoaderDelegate;
+import com.zapr.bluewhale.cache.CacheSnapshot;
+import com.zapr.bluewhale.cache.RefreshableBlueWhaleCache;
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+import com.zapr.bluewhale.exception.BlueWhaleCacheInitializationException;
+import com.zapr.bluewhale.exception.BlueWhaleCacheUpdationException;
+import com.zapr.bluewhale.map.OffHeapMap;
+import com.zapr.bluewhale.serializer.ValueSerializer;
+
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cache whose values live outside the java heap in an {@link OffHeapMap}, serialized through a
+ * {@link ValueSerializer} and deserialized on every query. Given a key serializer, keys are
+ * serialized off heap as well and only an index of primitive arrays stays on heap, so even very
+ * large caches add little to GC pauses. Without one, keys stay on heap in the index.
+ * <p>
+ * After a reload, direct memory of the replaced entries is freed explicitly once
+ * releaseDelayMillis have passed and reads in progress on them are done. A {@link #snapshot()}
+ * (or {@link #getAll()}) hence stays readable for releaseDelayMillis after it is replaced, not
+ * for as long as it is held: reads after that throw IllegalStateException, and never see freed
+ * memory. Requests holding on to snapshots must finish within releaseDelayMillis.
+ */
+@Slf4j
+public class OffHeapBlueWhaleCache<K, V, S> extends AbstractBlueWhaleCache<K, V, S>
+        implements RefreshableBlueWhaleCache<K, V, S> {
+
+    public static final long DEFAULT_RELEASE_DELAY_MILLIS = 30000L;
+
+    @Getter
+    private final boolean isCacheUpdatable;
+    // refreshInterval in seconds, used only in case of updatable caches
+    @Getter
+    private final int refreshInterval;
+    private final CacheLoaderDelegate<K, V, S> loaderDelegate;
+    // Null if keys are kept on heap
+    private final ValueSerializer<K> keySerializer;
+    private final ValueSerializer<V> valueSerializer;
+    @Getter
+    private final String name;
+    @Getter
+    private volatile boolean isCacheInitialized = false;
+    // Largest direct buffer segment entries are written into. Segments start small, or at the
+    // size of the replaced entries, and double up to this size.
+    @Getter
+    @Setter
+    private int segmentSize = OffHeapMap.DEFAULT_SEGMENT_SIZE;
+    @Getter
+    @Setter
+    private long releaseDelayMillis = DEFAULT_RELEASE_DELAY_MILLIS;
+
+    /**
+     * Creates a cache which keeps values off heap, and keys on heap.
+     */
+    public OffHeapBlueWhaleCache(@NonNull CacheLoaderDelegate<K, V, S> loaderDelegate,
+                                 @NonNull ValueSerializer<V> valueSerializer, @NonNull String name,
+                                 boolean isCacheUpdatable, int refreshInterval) {
+        this(loaderDelegate, null, valueSerializer, name, isCacheUpdatable, refreshInterval);
+    }
+
+    /**
+     * Creates a cache which keeps both keys and values off heap.
+     *
+     * @param keySerializer Serializer of keys, keys are kept on heap if null
+     */
+    public OffHeapBlueWhaleCache(@NonNull CacheLoaderDelegate<K, V, S> loaderDelegate,
+                                 ValueSerializer<K> keySerializer, @NonNull ValueSerializer<V> valueSerializer,
+                                 @NonNull String name, boolean isCacheUpdatable, int refreshInterval) {
+        this.loaderDelegate = loaderDelegate;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.name = name;
+        this.isCacheUpdatable = isCacheUpdatable;
+        this.refreshInterval = refreshInterval;
+    }
+
+    @Override
+    public void init(S source) throws BlueWhaleCacheInitializationException {
+        if (source == null) {
+            throw new BlueWhaleCacheInitializationException("Source cannot be null");
+        }
+        try {
+            load(source, false);
+        } catch (BlueWhaleCacheException e) {
+            throw new BlueWhaleCacheInitializationException("Init failed!!", e);
+        }
+        isCacheInitialized = true;
+    }
+
+    /**
+     * Reloads all entries from source, and swaps them in atomically.
+     */
+    @Override
+    public void refresh(S source) throws BlueWhaleCacheUpdationException {
+        if (source == null || !isCacheUpdatable()) {
+            throw new BlueWhaleCacheUpdationException("refresh failed due to unmet preconditions!!");
+        }
+        try {
+            load(source, true);
+        } catch (BlueWhaleCacheException e) {
+            throw new BlueWhaleCacheUpdationException("Refresh failed!!", e);
+        }
+    }
+
+    @Override
+    public void unsafeUpdate(S source) throws BlueWhaleCacheUpdationException {
+        if (source == null) {
+            throw new BlueWhaleCacheUpdationException("Source cannot be null");
+        }
+        try {
+            load(source, false);
+        } catch (BlueWhaleCacheException e) {
+            throw new BlueWhaleCacheUpdationException("Update failed!!", e);
+        }
+    }
+
+    /**
+     * Current snapshot, readable until releaseDelayMillis after it is replaced by a reload.
+     *
+     * @see OffHeapBlueWhaleCache
+     */
+    @Override
+    public CacheSnapshot<K, V> snapshot() {
+        return super.snapshot();
+    }
+
+    /**
+     * Direct memory held by current entries, in bytes.
+     */
+    public long getOffHeapBytes() {
+        Map<K, V> entries = currentEntries();
+        return entries instanceof OffHeapMap ? ((OffHeapMap<K, V>) entries).getOffHeapBytes() : 0L;
+    }
+
+    /**
+     * Frees direct memory of current entries right away. Cache must not be queried afterwards.
+     */
+    public void close() {
+        Map<K, V> entries = currentEntries();
+        if (entries instanceof OffHeapMap) {
+            ((OffHeapMap<K, V>) entries).close();
+        }
+    }
+
+    // Synchronized so that every replaced map is released exactly once
+    private synchronized void load(S source, boolean refresh) throws BlueWhaleCacheException {
+        long loadTimeStamp = System.currentTimeMillis();
+        long loadStart = System.nanoTime();
+        Map<K, V> replaced = currentEntries();
+        // Segments sized after the entries being replaced, with some room for growth
+        long expectedBytes = replaced instanceof OffHeapMap ?
+                ((OffHeapMap<K, V>) replaced).getUsedBytes() * 9 / 8 : 0L;
+        OffHeapMap.Builder<K, V> builder = OffHeapMap.builder(keySerializer, valueSerializer, getSize(),
+                expectedBytes, segmentSize);
+        try {
+            loaderDelegate.addEntries(source, builder);
+        } catch (BlueWhaleCacheException | RuntimeException e) {
+            builder.discard();
+            recordLoadFailure(e);
+            throw e;
+        }
+
+        OffHeapMap<K, V> entries = builder.build();
+        publish(entries, loadTimeStamp);
+        recordLoad(refresh, loadStart, entries.size());
+        log.info("Done loading off heap cache : " + name);
+        if (replaced instanceof OffHeapMap) {
+            releaseLater((OffHeapMap<K, V>) replaced);
+        }
+    }
+
+    /**
+     * Closes replaced after releaseDelayMillis, once reads in progress on it are done.
+     */
+    private void releaseLater(final OffHeapMap<K, V> replaced) {
+        Releaser.EXECUTOR.schedule(new Runnable() {
+            @Override
+            public void run() {
+                replaced.close();
+            }
+        }, releaseDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Holder of the thread closing replaced entries, created on first reload
+    private static class Releaser {
+
+        static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "bluewhale-offheap-release");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+}
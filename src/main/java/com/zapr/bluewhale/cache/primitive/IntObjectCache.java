@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.primitive;
+
+import com.zapr.bluewhale.cache.AbstractBlueWhaleCache;
+import com.zapr.bluewhale.cache.RefreshableBlueWhaleCache;
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+import com.zapr.bluewhale.exception.BlueWhaleCacheInitializationException;
+import com.zapr.bluewhale.exception.BlueWhaleCacheUpdationException;
+import com.zapr.bluewhale.map.IntObjectHashMap;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cache keyed by primitive ints, kept in a {@link IntObjectHashMap}. {@link #query(int)} does
+ * not box the key nor allocate. Source can be anything the loader delegate knows how to read
+ * (File, Connection etc).
+ */
+@Slf4j
+public class IntObjectCache<V, S> extends AbstractBlueWhaleCache<Integer, V, S>
+        implements RefreshableBlueWhaleCache<Integer, V, S> {
+
+    @Getter
+    private final boolean isCacheUpdatable;
+    // refreshInterval in seconds, used only in case of updatable caches
+    @Getter
+    private final int refreshInterval;
+    private final IntObjectLoaderDelegate<V, S> loaderDelegate;
+    @Getter
+    private final String name;
+    @Getter
+    private volatile boolean isCacheInitialized = false;
+
+    public IntObjectCache(@NonNull IntObjectLoaderDelegate<V, S> loaderDelegate, @NonNull String name,
+                           boolean isCacheUpdatable, int refreshInterval, float loadFactor) {
+        this.loaderDelegate = loaderDelegate;
+        this.name = name;
+        this.isCacheUpdatable = isCacheUpdatable;
+        this.refreshInterval = refreshInterval;
+        setLoadFactor(loadFactor);
+        publish(new IntObjectHashMap<V>(0, loadFactor), 0L);
+    }
+
+    public IntObjectCache(IntObjectLoaderDelegate<V, S> loaderDelegate, String name,
+                           boolean isCacheUpdatable, int refreshInterval) {
+        this(loaderDelegate, name, isCacheUpdatable, refreshInterval,
+                IntObjectHashMap.DEFAULT_LOAD_FACTOR);
+    }
+
+    public V query(int key) {
+        return recordQuery(((IntObjectHashMap<V>) currentEntries()).get(key));
+    }
+
+    /**
+     * Sets values[i] to the value of keys[i], or null if it is absent, reading all keys from the
+     * same snapshot. Neither boxes nor allocates.
+     *
+     * @param values At least as long as keys
+     * @return Number of keys present
+     */
+    public int queryInto(int[] keys, V[] values) {
+        if (values.length < keys.length) {
+            throw new IllegalArgumentException("Values array is shorter than keys");
+        }
+        IntObjectHashMap<V> entries = (IntObjectHashMap<V>) currentEntries();
+        int found = 0;
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = entries.get(keys[i]);
+            if (values[i] != null) {
+                found++;
+            }
+        }
+        recordQueries(found, keys.length - found);
+        return found;
+    }
+
+    @Override
+    public V query(Integer key) {
+        return key == null ? null : query(key.intValue());
+    }
+
+    @Override
+    public void init(S source) throws BlueWhaleCacheInitializationException {
+        if (source == null) {
+            throw new BlueWhaleCacheInitializationException("Source cannot be null");
+        }
+        try {
+            load(source, false);
+        } catch (BlueWhaleCacheException e) {
+            throw new BlueWhaleCacheInitializationException("Init failed!!", e);
+        }
+        isCacheInitialized = true;
+    }
+
+    /**
+     * Reloads all entries from source, and swaps them in atomically.
+     */
+    @Override
+    public void refresh(S source) throws BlueWhaleCacheUpdationException {
+        if (source == null || !isCacheUpdatable()) {
+            throw new BlueWhaleCacheUpdationException("refresh failed due to unmet preconditions!!");
+        }
+        try {
+            load(source, true);
+        } catch (BlueWhaleCacheException e) {
+            throw new BlueWhaleCacheUpdationException("Refresh failed!!", e);
+        }
+    }
+
+    @Override
+    public void unsafeUpdate(S source) throws BlueWhaleCacheUpdationException {
+        if (source == null) {
+            throw new BlueWhaleCacheUpdationException("Source cannot be null");
+        }
+        try {
+            load(source, false);
+        } catch (BlueWhaleCacheException e) {
+            throw new BlueWhaleCacheUpdationException("Update failed!!", e);
+        }
+    }
+
+    private void load(S source, boolean refresh) throws BlueWhaleCacheException {
+        long loadTimeStamp = System.currentTimeMillis();
+        long loadStart = System.nanoTime();
+        // Sized after the current entries, so that a reload rarely has to grow the table
+        IntObjectHashMap<V> entries = new IntObjectHashMap<>(getSize(), getLoadFactor());
+        try {
+            loaderDelegate.addEntries(source, entries);
+        } catch (BlueWhaleCacheException | RuntimeException e) {
+            recordLoadFailure(e);
+            throw e;
+        }
+        publish(entries, loadTimeStamp);
+        recordLoad(refresh, loadStart, entries.size());
+        log.info("Done loading cache : " + name);
+    }
+}
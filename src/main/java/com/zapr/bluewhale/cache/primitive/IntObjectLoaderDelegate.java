@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.primitive;
+
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+import com.zapr.bluewhale.map.IntObjectSink;
+
+/**
+ * Delegate for {@link IntObjectCache}, which reads entries from source and puts them in the
+ * sink with primitive keys.
+ */
+public interface IntObjectLoaderDelegate<V, S> {
+
+    /**
+     * @param source Source of cache, owned by the client
+     * @param sink   Cache entries
+     */
+    public void addEntries(S source, IntObjectSink<V> sink) throws BlueWhaleCacheException;
+}
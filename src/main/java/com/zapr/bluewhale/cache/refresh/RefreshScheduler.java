@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.refresh;
+
+import com.zapr.bluewhale.cache.RefreshableBlueWhaleCache;
+import com.zapr.bluewhale.cache.SourceProvider;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Shared scheduler which refreshes registered caches in the background, every refreshInterval
+ * seconds of the cache.
+ * <p>
+ * First refresh of every cache is spread uniformly over its refresh interval, and every
+ * subsequent one is jittered by jitterFactor, so that caches registered together do not all hit
+ * the source in the same second. Consecutive failures back off exponentially (doubling the
+ * interval) up to maxBackoffSeconds, and reset on the first successful refresh.
+ * <p>
+ * One scheduler (with a handful of threads) is meant to be shared by all caches of a JVM.
+ */
+@Slf4j
+public class RefreshScheduler {
+
+    public static final double DEFAULT_JITTER_FACTOR = 0.1;
+    public static final long DEFAULT_MAX_BACKOFF_SECONDS = 600L;
+
+    private static final AtomicInteger schedulerCount = new AtomicInteger();
+
+    private final ScheduledExecutorService executor;
+    @Getter
+    private final double jitterFactor;
+    @Getter
+    private final long maxBackoffSeconds;
+
+    public RefreshScheduler(int threads, double jitterFactor, long maxBackoffSeconds) {
+        if (threads <= 0 || jitterFactor < 0 || jitterFactor >= 1 || maxBackoffSeconds <= 0) {
+            throw new IllegalArgumentException("Invalid refresh scheduler configuration");
+        }
+        this.jitterFactor = jitterFactor;
+        this.maxBackoffSeconds = maxBackoffSeconds;
+        this.executor = Executors.newScheduledThreadPool(threads,
+                new RefreshThreadFactory(schedulerCount.incrementAndGet()));
+    }
+
+    public RefreshScheduler(int threads) {
+        this(threads, DEFAULT_JITTER_FACTOR, DEFAULT_MAX_BACKOFF_SECONDS);
+    }
+
+    /**
+     * Starts refreshing given cache in background. Cache is expected to be initialized already.
+     *
+     * @param cache          Updatable cache with a positive refreshInterval
+     * @param sourceProvider Provides source for every refresh
+     * @return handle through which refreshes of this cache can be stopped
+     */
+    public <K, V, S> ScheduledRefresh<K, V, S> register(@NonNull RefreshableBlueWhaleCache<K, V, S> cache,
+                                                         @NonNull SourceProvider<S> sourceProvider) {
+        if (!cache.isCacheUpdatable() || cache.getRefreshInterval() <= 0) {
+            throw new IllegalArgumentException("Cache " + cache.getName() +
+                    " is not updatable or has no refresh interval");
+        }
+
+        ScheduledRefresh<K, V, S> scheduledRefresh = new ScheduledRefresh<>(this, cache, sourceProvider);
+        long intervalMillis = TimeUnit.SECONDS.toMillis(cache.getRefreshInterval());
+        scheduledRefresh.scheduleAfter(1 + ThreadLocalRandom.current().nextLong(intervalMillis));
+        log.info("Registered cache : " + cache.getName() + " for background refresh");
+        return scheduledRefresh;
+    }
+
+    /**
+     * Stops all refreshes. A refresh which is already running is allowed to complete.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * @return Pending run of scheduledRefresh, null if the scheduler is shut down
+     */
+    ScheduledFuture<?> schedule(ScheduledRefresh<?, ?, ?> scheduledRefresh, long delayMillis) {
+        if (executor.isShutdown()) {
+            return null;
+        }
+        return executor.schedule(scheduledRefresh, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Delay before the next refresh: the refresh interval, doubled for every consecutive failure
+     * (bounded by maxBackoffSeconds), jittered by jitterFactor either way.
+     */
+    long nextDelayMillis(int refreshIntervalSeconds, int consecutiveFailures) {
+        long delayMillis = TimeUnit.SECONDS.toMillis(refreshIntervalSeconds);
+        if (consecutiveFailures > 0) {
+            long backoffMillis = delayMillis << Math.min(consecutiveFailures, 20);
+            delayMillis = Math.max(delayMillis,
+                    Math.min(backoffMillis, TimeUnit.SECONDS.toMillis(maxBackoffSeconds)));
+        }
+        long jitterMillis = (long) (delayMillis * jitterFactor);
+        if (jitterMillis > 0) {
+            delayMillis += ThreadLocalRandom.current().nextLong(-jitterMillis, jitterMillis + 1);
+        }
+        return Math.max(delayMillis, 1L);
+    }
+
+    private static class RefreshThreadFactory implements ThreadFactory {
+
+        private final int schedulerId;
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        RefreshThreadFactory(int schedulerId) {
+            this.schedulerId = schedulerId;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "bluewhale-refresh-" + schedulerId + "-" +
+                    threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.refresh;
+
+import com.zapr.bluewhale.cache.RefreshableBlueWhaleCache;
+import com.zapr.bluewhale.cache.SourceProvider;
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+
+import java.util.concurrent.ScheduledFuture;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Background refresh of a single cache, as registered with a {@link RefreshScheduler}.
+ * Every run refreshes the cache once and schedules the next run.
+ */
+@Slf4j
+public class ScheduledRefresh<K, V, S> implements Runnable {
+
+    private final RefreshScheduler scheduler;
+    @Getter
+    private final RefreshableBlueWhaleCache<K, V, S> cache;
+    private final SourceProvider<S> sourceProvider;
+
+    @Getter
+    private volatile int consecutiveFailures = 0;
+    @Getter
+    private volatile long lastSuccessTimeStamp = 0L;
+    @Getter
+    private volatile boolean cancelled = false;
+    // Pending run, if any
+    private volatile ScheduledFuture<?> next;
+
+    ScheduledRefresh(RefreshScheduler scheduler, RefreshableBlueWhaleCache<K, V, S> cache,
+                     SourceProvider<S> sourceProvider) {
+        this.scheduler = scheduler;
+        this.cache = cache;
+        this.sourceProvider = sourceProvider;
+    }
+
+    /**
+     * Stops further refreshes of the cache. A refresh which is already running is allowed to
+     * complete.
+     */
+    public void cancel() {
+        this.cancelled = true;
+        ScheduledFuture<?> pending = next;
+        if (pending != null) {
+            pending.cancel(false);
+        }
+    }
+
+    @Override
+    public void run() {
+        if (cancelled) {
+            return;
+        }
+
+        try {
+            refreshOnce();
+            consecutiveFailures = 0;
+            lastSuccessTimeStamp = System.currentTimeMillis();
+        } catch (BlueWhaleCacheException | RuntimeException e) {
+            consecutiveFailures++;
+            log.warn("Background refresh failed for cache : " + cache.getName() +
+                    ", consecutive failures : " + consecutiveFailures, e);
+        } catch (Error e) {
+            // Rethrown into the executor, which swallows it, hence logged here
+            consecutiveFailures++;
+            log.error("Background refresh failed for cache : " + cache.getName() +
+                    ", consecutive failures : " + consecutiveFailures, e);
+            throw e;
+        } finally {
+            if (!cancelled) {
+                scheduleAfter(scheduler.nextDelayMillis(cache.getRefreshInterval(), consecutiveFailures));
+            }
+        }
+    }
+
+    void scheduleAfter(long delayMillis) {
+        next = scheduler.schedule(this, delayMillis);
+        // Cancelled meanwhile, cancel may have missed the run just scheduled
+        if (cancelled && next != null) {
+            next.cancel(false);
+        }
+    }
+
+    private void refreshOnce() throws BlueWhaleCacheException {
+        S source = sourceProvider.acquire();
+        try {
+            cache.refresh(source);
+        } finally {
+            sourceProvider.release(source);
+        }
+    }
+}
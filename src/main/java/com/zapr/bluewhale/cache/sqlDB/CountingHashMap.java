@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.sqlDB;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import lombok.Getter;
+
+/**
+ * Copy of current entries which counts the entries put in or removed from it afterwards, so a
+ * refresh handing it to a delegate (which may fill the HashMap itself) knows how many rows it
+ * applied.
+ */
+class CountingHashMap<K, V> extends HashMap<K, V> {
+
+    // Entries put or removed since the copy
+    @Getter
+    private long count = 0L;
+
+    CountingHashMap(Map<? extends K, ? extends V> entries, int initialCapacity, float loadFactor) {
+        super(initialCapacity, loadFactor);
+        // HashMap#putAll doesn't go through put, so the copy isn't counted
+        super.putAll(entries);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        count++;
+        return super.put(key, value);
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        count += entries.size();
+        super.putAll(entries);
+    }
+
+    @Override
+    public V remove(Object key) {
+        count++;
+        return super.remove(key);
+    }
+}
@@ -18,10 +18,17 @@
 
 package com.zapr.bluewhale.cache.sqlDB;
 
-import com.zapr.bluewhale.cache.BlueWhaleCache;
+import com.zapr.bluewhale.cache.AbstractBlueWhaleCache;
+import com.zapr.bluewhale.cache.CacheLoaderDelegate;
+import com.zapr.bluewhale.cache.CacheSink;
+import com.zapr.bluewhale.cache.CacheSnapshotFile;
+import com.zapr.bluewhale.cache.ChangeTrackingSink;
+import com.zapr.bluewhale.cache.MapCacheSink;
+import com.zapr.bluewhale.cache.RefreshableBlueWhaleCache;
 import com.zapr.bluewhale.exception.BlueWhaleCacheException;
 import com.zapr.bluewhale.exception.BlueWhaleCacheInitializationException;
 import com.zapr.bluewhale.exception.BlueWhaleCacheUpdationException;
+import com.zapr.bluewhale.map.PersistentHashMap;
 
 import org.apache.commons.lang.StringUtils;
 
@@ -31,28 +38,48 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.sql.DataSource;
 
 import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
-public class DBBlueWhaleCache<K, V> implements BlueWhaleCache<K, V, Connection> {
+public class DBBlueWhaleCache<K, V> extends AbstractBlueWhaleCache<K, V, Connection>
+        implements RefreshableBlueWhaleCache<K, V, Connection> {
+
+    // Fetch size which makes MySQL Connector/J stream rows one at a time, instead of buffering
+    // the complete result set on heap
+    public static final int MYSQL_STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
 
     @Getter
     private final boolean isCacheUpdatable;
     // refreshInterval in seconds, used only in case of updatable caches
     @Getter
     private final int refreshInterval;
-    // No thread safety guarantees here, but will never be an issue
-    // as its reference will always change atomically
-    private HashMap<K, V> entries;
     // delegate who exposes actual implementation of adding entries in cache
     @Getter
     private DBLoaderDelegate dbLoaderDelegate;
+    // delegate for delta refreshed caches, used instead of dbLoaderDelegate
+    @Getter
+    private DBDeltaLoaderDelegate<K, V> dbDeltaLoaderDelegate;
+    // row level delegate, used instead of dbLoaderDelegate
     @Getter
-    private boolean isCacheInitialized = false;
+    private DBRowMapper<K, V> dbRowMapper;
+    // Whichever of the delegates above was given, reading a result set into a sink
+    private CacheLoaderDelegate<K, V, ResultSet> rowsLoader;
+    @Getter
+    private volatile boolean isCacheInitialized = false;
     @Getter
     private String query;
 
@@ -60,21 +87,81 @@ public class DBBlueWhaleCache<K, V> implements BlueWhaleCache<K, V, Connection>
     private String name;
 
     @Getter
-    private Timestamp lastLoadTimeStamp;
+    private volatile Timestamp lastLoadTimeStamp;
+
+    // Rows fetched per round trip while loading, 0 leaves it to the driver. Some drivers
+    // (e.g. PostgreSQL) honour it only if connection is not in auto commit mode.
+    @Getter
+    @Setter
+    private int fetchSize = 0;
+
+    // Timeout in seconds of load queries, 0 means no timeout
+    @Getter
+    @Setter
+    private int queryTimeout = 0;
+
+    // Local copy of entries, written after full loads and read on init if fresh enough
+    @Getter
+    @Setter
+    private CacheSnapshotFile<K, V> snapshotFile;
+
+    // Query whose single column gives the number of rows a full load fetches, such as
+    // SELECT COUNT(*) or a lookup of table statistics. Run before full loads of an empty cache
+    // to size the entries up front, later loads are sized after the current entries. Not run by
+    // partitioned loads, which would need a connection of its own for it, and whose merged
+    // entries are sized after the partitions instead.
+    @Getter
+    @Setter
+    private String sizeHintQuery;
 
     public DBBlueWhaleCache(DBLoaderDelegate dbLoaderDelegate, String name, String query,
                             boolean isCacheUpdatable, int refreshInterval) {
         this.dbLoaderDelegate = dbLoaderDelegate;
+        this.rowsLoader = dbLoaderDelegate == null ? null : new DBLoaderDelegateAdapter<K, V>(dbLoaderDelegate);
         this.name = name;
         this.query = query;
         this.isCacheUpdatable = isCacheUpdatable;
-        this.entries = new HashMap<>();
         this.lastLoadTimeStamp = new Timestamp(1000L); //set initial timsestamp to a second Post epoc
         this.refreshInterval = refreshInterval;
     }
 
-    public V query(K key) {
-        return entries.get(key);
+    /**
+     * Creates a cache which hands every row to dbRowMapper, and keeps entries in a structure of
+     * its own choice.
+     */
+    public DBBlueWhaleCache(DBRowMapper<K, V> dbRowMapper, String name, String query,
+                            boolean isCacheUpdatable, int refreshInterval) {
+        this((DBLoaderDelegate) null, name, query, isCacheUpdatable, refreshInterval);
+        this.dbRowMapper = dbRowMapper;
+        this.rowsLoader = new DBRowMapperDelegate<>(dbRowMapper);
+    }
+
+    /**
+     * Creates an updatable cache which is refreshed by applying only the changed rows to the
+     * current entries. Entries are kept in a {@link PersistentHashMap}, so a refresh costs in
+     * proportion to the number of changed rows, and not to the size of the cache.
+     *
+     * @param dbDeltaLoaderDelegate puts changed rows and removes deleted ones
+     * @param query                 query taking last load timestamp as its only parameter
+     */
+    public DBBlueWhaleCache(DBDeltaLoaderDelegate<K, V> dbDeltaLoaderDelegate, String name,
+                            String query, int refreshInterval) {
+        this((DBLoaderDelegate) null, name, query, true, refreshInterval);
+        this.dbDeltaLoaderDelegate = dbDeltaLoaderDelegate;
+        this.rowsLoader = new CacheLoaderDelegate<K, V, ResultSet>() {
+            @Override
+            public void addEntries(ResultSet rs, CacheSink<K, V> sink) throws BlueWhaleCacheException {
+                try {
+                    DBBlueWhaleCache.this.dbDeltaLoaderDelegate.addEntries(rs, sink);
+                } catch (SQLException e) {
+                    throw new BlueWhaleCacheException("SQL Exception while reading rows", e);
+                }
+            }
+        };
+    }
+
+    public boolean isDeltaRefreshed() {
+        return dbDeltaLoaderDelegate != null;
     }
 
     public void init(Connection dbConnection)
@@ -84,19 +171,66 @@ public class DBBlueWhaleCache<K, V> implements BlueWhaleCache<K, V, Connection>
             throw new BlueWhaleCacheInitializationException("Invalid query!!");
         }
 
+        if (loadFromSnapshotFile()) {
+            // Catch up with rows changed since the snapshot was taken
+            if (isCacheUpdatable()) {
+                refresh(dbConnection);
+            }
+            isCacheInitialized = true;
+            return;
+        }
+
+        long loadStart = System.nanoTime();
         try {
             Timestamp initTimeStamp = new Timestamp(System.currentTimeMillis());
-            if (this.isCacheUpdatable()) {
-                buildUpdatableDbBackedCache(dbConnection, this.entries, true);
-            } else {
-                buildNonUpdatableDbBackedCache(dbConnection, this.entries);
-            }
+            Map<K, V> newEntries = loadAllEntries(dbConnection);
+            publish(newEntries, initTimeStamp.getTime());
             this.lastLoadTimeStamp = initTimeStamp;
+            recordLoad(false, loadStart, newEntries.size());
         } catch (BlueWhaleCacheException e) {
+            recordLoadFailure(e);
             throw new BlueWhaleCacheInitializationException("Init failed!!", e);
         }
 
         isCacheInitialized = true;
+        writeSnapshotFile();
+    }
+
+    /**
+     * Loads the cache through partitionQuery, running one query per partition concurrently, each
+     * on its own connection from dataSource. Partitions are merged before being published, so
+     * cache behaves exactly as if loaded through {@link #init(Connection)}; refreshes keep using
+     * query. Delegate (or row mapper) of the cache is called concurrently and must not keep
+     * state across calls.
+     *
+     * @param partitionQuery  query with partition predicate, whose parameters follow the last
+     *                        load timestamp for updatable caches, and come first otherwise
+     * @param partitionScheme binds partition predicate of every partition
+     * @param maxConnections  maximum number of partitions loaded at once
+     */
+    public void init(DataSource dataSource, String partitionQuery, DBPartitionScheme partitionScheme,
+                     int maxConnections) throws BlueWhaleCacheInitializationException {
+
+        if (StringUtils.isEmpty(partitionQuery) || null == dataSource || null == partitionScheme ||
+                maxConnections <= 0) {
+            throw new BlueWhaleCacheInitializationException("Invalid partitioned load!!");
+        }
+
+        long loadStart = System.nanoTime();
+        try {
+            Timestamp initTimeStamp = new Timestamp(System.currentTimeMillis());
+            Map<K, V> newEntries = loadPartitions(dataSource, partitionQuery, partitionScheme,
+                    maxConnections);
+            publish(newEntries, initTimeStamp.getTime());
+            this.lastLoadTimeStamp = initTimeStamp;
+            recordLoad(false, loadStart, newEntries.size());
+        } catch (BlueWhaleCacheException e) {
+            recordLoadFailure(e);
+            throw new BlueWhaleCacheInitializationException("Partitioned init failed!!", e);
+        }
+
+        isCacheInitialized = true;
+        writeSnapshotFile();
     }
 
     /**
@@ -112,32 +246,283 @@ public class DBBlueWhaleCache<K, V> implements BlueWhaleCache<K, V, Connection>
             throw new BlueWhaleCacheInitializationException("refresh failed due to unmet preconditions!!");
         }
 
+        long loadStart = System.nanoTime();
         try {
             Timestamp refreshAttemptTimeStamp = new Timestamp(System.currentTimeMillis());
-            HashMap<K, V> alteredEntries = new HashMap<>();
-            alteredEntries.putAll(this.entries);
-            buildUpdatableDbBackedCache(dbConnection, alteredEntries, false);
-
-            synchronized (this) {
-                this.entries = alteredEntries;
-                this.lastLoadTimeStamp = refreshAttemptTimeStamp;
+            long rows;
+            if (isDeltaRefreshed()) {
+                PersistentHashMap.Editor<K, V> editor = currentPersistentEntries().edit();
+                ChangeTrackingSink<K, V> sink = new ChangeTrackingSink<>(editor, hasIndexes());
+                buildUpdatableDbBackedCache(dbConnection, null, sink, false);
+                if (sink.getChangedKeys() != null) {
+                    // Indexes are updated only for changed rows, like entries
+                    publish(editor.persistent(), refreshAttemptTimeStamp.getTime(), sink.getChangedKeys());
+                } else {
+                    publish(editor.persistent(), refreshAttemptTimeStamp.getTime());
+                }
+                rows = sink.getCount();
+            } else {
+                // Counts rows the delegate applies on top of the copy, as delta refreshes do
+                CountingHashMap<K, V> copiedEntries = new CountingHashMap<>(currentEntries(),
+                        capacityFor(getSize(), getLoadFactor()), getLoadFactor());
+                buildUpdatableDbBackedCache(dbConnection, copiedEntries, null, false);
+                publish(copiedEntries, refreshAttemptTimeStamp.getTime());
+                rows = copiedEntries.getCount();
             }
 
+            this.lastLoadTimeStamp = refreshAttemptTimeStamp;
+            recordLoad(true, loadStart, rows);
+
         } catch (BlueWhaleCacheException e) {
+            recordLoadFailure(e);
             throw new BlueWhaleCacheInitializationException("Refresh failed!!", e);
         }
     }
 
+    /**
+     * Writes current entries to snapshotFile. Snapshot is written by the cache itself only after
+     * full loads, clients may call this after refreshes as often as they see fit.
+     */
+    public void saveSnapshot() throws BlueWhaleCacheException {
+        if (snapshotFile == null) {
+            throw new BlueWhaleCacheException("No snapshot file set for cache named : " + name);
+        }
+        snapshotFile.write(currentSnapshot());
+    }
+
+    private boolean loadFromSnapshotFile() {
+        if (snapshotFile == null || !snapshotFile.isFresh()) {
+            return false;
+        }
+        long loadStart = System.nanoTime();
+        try {
+            Map<K, V> newEntries;
+            long snapshotTimeStamp;
+            if (isDeltaRefreshed()) {
+                PersistentHashMap.Editor<K, V> editor = PersistentHashMap.<K, V>empty().edit();
+                snapshotTimeStamp = snapshotFile.load(editor);
+                newEntries = editor.persistent();
+            } else {
+                HashMap<K, V> entries = new HashMap<>();
+                snapshotTimeStamp = snapshotFile.load(new MapCacheSink<>(entries));
+                newEntries = entries;
+            }
+            publish(newEntries, snapshotTimeStamp);
+            this.lastLoadTimeStamp = new Timestamp(snapshotTimeStamp);
+            recordLoad(false, loadStart, newEntries.size());
+            log.info("Done loading cache : " + name + " from snapshot " + snapshotFile.getFile());
+            return true;
+        } catch (BlueWhaleCacheException e) {
+            log.warn("Can't load snapshot, loading from DB for cache : " + name, e);
+            return false;
+        }
+    }
+
+    private void writeSnapshotFile() {
+        if (snapshotFile == null) {
+            return;
+        }
+        try {
+            snapshotFile.write(currentSnapshot());
+        } catch (BlueWhaleCacheException e) {
+            log.warn("Can't write snapshot of cache : " + name + ". Cache was populated though. " +
+                    "Hence I don't care and will swallow this", e);
+        }
+    }
+
+    private Map<K, V> loadAllEntries(Connection dbConnection) throws BlueWhaleCacheException {
+        if (isDeltaRefreshed()) {
+            PersistentHashMap.Editor<K, V> editor = PersistentHashMap.<K, V>empty().edit();
+            buildUpdatableDbBackedCache(dbConnection, null, editor, true);
+            return editor.persistent();
+        }
+
+        HashMap<K, V> newEntries = newEntries(sizeHint(dbConnection));
+        if (isCacheUpdatable()) {
+            buildUpdatableDbBackedCache(dbConnection, newEntries, null, true);
+        } else {
+            buildNonUpdatableDbBackedCache(dbConnection, newEntries);
+        }
+        return newEntries;
+    }
+
+    private Map<K, V> loadPartitions(final DataSource dataSource, final String partitionQuery,
+                                     final DBPartitionScheme partitionScheme, int maxConnections)
+            throws BlueWhaleCacheException {
+
+        int partitionCount = partitionScheme.getPartitionCount();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxConnections, partitionCount));
+        List<Future<HashMap<K, V>>> futures = new ArrayList<>(partitionCount);
+        List<HashMap<K, V>> partitions = new ArrayList<>(partitionCount);
+        try {
+            for (int i = 0; i < partitionCount; i++) {
+                final int partition = i;
+                futures.add(executor.submit(new Callable<HashMap<K, V>>() {
+                    @Override
+                    public HashMap<K, V> call() throws BlueWhaleCacheException {
+                        return loadPartition(dataSource, partitionQuery, partitionScheme, partition);
+                    }
+                }));
+            }
+            for (Future<HashMap<K, V>> future : futures) {
+                partitions.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw new BlueWhaleCacheException("Partitioned load failed for cache named : " + name,
+                    e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BlueWhaleCacheException("Interrupted during partitioned load of cache named : " +
+                    name, e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Partitions are split on DB columns and not on key hashes, hence merged into one map
+        int size = 0;
+        for (HashMap<K, V> partitionEntries : partitions) {
+            size += partitionEntries.size();
+        }
+        if (isDeltaRefreshed()) {
+            PersistentHashMap.Editor<K, V> editor = PersistentHashMap.<K, V>empty().edit();
+            for (HashMap<K, V> partitionEntries : partitions) {
+                for (Map.Entry<K, V> entry : partitionEntries.entrySet()) {
+                    editor.put(entry.getKey(), entry.getValue());
+                }
+            }
+            return editor.persistent();
+        }
+        HashMap<K, V> entries = newEntries(size);
+        for (HashMap<K, V> partitionEntries : partitions) {
+            entries.putAll(partitionEntries);
+        }
+        log.info("Done merging " + partitionCount + " partitions of cache : " + name);
+        return entries;
+    }
+
+    private HashMap<K, V> loadPartition(DataSource dataSource, String partitionQuery,
+                                        DBPartitionScheme partitionScheme, int partition)
+            throws BlueWhaleCacheException {
+
+        HashMap<K, V> entries = new HashMap<>(16, getLoadFactor());
+        Connection dbConnection = null;
+        PreparedStatement pstmt = null;
+        ResultSet rs = null;
+        try {
+            dbConnection = dataSource.getConnection();
+            pstmt = prepareLoadStatement(dbConnection, partitionQuery);
+            int parameterIndex = 1;
+            if (isCacheUpdatable()) {
+                pstmt.setTimestamp(parameterIndex++, new Timestamp(1000L));
+            }
+            partitionScheme.bindPartition(pstmt, partition, parameterIndex);
+            rs = pstmt.executeQuery();
+            rowsLoader.addEntries(rs, new MapCacheSink<>(entries));
+        } catch (SQLException e) {
+            throw new BlueWhaleCacheException("SQL Exception while querying partition " + partition +
+                    ". Init failed!! for cache named : " + name, e);
+        } finally {
+            try {
+                if (rs != null) {
+                    rs.close();
+                }
+                if (pstmt != null) {
+                    pstmt.close();
+                }
+                if (dbConnection != null) {
+                    dbConnection.close();
+                }
+            } catch (SQLException e) {
+                log.warn("Can't close DB statement! My Cache was populated though. " +
+                        "Hence I don't care and will swallow this", e);
+            }
+        }
+
+        log.info("Done loading partition " + partition + " of cache : " + name);
+        return entries;
+    }
+
+    /**
+     * Streams rows through the delegate as soon as they arrive, so that result set is not held
+     * on heap along with the entries being built from it.
+     */
+    public void enableStreaming() {
+        this.fetchSize = MYSQL_STREAMING_FETCH_SIZE;
+    }
+
+    /**
+     * @return Rows sizeHintQuery expects, 0 if there are entries already, or no hint
+     */
+    private long sizeHint(Connection dbConnection) {
+        if (sizeHintQuery == null || getSize() > 0) {
+            return 0L;
+        }
+        Statement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = dbConnection.createStatement();
+            if (queryTimeout > 0) {
+                stmt.setQueryTimeout(queryTimeout);
+            }
+            rs = stmt.executeQuery(sizeHintQuery);
+            return rs.next() ? Math.max(rs.getLong(1), 0L) : 0L;
+        } catch (SQLException e) {
+            log.warn("Can't get size hint, loading without it for cache : " + name, e);
+            return 0L;
+        } finally {
+            try {
+                if (rs != null) {
+                    rs.close();
+                }
+                if (stmt != null) {
+                    stmt.close();
+                }
+            } catch (SQLException e) {
+                log.warn("Can't close DB statement of size hint query", e);
+            }
+        }
+    }
+
+    private PreparedStatement prepareLoadStatement(Connection dbConnection, String sql)
+            throws SQLException {
+        PreparedStatement pstmt = dbConnection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY);
+        try {
+            configureLoadStatement(pstmt);
+        } catch (SQLException e) {
+            pstmt.close();
+            throw e;
+        }
+        return pstmt;
+    }
+
+    private void configureLoadStatement(Statement stmt) throws SQLException {
+        if (fetchSize != 0) {
+            stmt.setFetchSize(fetchSize);
+        }
+        if (queryTimeout > 0) {
+            stmt.setQueryTimeout(queryTimeout);
+        }
+    }
+
+    private PersistentHashMap<K, V> currentPersistentEntries() {
+        Map<K, V> entries = currentEntries();
+        // Nothing has been loaded yet, in case cache is refreshed before init
+        return entries instanceof PersistentHashMap ? (PersistentHashMap<K, V>) entries
+                : PersistentHashMap.<K, V>empty();
+    }
+
     private void buildNonUpdatableDbBackedCache(Connection dbConnection,
                                                 HashMap<K, V> entries) throws BlueWhaleCacheException {
 
         Statement stmt = null;
         ResultSet rs = null;
         try {
-            stmt = dbConnection.createStatement();
+            stmt = dbConnection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            configureLoadStatement(stmt);
             rs = stmt.executeQuery(query);
             // Code to populate cache, update entries and evict entries
-            dbLoaderDelegate.addEntry(rs, entries);
+            rowsLoader.addEntries(rs, new MapCacheSink<>(entries));
         } catch (SQLException e) {
             throw new BlueWhaleCacheException("SQL Exception while querying DB. " +
                     "Init/Update failed!! for cache named : " + name, e);
@@ -161,6 +546,8 @@ public class DBBlueWhaleCache<K, V> implements BlueWhaleCache<K, V, Connection>
     /**
      * @param dbConnection: Connection to DBSource
      * @param entries:      HashMap containing (K,V) pairs for this Cache
+     * @param sink:         Sink for changed entries, used instead of entries for delta
+     *                      refreshed caches
      * @param fullReload:   If set Reload all the entries of cache, else only updated entries from
      *                      last reload
      * @throws BlueWhaleCacheException Client need to take care of providing consistent view of
@@ -168,12 +555,13 @@ public class DBBlueWhaleCache<K, V> implements BlueWhaleCache<K, V, Connection>
      */
     private void buildUpdatableDbBackedCache(Connection dbConnection,
                                              HashMap<K, V> entries,
+                                             CacheSink<K, V> sink,
                                              boolean fullReload) throws BlueWhaleCacheException {
 
         PreparedStatement pstmt = null;
         ResultSet rs = null;
         try {
-            pstmt = dbConnection.prepareStatement(this.query);
+            pstmt = prepareLoadStatement(dbConnection, this.query);
             if (fullReload) {
                 pstmt.setTimestamp(1, new Timestamp(1000L));
             } else {
@@ -181,7 +569,7 @@ public class DBBlueWhaleCache<K, V> implements BlueWhaleCache<K, V, Connection>
             }
             rs = pstmt.executeQuery();
             // Code to populate cache, update entries and evict entries
-            dbLoaderDelegate.addEntry(rs, entries);
+            rowsLoader.addEntries(rs, sink != null ? sink : new MapCacheSink<>(entries));
         } catch (SQLException e) {
             throw new BlueWhaleCacheException("SQL Exception while querying DB. " +
                     "Init/Update failed!! for cache named : " + name, e);
@@ -205,36 +593,23 @@ public class DBBlueWhaleCache<K, V> implements BlueWhaleCache<K, V, Connection>
 
     public void unsafeUpdate(Connection dbConnection) throws BlueWhaleCacheUpdationException {
 
-        HashMap<K, V> auxiliaryCache = new HashMap<>();
+        Map<K, V> auxiliaryCache;
         Timestamp updateTimeStamp = new Timestamp(System.currentTimeMillis());
 
         if (StringUtils.isEmpty(query) || null == dbConnection) {
             throw new BlueWhaleCacheUpdationException("Invalid query!!");
         }
+        long loadStart = System.nanoTime();
         try {
-            if (isCacheUpdatable()) {
-                buildUpdatableDbBackedCache(dbConnection, auxiliaryCache, true);
-            } else {
-                buildNonUpdatableDbBackedCache(dbConnection, auxiliaryCache);
-            }
+            auxiliaryCache = loadAllEntries(dbConnection);
         } catch (BlueWhaleCacheException e) {
+            recordLoadFailure(e);
             throw new BlueWhaleCacheUpdationException("Update failed!!", e);
         }
 
-        // Almost contention free, so not very expensive
-        synchronized (this) {
-            this.entries = auxiliaryCache;
-            this.lastLoadTimeStamp = updateTimeStamp;
-        }
-    }
-
-    @Override
-    public Map<K, V> getAll() throws BlueWhaleCacheUpdationException {
-        return entries;
-    }
-
-    @Override
-    public int getSize() {
-        return this.entries.size();
+        publish(auxiliaryCache, updateTimeStamp.getTime());
+        this.lastLoadTimeStamp = updateTimeStamp;
+        recordLoad(false, loadStart, auxiliaryCache.size());
+        writeSnapshotFile();
     }
 }
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.sqlDB;
+
+import com.zapr.bluewhale.cache.CacheSink;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Delegate for delta refreshed DB caches. Called with the complete result set on init, and with
+ * only the rows changed since last load on refresh.
+ */
+public interface DBDeltaLoaderDelegate<K, V> {
+
+    /**
+     * Closing of resultset is handled in library
+     *
+     * @param rs   Rows changed since last load
+     * @param sink Put new/updated rows in it, and remove deleted (tombstoned) ones
+     */
+    public void addEntries(ResultSet rs, CacheSink<K, V> sink) throws SQLException;
+}
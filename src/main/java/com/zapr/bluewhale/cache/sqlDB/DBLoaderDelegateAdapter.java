@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.sqlDB;
+
+import com.zapr.bluewhale.cache.MapLoaderAdapter;
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Loads entries through a {@link DBLoaderDelegate}, for caches which take a
+ * {@link com.zapr.bluewhale.cache.CacheLoaderDelegate}. Result set is closed by whoever ran the
+ * query.
+ */
+public class DBLoaderDelegateAdapter<K, V> extends MapLoaderAdapter<K, V, ResultSet> {
+
+    @Getter
+    private final DBLoaderDelegate dbLoaderDelegate;
+
+    public DBLoaderDelegateAdapter(@NonNull DBLoaderDelegate dbLoaderDelegate) {
+        this.dbLoaderDelegate = dbLoaderDelegate;
+    }
+
+    @Override
+    protected void addEntries(ResultSet rs, HashMap<K, V> entries) throws BlueWhaleCacheException {
+        try {
+            dbLoaderDelegate.addEntry(rs, entries);
+        } catch (SQLException e) {
+            throw new BlueWhaleCacheException("SQL Exception while reading rows", e);
+        }
+    }
+}
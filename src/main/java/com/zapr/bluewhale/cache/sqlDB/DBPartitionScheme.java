@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.sqlDB;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Splits the initial load of a DB cache into partitions which are queried concurrently, each
+ * over its own connection. Partition query carries the predicate, and the scheme binds its
+ * parameters for every partition.
+ */
+public interface DBPartitionScheme {
+
+    public int getPartitionCount();
+
+    /**
+     * @param pstmt          Partition query
+     * @param partition      Partition to bind, from 0 to partitionCount - 1
+     * @param parameterIndex Index of the first parameter of partition predicate
+     */
+    public void bindPartition(PreparedStatement pstmt, int partition, int parameterIndex)
+            throws SQLException;
+}
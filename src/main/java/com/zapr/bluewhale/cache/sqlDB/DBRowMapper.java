@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.sqlDB;
+
+import com.zapr.bluewhale.cache.CacheSink;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Row level delegate for DB caches. Library iterates the result set and owns the structure
+ * entries are kept in, the mapper only turns the current row into entries. Rows of different
+ * partitions are mapped from several threads at once, so implementations must be thread safe,
+ * ideally stateless.
+ */
+public interface DBRowMapper<K, V> {
+
+    /**
+     * @param rs   Result set positioned at the row to map, must not be moved by the mapper
+     * @param sink Put (or remove) entries built from the row in it
+     */
+    public void mapRow(ResultSet rs, CacheSink<K, V> sink) throws SQLException;
+}
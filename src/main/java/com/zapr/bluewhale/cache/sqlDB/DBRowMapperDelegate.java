@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.sqlDB;
+
+import com.zapr.bluewhale.cache.CacheLoaderDelegate;
+import com.zapr.bluewhale.cache.CacheSink;
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Loads entries by handing every row of a result set to a {@link DBRowMapper}.
+ */
+public class DBRowMapperDelegate<K, V> implements CacheLoaderDelegate<K, V, ResultSet> {
+
+    @Getter
+    private final DBRowMapper<K, V> rowMapper;
+
+    public DBRowMapperDelegate(@NonNull DBRowMapper<K, V> rowMapper) {
+        this.rowMapper = rowMapper;
+    }
+
+    @Override
+    public void addEntries(ResultSet rs, CacheSink<K, V> sink) throws BlueWhaleCacheException {
+        try {
+            while (rs.next()) {
+                rowMapper.mapRow(rs, sink);
+            }
+        } catch (SQLException e) {
+            throw new BlueWhaleCacheException("SQL Exception while reading rows", e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.sqlDB;
+
+import com.zapr.bluewhale.cache.SourceProvider;
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Borrows a fresh connection from the DataSource for every load and closes it (i.e. returns it
+ * to the pool) once the load is over.
+ */
+@Slf4j
+public class DataSourceConnectionProvider implements SourceProvider<Connection> {
+
+    private final DataSource dataSource;
+
+    public DataSourceConnectionProvider(@NonNull DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public Connection acquire() throws BlueWhaleCacheException {
+        try {
+            return dataSource.getConnection();
+        } catch (SQLException e) {
+            throw new BlueWhaleCacheException("Can't get connection from DataSource", e);
+        }
+    }
+
+    @Override
+    public void release(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.warn("Can't close DB connection! Hence I don't care and will swallow this", e);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.sqlDB;
+
+import java.math.BigInteger;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import lombok.NonNull;
+
+/**
+ * Partitions rows by ranges of a numeric key, for a predicate such as {@code id >= ? AND id < ?}.
+ * Partition i covers keys from boundaries[i] (inclusive) to boundaries[i + 1] (exclusive).
+ */
+public class KeyRangePartitionScheme implements DBPartitionScheme {
+
+    private final long[] boundaries;
+
+    public KeyRangePartitionScheme(@NonNull long... boundaries) {
+        if (boundaries.length < 2) {
+            throw new IllegalArgumentException("At least two boundaries are needed for a key range");
+        }
+        for (int i = 1; i < boundaries.length; i++) {
+            if (boundaries[i] <= boundaries[i - 1]) {
+                throw new IllegalArgumentException("Key range boundaries should be increasing");
+            }
+        }
+        this.boundaries = boundaries.clone();
+    }
+
+    /**
+     * Splits [minKey, maxKey] into partitionCount ranges of (almost) equal width. As the upper
+     * boundary is exclusive, maxKey must be less than Long.MAX_VALUE.
+     */
+    public static KeyRangePartitionScheme evenlySplit(long minKey, long maxKey, int partitionCount) {
+        if (partitionCount <= 0 || maxKey < minKey) {
+            throw new IllegalArgumentException("Invalid key range or partition count");
+        }
+        if (maxKey == Long.MAX_VALUE) {
+            throw new IllegalArgumentException("Key range can't end at Long.MAX_VALUE, its exclusive upper " +
+                    "boundary would overflow");
+        }
+        // Keys in range, which may exceed Long.MAX_VALUE for ranges spanning most of the longs
+        BigInteger keys = BigInteger.valueOf(maxKey).subtract(BigInteger.valueOf(minKey)).add(BigInteger.ONE);
+        int count = keys.min(BigInteger.valueOf(partitionCount)).intValue();
+        BigInteger width = keys.divide(BigInteger.valueOf(count));
+        long[] boundaries = new long[count + 1];
+        for (int i = 0; i < count; i++) {
+            boundaries[i] = BigInteger.valueOf(minKey).add(width.multiply(BigInteger.valueOf(i))).longValue();
+        }
+        boundaries[count] = maxKey + 1;
+        return new KeyRangePartitionScheme(boundaries);
+    }
+
+    @Override
+    public int getPartitionCount() {
+        return boundaries.length - 1;
+    }
+
+    @Override
+    public void bindPartition(PreparedStatement pstmt, int partition, int parameterIndex)
+            throws SQLException {
+        pstmt.setLong(parameterIndex, boundaries[partition]);
+        pstmt.setLong(parameterIndex + 1, boundaries[partition + 1]);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.cache.sqlDB;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import lombok.Getter;
+
+/**
+ * Partitions rows by modulo of a numeric column, for a predicate such as
+ * {@code MOD(ABS(id), ?) = ?}, bound to partition count and partition respectively.
+ * <p>
+ * On most databases (MySQL, PostgreSQL, Oracle, H2) the modulo of a negative number is negative,
+ * so a plain {@code MOD(id, ?) = ?} silently skips every row with a negative id. Keep the
+ * {@code ABS} unless the column can't be negative.
+ */
+public class ModuloPartitionScheme implements DBPartitionScheme {
+
+    @Getter
+    private final int partitionCount;
+
+    public ModuloPartitionScheme(int partitionCount) {
+        if (partitionCount <= 0) {
+            throw new IllegalArgumentException("Partition count should be positive");
+        }
+        this.partitionCount = partitionCount;
+    }
+
+    @Override
+    public void bindPartition(PreparedStatement pstmt, int partition, int parameterIndex)
+            throws SQLException {
+        pstmt.setInt(parameterIndex, partitionCount);
+        pstmt.setInt(parameterIndex + 1, partition);
+    }
+}
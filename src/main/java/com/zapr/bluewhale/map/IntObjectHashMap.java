@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.map;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Open addressing (linear probing) hash map from primitive int keys to objects. Keys and values
+ * are kept in two flat arrays, so an entry costs 4 bytes plus a reference, and {@link #get(int)}
+ * neither boxes nor allocates.
+ * <p>
+ * Null values are not supported. Not thread safe; meant to be filled once and then only read.
+ */
+public class IntObjectHashMap<V> extends AbstractMap<Integer, V> implements IntObjectSink<V> {
+
+    public static final float DEFAULT_LOAD_FACTOR = 0.6f;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private final float loadFactor;
+    private int[] keys;
+    private Object[] values;
+    private int mask;
+    private int shift;
+    private int size;
+    private int resizeThreshold;
+
+    public IntObjectHashMap() {
+        this(16, DEFAULT_LOAD_FACTOR);
+    }
+
+    public IntObjectHashMap(int expectedSize) {
+        this(expectedSize, DEFAULT_LOAD_FACTOR);
+    }
+
+    public IntObjectHashMap(int expectedSize, float loadFactor) {
+        if (expectedSize < 0 || loadFactor <= 0 || loadFactor >= 1) {
+            throw new IllegalArgumentException("Invalid expected size or load factor");
+        }
+        this.loadFactor = loadFactor;
+        allocate(capacityFor(expectedSize, loadFactor));
+    }
+
+    public V get(int key) {
+        int slot = slot(key);
+        while (true) {
+            Object value = values[slot];
+            if (value == null) {
+                return null;
+            }
+            if (keys[slot] == key) {
+                @SuppressWarnings("unchecked")
+                V found = (V) value;
+                return found;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public void put(int key, V value) {
+        if (value == null) {
+            throw new NullPointerException("Null values are not supported");
+        }
+        int slot = slot(key);
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeThreshold) {
+            resize(keys.length << 1);
+        }
+    }
+
+    @Override
+    public void remove(int key) {
+        int slot = slot(key);
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                values[slot] = null;
+                size--;
+                shiftBack(slot);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    @Override
+    public V get(Object key) {
+        return key instanceof Integer ? get(((Integer) key).intValue()) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public V put(Integer key, V value) {
+        V previous = get(key.intValue());
+        put(key.intValue(), value);
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<Integer, V>> entrySet() {
+        return new AbstractSet<Entry<Integer, V>>() {
+            @Override
+            public Iterator<Entry<Integer, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private int slot(int key) {
+        // Fibonacci hashing, spreads sequential ids over the whole table
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    /**
+     * Backward shift deletion: moves later entries of the probe sequence into the freed slot, so
+     * that no tombstones are needed.
+     */
+    private void shiftBack(int freed) {
+        int slot = (freed + 1) & mask;
+        while (values[slot] != null) {
+            int ideal = slot(keys[slot]);
+            // Entry can move to freed slot only if freed lies cyclically within [ideal, slot)
+            if (((slot - ideal) & mask) >= ((slot - freed) & mask)) {
+                keys[freed] = keys[slot];
+                values[freed] = values[slot];
+                values[slot] = null;
+                freed = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void resize(int capacity) {
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalStateException("IntObjectHashMap can't grow beyond " + MAX_CAPACITY);
+        }
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = slot(oldKeys[i]);
+                while (values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        resizeThreshold = (int) (capacity * loadFactor);
+    }
+
+    static int capacityFor(int expectedSize, float loadFactor) {
+        long required = (long) Math.ceil(Math.max(expectedSize, 1) / (double) loadFactor) + 1;
+        if (required > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Expected size too large : " + expectedSize);
+        }
+        return Math.max(2, Integer.highestOneBit((int) required - 1) << 1);
+    }
+
+    private class EntryIterator implements Iterator<Entry<Integer, V>> {
+
+        private int next = advance(0);
+
+        @Override
+        public boolean hasNext() {
+            return next < values.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Entry<Integer, V> next() {
+            if (next >= values.length) {
+                throw new NoSuchElementException();
+            }
+            Entry<Integer, V> entry = new SimpleImmutableEntry<>(keys[next], (V) values[next]);
+            next = advance(next + 1);
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private int advance(int from) {
+            while (from < values.length && values[from] == null) {
+                from++;
+            }
+            return from;
+        }
+    }
+}
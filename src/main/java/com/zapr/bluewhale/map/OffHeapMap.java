@@ -0,0 +1,555 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.map;
+
+import com.zapr.bluewhale.cache.CacheSink;
+import com.zapr.bluewhale.serializer.ValueSerializer;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import lombok.NonNull;
+
+/**
+ * Read only map whose values (and keys, given a key serializer) are kept serialized in direct
+ * byte buffers (segments) outside the java heap, with an open addressing index of key hashes to
+ * entry addresses on heap. Entries are deserialized on every {@link #get(Object)}. Without a key
+ * serializer keys stay on heap in the index, which saves deserializing them on lookups.
+ * <p>
+ * Segments are freed explicitly on {@link #close()}, instead of waiting for GC. Close waits for
+ * reads in progress to finish before freeing, and reads after close throw
+ * IllegalStateException, so freed memory is never read. Reads in progress are counted on
+ * counters striped by thread, which costs every read an uncontended atomic increment and
+ * decrement.
+ * <p>
+ * Null keys are not supported.
+ */
+public final class OffHeapMap<K, V> extends AbstractMap<K, V> implements Closeable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+    // First segment of maps whose size in bytes isn't known up front, later ones double up to
+    // segmentSize
+    static final int MIN_SEGMENT_SIZE = 64 << 10;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private final ValueSerializer<K> keySerializer;
+    private final ValueSerializer<V> serializer;
+    private final ByteBuffer[] segments;
+    // Keys by slot if kept on heap, null if serialized in segments
+    private final Object[] keys;
+    private final int[] hashes;
+    // Segment index plus one in higher 32 bits, offset within segment in lower 32 bits, 0 for
+    // empty slots
+    private final long[] addresses;
+    private final int shift;
+    private final int size;
+    private final long usedBytes;
+    private final Readers readers = new Readers();
+    private volatile boolean closed = false;
+
+    private OffHeapMap(ValueSerializer<K> keySerializer, ValueSerializer<V> serializer, ByteBuffer[] segments,
+                       Object[] keys, int[] hashes, long[] addresses, int shift, int size) {
+        this.keySerializer = keySerializer;
+        this.serializer = serializer;
+        this.segments = segments;
+        this.keys = keys;
+        this.hashes = hashes;
+        this.addresses = addresses;
+        this.shift = shift;
+        this.size = size;
+        long used = 0;
+        for (ByteBuffer segment : segments) {
+            used += segment.position();
+        }
+        this.usedBytes = used;
+    }
+
+    /**
+     * Builder of a map whose keys stay on heap.
+     */
+    public static <K, V> Builder<K, V> builder(ValueSerializer<V> serializer, int expectedSize,
+                                               int segmentSize) {
+        return new Builder<>(null, serializer, expectedSize, 0L, segmentSize);
+    }
+
+    /**
+     * @param keySerializer Serializer of keys, which are kept on heap if null
+     * @param expectedBytes Bytes entries are expected to take in segments, such as
+     *                      {@link #getUsedBytes()} of the map being replaced, 0 if unknown
+     */
+    public static <K, V> Builder<K, V> builder(ValueSerializer<K> keySerializer, ValueSerializer<V> serializer,
+                                               int expectedSize, long expectedBytes, int segmentSize) {
+        return new Builder<>(keySerializer, serializer, expectedSize, expectedBytes, segmentSize);
+    }
+
+    @Override
+    public V get(Object key) {
+        if (key == null) {
+            return null;
+        }
+        int stripe = readers.enter();
+        try {
+            checkOpen();
+            int slot = find(key);
+            return slot < 0 ? null : readValue(addresses[slot]);
+        } finally {
+            readers.exit(stripe);
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (key == null) {
+            return false;
+        }
+        int stripe = readers.enter();
+        try {
+            checkOpen();
+            return find(key) >= 0;
+        } finally {
+            readers.exit(stripe);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Direct memory held by this map, in bytes.
+     */
+    public long getOffHeapBytes() {
+        long bytes = 0;
+        for (ByteBuffer segment : segments) {
+            bytes += segment.capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * Bytes of segments holding entries (or entries since overwritten), at most
+     * {@link #getOffHeapBytes()}.
+     */
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Heap taken by the index, not counting keys kept on heap.
+     */
+    public long getIndexHeapBytes() {
+        long perSlot = 4L + 8L + (keys == null ? 0L : 4L);
+        return perSlot * addresses.length;
+    }
+
+    /**
+     * @return true if keys are kept on heap, false if they are serialized off heap
+     */
+    public boolean hasHeapKeys() {
+        return keys != null;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Frees segments, once reads in progress are done. Reads afterwards throw
+     * IllegalStateException.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        readers.awaitNone();
+        for (ByteBuffer segment : segments) {
+            DirectBuffers.free(segment);
+        }
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Off heap entries have already been released");
+        }
+    }
+
+    private int find(Object key) {
+        int hash = key.hashCode();
+        int mask = addresses.length - 1;
+        int slot = slot(hash, shift);
+        while (addresses[slot] != 0L) {
+            if (hashes[slot] == hash && key.equals(keyAt(slot))) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private Object keyAt(int slot) {
+        return keys != null ? keys[slot] : readKey(addresses[slot]);
+    }
+
+    private K readKey(long address) {
+        ByteBuffer view = view(address);
+        int length = view.getInt(view.position());
+        view.limit(view.position() + 4 + length);
+        view.position(view.position() + 4);
+        return keySerializer.deserialize(view);
+    }
+
+    private V readValue(long address) {
+        ByteBuffer view = view(address);
+        int offset = view.position();
+        if (keySerializer != null) {
+            // Skips the key written before the value
+            offset += 4 + view.getInt(offset);
+        }
+        int length = view.getInt(offset);
+        view.limit(offset + 4 + length);
+        view.position(offset + 4);
+        return serializer.deserialize(view);
+    }
+
+    private ByteBuffer view(long address) {
+        ByteBuffer view = segments[(int) (address >>> 32) - 1].duplicate();
+        view.position((int) address);
+        return view;
+    }
+
+    private static int slot(int hash, int shift) {
+        return (hash * 0x9E3779B9) >>> shift;
+    }
+
+    private class EntryIterator implements Iterator<Entry<K, V>> {
+
+        private int next = advance(0);
+
+        @Override
+        public boolean hasNext() {
+            return next < addresses.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Entry<K, V> next() {
+            if (next >= addresses.length) {
+                throw new NoSuchElementException();
+            }
+            Entry<K, V> entry;
+            int stripe = readers.enter();
+            try {
+                checkOpen();
+                entry = new SimpleImmutableEntry<>((K) keyAt(next), readValue(addresses[next]));
+            } finally {
+                readers.exit(stripe);
+            }
+            next = advance(next + 1);
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("OffHeapMap is read only");
+        }
+
+        private int advance(int from) {
+            while (from < addresses.length && addresses[from] == 0L) {
+                from++;
+            }
+            return from;
+        }
+    }
+
+    /**
+     * Reads in progress, counted per stripe of threads. A thread always counts on the same
+     * stripe, so no stripe goes below zero and all of them read zero only when no read is in
+     * progress.
+     */
+    private static final class Readers {
+
+        // Longs between two stripes, so that every stripe has cache lines of its own
+        private static final int PADDING = 16;
+        private static final int STRIPES;
+
+        static {
+            int stripes = 1;
+            while (stripes < 2 * Runtime.getRuntime().availableProcessors()) {
+                stripes <<= 1;
+            }
+            STRIPES = stripes;
+        }
+
+        private final AtomicLongArray counts = new AtomicLongArray(STRIPES * PADDING);
+
+        int enter() {
+            int stripe = ((int) Thread.currentThread().getId() & (STRIPES - 1)) * PADDING;
+            counts.incrementAndGet(stripe);
+            return stripe;
+        }
+
+        void exit(int stripe) {
+            counts.decrementAndGet(stripe);
+        }
+
+        /**
+         * Waits for reads which entered before now to exit. Reads entering later must see the
+         * map closed, as closed is written before counts are read.
+         */
+        void awaitNone() {
+            for (int stripe = 0; stripe < counts.length(); stripe += PADDING) {
+                while (counts.get(stripe) != 0L) {
+                    Thread.yield();
+                }
+            }
+        }
+    }
+
+    /**
+     * Serializes entries into segments as they are put. Removed entries stay in their segment
+     * (but are no longer indexed) until the map is closed. The first segment is sized after
+     * expectedBytes if known, or else starts small, and later ones double up to segmentSize, so
+     * small maps don't take a whole segment. Not thread safe.
+     */
+    public static final class Builder<K, V> implements CacheSink<K, V> {
+
+        private final ValueSerializer<K> keySerializer;
+        private final ValueSerializer<V> serializer;
+        private final int segmentSize;
+        private final long expectedBytes;
+        private final List<ByteBuffer> segments = new ArrayList<>();
+        private ByteBuffer segment;
+        private Object[] keys;
+        private int[] hashes;
+        private long[] addresses;
+        private int shift;
+        private int size;
+        private boolean built = false;
+
+        private Builder(ValueSerializer<K> keySerializer, @NonNull ValueSerializer<V> serializer,
+                        int expectedSize, long expectedBytes, int segmentSize) {
+            if (segmentSize <= 8) {
+                throw new IllegalArgumentException("Segment size too small : " + segmentSize);
+            }
+            this.keySerializer = keySerializer;
+            this.serializer = serializer;
+            this.segmentSize = segmentSize;
+            this.expectedBytes = expectedBytes;
+            allocateIndex(LongObjectHashMap.capacityFor(expectedSize, LOAD_FACTOR));
+        }
+
+        @Override
+        public void put(K key, V value) {
+            if (key == null || value == null) {
+                throw new NullPointerException("Null keys and values are not supported");
+            }
+            if (built) {
+                throw new IllegalStateException("Map has already been built");
+            }
+            long address = write(key, value);
+            int hash = key.hashCode();
+            int slot = find(key, hash);
+            if (slot >= 0) {
+                addresses[slot] = address;
+                return;
+            }
+            int mask = addresses.length - 1;
+            slot = slot(hash, shift);
+            while (addresses[slot] != 0L) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys != null) {
+                keys[slot] = key;
+            }
+            hashes[slot] = hash;
+            addresses[slot] = address;
+            if (++size > addresses.length * LOAD_FACTOR) {
+                resizeIndex(addresses.length << 1);
+            }
+        }
+
+        @Override
+        public void remove(K key) {
+            if (key == null) {
+                return;
+            }
+            int freed = find(key, key.hashCode());
+            if (freed < 0) {
+                return;
+            }
+            int mask = addresses.length - 1;
+            clear(freed);
+            size--;
+            // Backward shift deletion, see LongObjectHashMap
+            int slot = (freed + 1) & mask;
+            while (addresses[slot] != 0L) {
+                int ideal = slot(hashes[slot], shift);
+                if (((slot - ideal) & mask) >= ((slot - freed) & mask)) {
+                    if (keys != null) {
+                        keys[freed] = keys[slot];
+                    }
+                    hashes[freed] = hashes[slot];
+                    addresses[freed] = addresses[slot];
+                    clear(slot);
+                    freed = slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public OffHeapMap<K, V> build() {
+            built = true;
+            return new OffHeapMap<>(keySerializer, serializer, segments.toArray(new ByteBuffer[segments.size()]),
+                    keys, hashes, addresses, shift, size);
+        }
+
+        /**
+         * Frees segments written so far, in case the load failed.
+         */
+        public void discard() {
+            built = true;
+            for (ByteBuffer written : segments) {
+                DirectBuffers.free(written);
+            }
+            segments.clear();
+        }
+
+        private int find(K key, int hash) {
+            int mask = addresses.length - 1;
+            int slot = slot(hash, shift);
+            while (addresses[slot] != 0L) {
+                if (hashes[slot] == hash && key.equals(keys != null ? keys[slot] : readKey(addresses[slot]))) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private K readKey(long address) {
+            ByteBuffer view = segments.get((int) (address >>> 32) - 1).duplicate();
+            int offset = (int) address;
+            view.limit(offset + 4 + view.getInt(offset));
+            view.position(offset + 4);
+            return keySerializer.deserialize(view);
+        }
+
+        private void clear(int slot) {
+            if (keys != null) {
+                keys[slot] = null;
+            }
+            hashes[slot] = 0;
+            addresses[slot] = 0L;
+        }
+
+        private long write(K key, V value) {
+            int keyLength = keySerializer == null ? -1 : keySerializer.serializedSize(key);
+            int valueLength = serializer.serializedSize(value);
+            int length = (keyLength < 0 ? 0 : 4 + keyLength) + 4 + valueLength;
+            if (segment == null || segment.remaining() < length) {
+                segment = ByteBuffer.allocateDirect(nextSegmentSize(length));
+                segments.add(segment);
+            }
+            int offset = segment.position();
+            if (keyLength >= 0) {
+                writeSized(keySerializer, key, keyLength);
+            }
+            writeSized(serializer, value, valueLength);
+            return ((long) segments.size() << 32) | (offset & 0xFFFFFFFFL);
+        }
+
+        private <T> void writeSized(ValueSerializer<T> writer, T object, int length) {
+            int offset = segment.position();
+            segment.putInt(length);
+            writer.serialize(object, segment);
+            if (segment.position() != offset + 4 + length) {
+                throw new IllegalStateException("Serializer wrote " + (segment.position() - offset - 4) +
+                        " bytes instead of " + length);
+            }
+        }
+
+        private int nextSegmentSize(int needed) {
+            long size;
+            if (segment == null) {
+                size = expectedBytes > 0 ? expectedBytes : MIN_SEGMENT_SIZE;
+            } else {
+                size = 2L * segment.capacity();
+            }
+            return (int) Math.max(Math.min(size, segmentSize), needed);
+        }
+
+        private void allocateIndex(int capacity) {
+            keys = keySerializer == null ? new Object[capacity] : null;
+            hashes = new int[capacity];
+            addresses = new long[capacity];
+            shift = 32 - Integer.numberOfTrailingZeros(capacity);
+        }
+
+        private void resizeIndex(int capacity) {
+            Object[] oldKeys = keys;
+            int[] oldHashes = hashes;
+            long[] oldAddresses = addresses;
+            allocateIndex(capacity);
+            int mask = capacity - 1;
+            for (int i = 0; i < oldAddresses.length; i++) {
+                if (oldAddresses[i] != 0L) {
+                    int slot = slot(oldHashes[i], shift);
+                    while (addresses[slot] != 0L) {
+                        slot = (slot + 1) & mask;
+                    }
+                    if (keys != null) {
+                        keys[slot] = oldKeys[i];
+                    }
+                    hashes[slot] = oldHashes[i];
+                    addresses[slot] = oldAddresses[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,527 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.map;
+
+import com.zapr.bluewhale.cache.CacheSink;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable hash array mapped trie. Updates never modify an existing map, they return a new one
+ * sharing all untouched nodes with the old, so applying n changes to a map of any size costs
+ * O(n log32 size) time and garbage.
+ * <p>
+ * Bulk loads and deltas go through an {@link Editor}, which updates nodes it has created itself in
+ * place, and copies (once) every node it touches which belongs to a published map.
+ * <p>
+ * Null keys are not supported.
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final Object NOT_FOUND = new Object();
+
+    private static final PersistentHashMap<Object, Object> EMPTY = new PersistentHashMap<>(null, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentHashMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (root == null || key == null) {
+            return null;
+        }
+        Object value = root.find(0, hash(key), key);
+        return value == NOT_FOUND ? null : (V) value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return root != null && key != null && root.find(0, hash(key), key) != NOT_FOUND;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public PersistentHashMap<K, V> plus(K key, V value) {
+        Editor<K, V> editor = edit();
+        editor.put(key, value);
+        return editor.persistent();
+    }
+
+    public PersistentHashMap<K, V> minus(K key) {
+        Editor<K, V> editor = edit();
+        editor.remove(key);
+        return editor.persistent();
+    }
+
+    /**
+     * Starts a batch of changes on top of this map, which itself stays unchanged.
+     */
+    public Editor<K, V> edit() {
+        return new Editor<>(root, size);
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new EntryIterator<>(root);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int bitpos(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    /**
+     * Batch of changes on top of a map. Not thread safe; once {@link #persistent()} is called the
+     * editor can't be used any further.
+     */
+    public static final class Editor<K, V> implements CacheSink<K, V> {
+
+        private Object edit = new Object();
+        private final Box addedOrRemoved = new Box();
+        private Node root;
+        private int size;
+
+        private Editor(Node root, int size) {
+            this.root = root;
+            this.size = size;
+        }
+
+        @Override
+        public void put(K key, V value) {
+            ensureEditable(key);
+            addedOrRemoved.value = false;
+            Node node = root == null ? new BitmapNode(edit, 0, new Object[4]) : root;
+            root = node.put(edit, 0, hash(key), key, value, addedOrRemoved);
+            if (addedOrRemoved.value) {
+                size++;
+            }
+        }
+
+        @Override
+        public void remove(K key) {
+            ensureEditable(key);
+            if (root == null) {
+                return;
+            }
+            addedOrRemoved.value = false;
+            root = root.remove(edit, 0, hash(key), key, addedOrRemoved);
+            if (addedOrRemoved.value) {
+                size--;
+            }
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public PersistentHashMap<K, V> persistent() {
+            if (edit == null) {
+                throw new IllegalStateException("Editor already made persistent");
+            }
+            edit = null;
+            return size == 0 ? PersistentHashMap.<K, V>empty() : new PersistentHashMap<K, V>(root, size);
+        }
+
+        private void ensureEditable(K key) {
+            if (edit == null) {
+                throw new IllegalStateException("Editor already made persistent");
+            }
+            if (key == null) {
+                throw new NullPointerException("Null keys are not supported");
+            }
+        }
+    }
+
+    private static final class Box {
+        boolean value;
+    }
+
+    private abstract static class Node {
+
+        abstract Object find(int shift, int hash, Object key);
+
+        abstract Node put(Object edit, int shift, int hash, Object key, Object value, Box added);
+
+        /**
+         * @return node without the key, null if node is left empty
+         */
+        abstract Node remove(Object edit, int shift, int hash, Object key, Box removed);
+
+        abstract Object[] array();
+
+        // Number of used slots in array, two per entry
+        abstract int length();
+    }
+
+    /**
+     * Up to 32 slots, each holding either a key and its value, or null and a child node.
+     */
+    private static final class BitmapNode extends Node {
+
+        private final Object edit;
+        private int bitmap;
+        private Object[] array;
+
+        BitmapNode(Object edit, int bitmap, Object[] array) {
+            this.edit = edit;
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            BitmapNode node = this;
+            while (true) {
+                int bit = bitpos(hash, shift);
+                if ((node.bitmap & bit) == 0) {
+                    return NOT_FOUND;
+                }
+                int idx = 2 * Integer.bitCount(node.bitmap & (bit - 1));
+                Object keyOrNull = node.array[idx];
+                Object valueOrNode = node.array[idx + 1];
+                if (keyOrNull != null) {
+                    return key.equals(keyOrNull) ? valueOrNode : NOT_FOUND;
+                }
+                if (!(valueOrNode instanceof BitmapNode)) {
+                    return ((Node) valueOrNode).find(shift + BITS, hash, key);
+                }
+                node = (BitmapNode) valueOrNode;
+                shift += BITS;
+            }
+        }
+
+        @Override
+        Node put(Object edit, int shift, int hash, Object key, Object value, Box added) {
+            int bit = bitpos(hash, shift);
+            int idx = 2 * Integer.bitCount(bitmap & (bit - 1));
+
+            if ((bitmap & bit) != 0) {
+                Object keyOrNull = array[idx];
+                Object valueOrNode = array[idx + 1];
+                if (keyOrNull == null) {
+                    Node child = ((Node) valueOrNode).put(edit, shift + BITS, hash, key, value, added);
+                    return child == valueOrNode ? this : editAndSet(edit, idx + 1, child);
+                }
+                if (key.equals(keyOrNull)) {
+                    return valueOrNode == value ? this : editAndSet(edit, idx + 1, value);
+                }
+                added.value = true;
+                Node child = createNode(edit, shift + BITS, keyOrNull, valueOrNode, hash, key, value);
+                BitmapNode editable = ensureEditable(edit);
+                editable.array[idx] = null;
+                editable.array[idx + 1] = child;
+                return editable;
+            }
+
+            added.value = true;
+            int length = 2 * Integer.bitCount(bitmap);
+            if (this.edit == edit && length < array.length) {
+                System.arraycopy(array, idx, array, idx + 2, length - idx);
+                array[idx] = key;
+                array[idx + 1] = value;
+                bitmap |= bit;
+                return this;
+            }
+            // Leave some room for further in place inserts while editing
+            Object[] newArray = new Object[Math.min(length + 8, 2 * (MASK + 1))];
+            System.arraycopy(array, 0, newArray, 0, idx);
+            newArray[idx] = key;
+            newArray[idx + 1] = value;
+            System.arraycopy(array, idx, newArray, idx + 2, length - idx);
+            return new BitmapNode(edit, bitmap | bit, newArray);
+        }
+
+        @Override
+        Node remove(Object edit, int shift, int hash, Object key, Box removed) {
+            int bit = bitpos(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int idx = 2 * Integer.bitCount(bitmap & (bit - 1));
+            Object keyOrNull = array[idx];
+            Object valueOrNode = array[idx + 1];
+
+            if (keyOrNull == null) {
+                Node child = ((Node) valueOrNode).remove(edit, shift + BITS, hash, key, removed);
+                if (child == valueOrNode) {
+                    return this;
+                }
+                if (child != null) {
+                    return editAndSet(edit, idx + 1, child);
+                }
+            } else if (key.equals(keyOrNull)) {
+                removed.value = true;
+            } else {
+                return this;
+            }
+
+            if (bitmap == bit) {
+                return null;
+            }
+            int length = 2 * Integer.bitCount(bitmap);
+            BitmapNode editable = ensureEditable(edit);
+            System.arraycopy(editable.array, idx + 2, editable.array, idx, length - idx - 2);
+            editable.array[length - 2] = null;
+            editable.array[length - 1] = null;
+            editable.bitmap ^= bit;
+            return editable;
+        }
+
+        @Override
+        Object[] array() {
+            return array;
+        }
+
+        @Override
+        int length() {
+            return 2 * Integer.bitCount(bitmap);
+        }
+
+        private BitmapNode ensureEditable(Object edit) {
+            if (this.edit == edit) {
+                return this;
+            }
+            int length = 2 * Integer.bitCount(bitmap);
+            Object[] newArray = new Object[length + 2];
+            System.arraycopy(array, 0, newArray, 0, length);
+            return new BitmapNode(edit, bitmap, newArray);
+        }
+
+        private BitmapNode editAndSet(Object edit, int idx, Object value) {
+            BitmapNode editable = ensureEditable(edit);
+            editable.array[idx] = value;
+            return editable;
+        }
+
+        private static Node createNode(Object edit, int shift, Object key1, Object value1,
+                                       int hash2, Object key2, Object value2) {
+            int hash1 = hash(key1);
+            if (hash1 == hash2) {
+                return new CollisionNode(edit, hash1, new Object[]{key1, value1, key2, value2}, 2);
+            }
+            Box ignored = new Box();
+            return new BitmapNode(edit, 0, new Object[4])
+                    .put(edit, shift, hash1, key1, value1, ignored)
+                    .put(edit, shift, hash2, key2, value2, ignored);
+        }
+    }
+
+    /**
+     * Keys whose hashes are equal in all 32 bits, kept in a flat array.
+     */
+    private static final class CollisionNode extends Node {
+
+        private final Object edit;
+        private final int hash;
+        private Object[] array;
+        private int count;
+
+        CollisionNode(Object edit, int hash, Object[] array, int count) {
+            this.edit = edit;
+            this.hash = hash;
+            this.array = array;
+            this.count = count;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int idx = indexOf(key);
+            return idx < 0 ? NOT_FOUND : array[idx + 1];
+        }
+
+        @Override
+        Node put(Object edit, int shift, int hash, Object key, Object value, Box added) {
+            if (hash != this.hash) {
+                // Nest this node under a bitmap node and let that one place the new key
+                return new BitmapNode(edit, bitpos(this.hash, shift), new Object[]{null, this, null, null})
+                        .put(edit, shift, hash, key, value, added);
+            }
+            int idx = indexOf(key);
+            if (idx >= 0) {
+                if (array[idx + 1] == value) {
+                    return this;
+                }
+                CollisionNode editable = ensureEditable(edit, 0);
+                editable.array[idx + 1] = value;
+                return editable;
+            }
+            added.value = true;
+            CollisionNode editable = ensureEditable(edit, 2);
+            editable.array[2 * count] = key;
+            editable.array[2 * count + 1] = value;
+            editable.count++;
+            return editable;
+        }
+
+        @Override
+        Node remove(Object edit, int shift, int hash, Object key, Box removed) {
+            int idx = indexOf(key);
+            if (idx < 0) {
+                return this;
+            }
+            removed.value = true;
+            if (count == 1) {
+                return null;
+            }
+            CollisionNode editable = ensureEditable(edit, 0);
+            int length = 2 * count;
+            System.arraycopy(editable.array, idx + 2, editable.array, idx, length - idx - 2);
+            editable.array[length - 2] = null;
+            editable.array[length - 1] = null;
+            editable.count--;
+            return editable;
+        }
+
+        @Override
+        Object[] array() {
+            return array;
+        }
+
+        @Override
+        int length() {
+            return 2 * count;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < 2 * count; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private CollisionNode ensureEditable(Object edit, int extraSlots) {
+            int length = 2 * count;
+            if (this.edit == edit && length + extraSlots <= array.length) {
+                return this;
+            }
+            Object[] newArray = new Object[length + Math.max(extraSlots, 2)];
+            System.arraycopy(array, 0, newArray, 0, length);
+            if (this.edit == edit) {
+                this.array = newArray;
+                return this;
+            }
+            return new CollisionNode(edit, hash, newArray, count);
+        }
+    }
+
+    /**
+     * Depth first walk over the trie, with an explicit stack of node arrays.
+     */
+    private static final class EntryIterator<K, V> implements Iterator<Entry<K, V>> {
+
+        // 7 levels of 5 bits cover the whole hash, plus one for collision nodes
+        private final Object[][] arrays = new Object[8][];
+        private final int[] positions = new int[8];
+        private final int[] lengths = new int[8];
+        private int depth = -1;
+        private Entry<K, V> next;
+
+        EntryIterator(Node root) {
+            if (root != null) {
+                push(root);
+                advance();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Entry<K, V> current = next;
+            advance();
+            return current;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("PersistentHashMap is immutable");
+        }
+
+        private void push(Node node) {
+            depth++;
+            arrays[depth] = node.array();
+            positions[depth] = 0;
+            lengths[depth] = node.length();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                if (positions[depth] >= lengths[depth]) {
+                    arrays[depth] = null;
+                    depth--;
+                    continue;
+                }
+                Object[] array = arrays[depth];
+                int idx = positions[depth];
+                positions[depth] += 2;
+                if (array[idx] == null) {
+                    push((Node) array[idx + 1]);
+                } else {
+                    next = new SimpleImmutableEntry<>((K) array[idx], (V) array[idx + 1]);
+                    return;
+                }
+            }
+        }
+    }
+}
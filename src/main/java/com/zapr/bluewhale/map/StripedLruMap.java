@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.map;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded map which evicts its least recently used entries. Keys are spread over stripes by
+ * hash, each an access ordered {@link LinkedHashMap} behind a lock of its own, so threads
+ * looking up different keys rarely contend. Recency is tracked per stripe, hence eviction is
+ * LRU within a stripe and only approximately LRU over the whole map.
+ * <p>
+ * Null keys and values are not supported.
+ */
+public class StripedLruMap<K, V> {
+
+    public static final int DEFAULT_STRIPES = 16;
+
+    private final Stripe<K, V>[] stripes;
+    private final int shift;
+
+    public StripedLruMap(int maximumSize) {
+        this(maximumSize, DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param maximumSize Entries held at most, shared evenly by stripes
+     * @param stripes     Rounded up to a power of two
+     */
+    @SuppressWarnings("unchecked")
+    public StripedLruMap(int maximumSize, int stripes) {
+        if (maximumSize <= 0 || stripes <= 0 || stripes > 1 << 16) {
+            throw new IllegalArgumentException("Invalid maximum size or stripes");
+        }
+        int stripeCount = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.shift = Integer.SIZE - Integer.numberOfTrailingZeros(stripeCount);
+        this.stripes = new Stripe[stripeCount];
+        int stripeCapacity = Math.max(1, (maximumSize + stripeCount - 1) / stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            this.stripes[i] = new Stripe<>(stripeCapacity);
+        }
+    }
+
+    /**
+     * Marks key as the most recently used of its stripe, if present.
+     */
+    public V get(K key) {
+        Stripe<K, V> stripe = stripeOf(key);
+        synchronized (stripe) {
+            return stripe.get(key);
+        }
+    }
+
+    public void put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("Null keys and values are not supported");
+        }
+        Stripe<K, V> stripe = stripeOf(key);
+        synchronized (stripe) {
+            stripe.put(key, value);
+        }
+    }
+
+    public V remove(K key) {
+        Stripe<K, V> stripe = stripeOf(key);
+        synchronized (stripe) {
+            return stripe.remove(key);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    /**
+     * @return Copy of entries, stripe by stripe, without touching their recency
+     */
+    public Map<K, V> copy() {
+        Map<K, V> copy = new HashMap<>();
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                copy.putAll(stripe);
+            }
+        }
+        return copy;
+    }
+
+    private Stripe<K, V> stripeOf(K key) {
+        if (shift == Integer.SIZE) {
+            return stripes[0];
+        }
+        // Stripe is picked by the high bits, as LinkedHashMap buckets by the low ones
+        return stripes[(key.hashCode() * 0x9E3779B9) >>> shift];
+    }
+
+    private static final class Stripe<K, V> extends LinkedHashMap<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        private Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.metrics;
+
+/**
+ * Read only metrics of a cache, meant to be polled by gauges of a metrics registry. Counters are
+ * cumulative since the cache was created.
+ */
+public interface CacheMetrics {
+
+    public long getQueryCount();
+
+    public long getHitCount();
+
+    public long getMissCount();
+
+    /**
+     * @return Hits over queries, 0 if nothing was queried yet
+     */
+    public double getHitRatio();
+
+    /**
+     * @return Successful loads and refreshes
+     */
+    public long getLoadCount();
+
+    /**
+     * @return Loads and refreshes which failed
+     */
+    public long getLoadFailureCount();
+
+    /**
+     * @return Durations of full loads (init, unsafeUpdate) in nanoseconds
+     */
+    public Log2Histogram getLoadDurations();
+
+    /**
+     * @return Durations of refreshes in nanoseconds
+     */
+    public Log2Histogram getRefreshDurations();
+
+    /**
+     * @return Entries loaded per load or refresh. Refreshes which apply changed rows on top of
+     * current entries count only the rows they applied.
+     */
+    public Log2Histogram getLoadedRows();
+
+    /**
+     * @return Time of the last successful load or refresh, 0 if there was none
+     */
+    public long getLastSuccessTimeStamp();
+
+    /**
+     * @return Milliseconds since the last successful load or refresh, -1 if there was none
+     */
+    public long getLastSuccessAgeMillis();
+
+    /**
+     * @return Rough estimate of heap retained by entries of the current snapshot, from a sample of
+     * entries. Entries kept off heap are not counted.
+     */
+    public long getEstimatedRetainedBytes();
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.metrics;
+
+/**
+ * Hooks to report cache loads to a metrics registry, or anything else. Called on the thread which
+ * loaded the cache, right after the load, hence must be quick. Query metrics are not pushed,
+ * poll them through {@link CacheMetrics} instead.
+ */
+public interface CacheMetricsListener {
+
+    /**
+     * @param refresh       If load was a refresh, and not a full load
+     * @param durationNanos Time taken by load, including publishing it
+     * @param rows          Entries loaded, or changed rows for delta refreshes
+     */
+    public void onLoad(String cacheName, CacheMetrics metrics, boolean refresh, long durationNanos,
+                       long rows);
+
+    public void onLoadFailure(String cacheName, CacheMetrics metrics, Throwable cause);
+}
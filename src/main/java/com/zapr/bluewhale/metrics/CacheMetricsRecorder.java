@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.metrics;
+
+import com.zapr.bluewhale.map.OffHeapMap;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records {@link CacheMetrics} of a cache. Queries are counted on {@link LongAdder}s, which keep
+ * a cell per contending thread, so counting costs a few nanoseconds and no cache line ping pong
+ * even with many readers.
+ */
+public final class CacheMetricsRecorder implements CacheMetrics {
+
+    // Entries looked at to estimate size of the rest
+    static final int SAMPLE_SIZE = 64;
+
+    // Map node (or slot) and its share of the table, per entry
+    static final long ENTRY_OVERHEAD_BYTES = 48L;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final Log2Histogram loadDurations = new Log2Histogram();
+    private final Log2Histogram refreshDurations = new Log2Histogram();
+    private final Log2Histogram loadedRows = new Log2Histogram();
+    private volatile long lastSuccessTimeStamp = 0L;
+    private volatile long estimatedRetainedBytes = 0L;
+
+    public void recordQuery(boolean hit) {
+        if (hit) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+    }
+
+    public void recordQueries(long hitCount, long missCount) {
+        hits.add(hitCount);
+        misses.add(missCount);
+    }
+
+    public void recordLoad(boolean refresh, long durationNanos, long rows) {
+        loads.increment();
+        (refresh ? refreshDurations : loadDurations).record(durationNanos);
+        loadedRows.record(rows);
+        lastSuccessTimeStamp = System.currentTimeMillis();
+    }
+
+    public void recordLoadFailure() {
+        loadFailures.increment();
+    }
+
+    /**
+     * Estimates heap retained by entries from the first {@link #SAMPLE_SIZE} of them. Of an
+     * {@link OffHeapMap}, only its index and the keys it keeps on heap are counted.
+     */
+    public void recordEntries(Map<?, ?> entries, SizeEstimator sizeEstimator) {
+        int size = entries.size();
+        if (size == 0) {
+            estimatedRetainedBytes = 0L;
+            return;
+        }
+        OffHeapMap<?, ?> offHeap = entries instanceof OffHeapMap ? (OffHeapMap<?, ?>) entries : null;
+        if (offHeap != null && !offHeap.hasHeapKeys()) {
+            estimatedRetainedBytes = offHeap.getIndexHeapBytes();
+            return;
+        }
+        long sampledBytes = 0L;
+        int sampled = 0;
+        Iterator<? extends Map.Entry<?, ?>> iterator = entries.entrySet().iterator();
+        while (sampled < SAMPLE_SIZE && iterator.hasNext()) {
+            Map.Entry<?, ?> entry = iterator.next();
+            sampledBytes += sizeEstimator.sizeOf(entry.getKey());
+            if (offHeap == null) {
+                sampledBytes += sizeEstimator.sizeOf(entry.getValue());
+            }
+            sampled++;
+        }
+        long bytesPerKeyAndValue = sampled == 0 ? 0L : sampledBytes / sampled;
+        if (offHeap != null) {
+            estimatedRetainedBytes = offHeap.getIndexHeapBytes() + bytesPerKeyAndValue * size;
+            return;
+        }
+        estimatedRetainedBytes = (ENTRY_OVERHEAD_BYTES + bytesPerKeyAndValue) * size;
+    }
+
+    @Override
+    public long getQueryCount() {
+        return hits.sum() + misses.sum();
+    }
+
+    @Override
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long queryCount = hitCount + misses.sum();
+        return queryCount == 0 ? 0.0 : (double) hitCount / queryCount;
+    }
+
+    @Override
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    @Override
+    public long getLoadFailureCount() {
+        return loadFailures.sum();
+    }
+
+    @Override
+    public Log2Histogram getLoadDurations() {
+        return loadDurations;
+    }
+
+    @Override
+    public Log2Histogram getRefreshDurations() {
+        return refreshDurations;
+    }
+
+    @Override
+    public Log2Histogram getLoadedRows() {
+        return loadedRows;
+    }
+
+    @Override
+    public long getLastSuccessTimeStamp() {
+        return lastSuccessTimeStamp;
+    }
+
+    @Override
+    public long getLastSuccessAgeMillis() {
+        long lastSuccess = lastSuccessTimeStamp;
+        return lastSuccess == 0L ? -1L : System.currentTimeMillis() - lastSuccess;
+    }
+
+    @Override
+    public long getEstimatedRetainedBytes() {
+        return estimatedRetainedBytes;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.metrics;
+
+/**
+ * Estimates heap retained by a key or a value of a cache, for {@link CacheMetrics}.
+ */
+public interface SizeEstimator {
+
+    /**
+     * Estimates strings, boxed primitives and primitive arrays, and counts just an object header
+     * for anything else.
+     */
+    public static final SizeEstimator DEFAULT = new SizeEstimator() {
+        @Override
+        public long sizeOf(Object object) {
+            if (object == null) {
+                return 0L;
+            }
+            if (object instanceof String) {
+                // String with its char array
+                return 56L + 2L * ((String) object).length();
+            }
+            if (object instanceof Number || object instanceof Boolean || object instanceof Character) {
+                return 16L;
+            }
+            if (object instanceof byte[]) {
+                return 16L + ((byte[]) object).length;
+            }
+            if (object instanceof char[]) {
+                return 16L + 2L * ((char[]) object).length;
+            }
+            if (object instanceof int[]) {
+                return 16L + 4L * ((int[]) object).length;
+            }
+            if (object instanceof long[]) {
+                return 16L + 8L * ((long[]) object).length;
+            }
+            return 16L;
+        }
+    };
+
+    public long sizeOf(Object object);
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.serializer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Serializers for commonly cached types.
+ */
+public final class Serializers {
+
+    public static final ValueSerializer<String> STRING = new StringSerializer();
+    public static final ValueSerializer<Long> LONG = new LongSerializer();
+    public static final ValueSerializer<Integer> INTEGER = new IntegerSerializer();
+    public static final ValueSerializer<byte[]> BYTES = new BytesSerializer();
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private Serializers() {
+    }
+
+    private static class StringSerializer implements ValueSerializer<String> {
+
+        @Override
+        public int serializedSize(String value) {
+            // UTF-8 length without encoding the string twice
+            int size = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    size += 1;
+                } else if (c < 0x800) {
+                    size += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length() &&
+                        Character.isLowSurrogate(value.charAt(i + 1))) {
+                    size += 4;
+                    i++;
+                } else if (Character.isSurrogate(c)) {
+                    // Unpaired surrogates are encoded as '?'
+                    size += 1;
+                } else {
+                    size += 3;
+                }
+            }
+            return size;
+        }
+
+        @Override
+        public void serialize(String value, ByteBuffer buffer) {
+            buffer.put(value.getBytes(UTF_8));
+        }
+
+        @Override
+        public String deserialize(ByteBuffer buffer) {
+            if (buffer.hasArray()) {
+                return new String(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                        buffer.remaining(), UTF_8);
+            }
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return new String(bytes, UTF_8);
+        }
+    }
+
+    private static class LongSerializer implements ValueSerializer<Long> {
+
+        @Override
+        public int serializedSize(Long value) {
+            return 8;
+        }
+
+        @Override
+        public void serialize(Long value, ByteBuffer buffer) {
+            buffer.putLong(value);
+        }
+
+        @Override
+        public Long deserialize(ByteBuffer buffer) {
+            return buffer.getLong(buffer.position());
+        }
+    }
+
+    private static class IntegerSerializer implements ValueSerializer<Integer> {
+
+        @Override
+        public int serializedSize(Integer value) {
+            return 4;
+        }
+
+        @Override
+        public void serialize(Integer value, ByteBuffer buffer) {
+            buffer.putInt(value);
+        }
+
+        @Override
+        public Integer deserialize(ByteBuffer buffer) {
+            return buffer.getInt(buffer.position());
+        }
+    }
+
+    private static class BytesSerializer implements ValueSerializer<byte[]> {
+
+        @Override
+        public int serializedSize(byte[] value) {
+            return value.length;
+        }
+
+        @Override
+        public void serialize(byte[] value, ByteBuffer buffer) {
+            buffer.put(value);
+        }
+
+        @Override
+        public byte[] deserialize(ByteBuffer buffer) {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr.bluewhale.serializer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts values (or keys) to and from bytes, for caches which keep them outside the java heap.
+ * Implementations must be thread safe.
+ */
+public interface ValueSerializer<V> {
+
+    /**
+     * @return exact number of bytes {@link #serialize(Object, ByteBuffer)} will write for value
+     */
+    public int serializedSize(V value);
+
+    /**
+     * Writes value at the current position of buffer, which has at least serializedSize bytes
+     * remaining.
+     */
+    public void serialize(V value, ByteBuffer buffer);
+
+    /**
+     * Reads a value from buffer, whose position and limit span exactly the bytes written by
+     * serialize. Buffer is a private view which may be retained (e.g. by a flyweight value) only
+     * as long as the cache entries it came from are live, as their memory is freed explicitly
+     * once they are released.
+     */
+    public V deserialize(ByteBuffer buffer);
+}
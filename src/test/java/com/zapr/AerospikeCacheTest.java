@@ -19,15 +19,27 @@
 package com.zapr;
 
 import com.aerospike.client.AerospikeClient;
+import com.aerospike.client.AerospikeException;
 import com.aerospike.client.Key;
 import com.aerospike.client.Record;
+import com.aerospike.client.ScanCallback;
+import com.aerospike.client.cluster.Node;
+import com.aerospike.client.policy.BatchPolicy;
+import com.aerospike.client.policy.Policy;
+import com.aerospike.client.policy.ScanPolicy;
 import com.aerospike.client.query.RecordSet;
 import com.aerospike.client.query.Statement;
 import com.zapr.bluewhale.cache.aerospike.AerospikeCache;
+import com.zapr.bluewhale.cache.CacheSink;
 import com.zapr.bluewhale.cache.aerospike.AerospikeLoaderDelegate;
+import com.zapr.bluewhale.cache.aerospike.AerospikeRecordDelegate;
+import com.zapr.bluewhale.cache.aerospike.AerospikeValueMapper;
+import com.zapr.bluewhale.cache.aerospike.ReadThroughAerospikeCache;
 import com.zapr.bluewhale.exception.BlueWhaleCacheInitializationException;
+import com.zapr.bluewhale.map.StripedLruMap;
 
 import org.easymock.EasyMock;
+import org.easymock.IAnswer;
 import org.powermock.api.easymock.PowerMock;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.testng.Assert;
@@ -35,8 +47,20 @@ import org.testng.IObjectFactory;
 import org.testng.annotations.ObjectFactory;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @PrepareForTest({RecordSet.class, AerospikeClient.class})
 public class AerospikeCacheTest {
@@ -145,6 +169,311 @@ public class AerospikeCacheTest {
         Assert.assertTrue(cache.isCacheInitialized());
     }
 
+    @Test
+    public void testInitAsyncKeepsServingCurrentEntries() throws Exception {
+
+        Statement statement = new Statement();
+        AerospikeClient aerospikeClient = PowerMock.createPartialMock(AerospikeClient.class, "query");
+        RecordSet recordSet = PowerMock.createMock(RecordSet.class);
+        recordSet.close();
+        EasyMock.expectLastCall().times(2);
+        EasyMock.expect(aerospikeClient.query(null, statement)).andReturn(recordSet).times(2);
+        PowerMock.replay(recordSet, aerospikeClient);
+
+        GenerationLoaderDelegate loaderDelegate = new GenerationLoaderDelegate();
+        AerospikeCache<String, String> cache = new AerospikeCache<>(loaderDelegate, "Aerospike Cache",
+                statement, null);
+        cache.init(aerospikeClient);
+        Assert.assertEquals(cache.query("key"), "generation1");
+
+        CompletableFuture<Void> reinit = cache.initAsync(aerospikeClient);
+        Assert.assertTrue(loaderDelegate.loading.await(5, TimeUnit.SECONDS));
+        // Second load is blocked in the delegate, first one keeps serving meanwhile
+        Assert.assertFalse(reinit.isDone());
+        Assert.assertEquals(cache.query("key"), "generation1");
+
+        loaderDelegate.release.countDown();
+        reinit.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(cache.query("key"), "generation2");
+        Assert.assertEquals(cache.getSize(), 1);
+        PowerMock.verify(recordSet, aerospikeClient);
+    }
+
+    @Test
+    public void testInitAsyncFailure() throws InterruptedException {
+
+        Statement statement = new Statement();
+        AerospikeClient aerospikeClient = PowerMock.createPartialMock(AerospikeClient.class, "query");
+        EasyMock.expect(aerospikeClient.query(null, statement)).andThrow(new AerospikeException("Timeout"));
+        PowerMock.replay(aerospikeClient);
+
+        AerospikeCache<String, String> cache = new AerospikeCache<>(new GenerationLoaderDelegate(),
+                "Aerospike Cache", statement, null);
+        try {
+            cache.initAsync(aerospikeClient).get();
+            Assert.fail("Init must fail when query fails");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof BlueWhaleCacheInitializationException);
+        }
+        Assert.assertFalse(cache.isCacheInitialized());
+    }
+
+    @Test
+    public void testParallelScan() throws BlueWhaleCacheInitializationException {
+
+        String namespace = "namespace";
+        String set = "set";
+        Node node1 = EasyMock.createMock(Node.class);
+        Node node2 = EasyMock.createMock(Node.class);
+        AerospikeClient aerospikeClient = PowerMock.createPartialMock(AerospikeClient.class, "getNodes", "scanNode");
+        EasyMock.expect(aerospikeClient.getNodes()).andReturn(new Node[]{node1, node2});
+        aerospikeClient.scanNode(EasyMock.<ScanPolicy>isNull(), EasyMock.same(node1), EasyMock.eq(namespace),
+                EasyMock.eq(set), EasyMock.anyObject(ScanCallback.class));
+        EasyMock.expectLastCall().andAnswer(new ScanAnswer(namespace, set, 0, 50));
+        aerospikeClient.scanNode(EasyMock.<ScanPolicy>isNull(), EasyMock.same(node2), EasyMock.eq(namespace),
+                EasyMock.eq(set), EasyMock.anyObject(ScanCallback.class));
+        EasyMock.expectLastCall().andAnswer(new ScanAnswer(namespace, set, 50, 100));
+        PowerMock.replay(aerospikeClient);
+
+        AerospikeCache<String, String> cache = new AerospikeCache<>(new AerospikeRecordDelegate<String, String>() {
+            @Override
+            public void addRecord(Key key, Record record, CacheSink<String, String> sink) {
+                sink.put(key.userKey.toString(), record.getValue("bin").toString());
+            }
+        }, "Aerospike Scan Cache", namespace, set, null);
+        cache.setScanParallelism(2);
+        // Loose enough to not slow the test down, while still going through the throttle
+        cache.setMaxRecordsPerSecond(100000);
+        cache.init(aerospikeClient);
+
+        PowerMock.verify(aerospikeClient);
+        Assert.assertTrue(cache.isCacheInitialized());
+        Assert.assertEquals(cache.getSize(), 100);
+        Assert.assertEquals(cache.query("key0"), "0");
+        Assert.assertEquals(cache.query("key99"), "99");
+    }
+
+    @Test
+    public void testReadThroughCoalescesMisses() throws Exception {
+
+        final CountDownLatch release = new CountDownLatch(1);
+        AerospikeClient aerospikeClient = PowerMock.createPartialMock(AerospikeClient.class, "get");
+        EasyMock.expect(aerospikeClient.get(EasyMock.<Policy>isNull(), EasyMock.eq(new Key("namespace", "set", "key1"))))
+                .andAnswer(new IAnswer<Record>() {
+                    @Override
+                    public Record answer() throws InterruptedException {
+                        release.await();
+                        return binRecord(1);
+                    }
+                }).once();
+        EasyMock.expect(aerospikeClient.get(EasyMock.<Policy>isNull(), EasyMock.eq(new Key("namespace", "set", "key2"))))
+                .andReturn(null).once();
+        PowerMock.replay(aerospikeClient);
+
+        final ReadThroughAerospikeCache<String, String> cache = new ReadThroughAerospikeCache<>(new BinValueMapper(),
+                "Read Through Cache", "namespace", "set", 100);
+        cache.init(aerospikeClient);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<String>> queries = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            queries.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    return cache.query("key1");
+                }
+            }));
+        }
+        // Let every thread miss and wait on the first read, before it completes
+        Thread.sleep(200);
+        release.countDown();
+        for (Future<String> query : queries) {
+            Assert.assertEquals(query.get(5, TimeUnit.SECONDS), "1");
+        }
+        executor.shutdown();
+
+        // Absent records are remembered too
+        Assert.assertNull(cache.query("key2"));
+        Assert.assertNull(cache.query("key2"));
+        Assert.assertEquals(cache.query("key1"), "1");
+        Assert.assertEquals(cache.getSize(), 2);
+        PowerMock.verify(aerospikeClient);
+    }
+
+    @Test
+    public void testReadThroughInvalidationAndErrorsOfReadsInProgress() throws Exception {
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        AerospikeClient aerospikeClient = PowerMock.createPartialMock(AerospikeClient.class, "get");
+        EasyMock.expect(aerospikeClient.get(EasyMock.<Policy>isNull(), EasyMock.eq(new Key("namespace", "set", "key1"))))
+                .andAnswer(new IAnswer<Record>() {
+                    @Override
+                    public Record answer() throws InterruptedException {
+                        started.countDown();
+                        release.await();
+                        return binRecord(1);
+                    }
+                }).once()
+                .andReturn(binRecord(2)).once();
+        EasyMock.expect(aerospikeClient.get(EasyMock.<Policy>isNull(), EasyMock.eq(new Key("namespace", "set", "key2"))))
+                .andAnswer(new IAnswer<Record>() {
+                    @Override
+                    public Record answer() throws InterruptedException {
+                        release.await();
+                        throw new AssertionError("Broken client");
+                    }
+                }).once();
+        PowerMock.replay(aerospikeClient);
+
+        final ReadThroughAerospikeCache<String, String> cache = new ReadThroughAerospikeCache<>(new BinValueMapper(),
+                "Read Through Cache", "namespace", "set", 100);
+        cache.init(aerospikeClient);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        Future<String> invalidated = executor.submit(new Callable<String>() {
+            @Override
+            public String call() {
+                return cache.query("key1");
+            }
+        });
+        List<Future<String>> failing = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            failing.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    return cache.query("key2");
+                }
+            }));
+        }
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        cache.invalidate("key1");
+        // Let the second query of key2 wait on the first read, before it fails
+        Thread.sleep(200);
+        release.countDown();
+
+        Assert.assertEquals(invalidated.get(5, TimeUnit.SECONDS), "1");
+        for (Future<String> query : failing) {
+            try {
+                query.get(5, TimeUnit.SECONDS);
+                Assert.fail("Read of key2 should fail");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof AssertionError);
+            }
+        }
+        executor.shutdown();
+
+        // The record read before invalidation is not kept
+        Assert.assertEquals(cache.getSize(), 0);
+        Assert.assertEquals(cache.query("key1"), "2");
+        PowerMock.verify(aerospikeClient);
+    }
+
+    @Test
+    public void testReadThroughBatchAndEviction() throws BlueWhaleCacheInitializationException {
+
+        AerospikeClient aerospikeClient = PowerMock.createPartialMock(AerospikeClient.class, "get");
+        Key[] batch = {new Key("namespace", "set", "key2"), new Key("namespace", "set", "key3")};
+        EasyMock.expect(aerospikeClient.get(EasyMock.<Policy>isNull(), EasyMock.eq(new Key("namespace", "set", "key1"))))
+                .andReturn(binRecord(1)).once();
+        EasyMock.expect(aerospikeClient.get(EasyMock.<BatchPolicy>isNull(), EasyMock.aryEq(batch)))
+                .andReturn(new Record[]{binRecord(2), null}).once();
+        PowerMock.replay(aerospikeClient);
+
+        ReadThroughAerospikeCache<String, String> cache = new ReadThroughAerospikeCache<>(new BinValueMapper(),
+                "Read Through Cache", "namespace", "set", 1000);
+        cache.init(aerospikeClient);
+
+        Assert.assertEquals(cache.query("key1"), "1");
+        Map<String, String> values = cache.queryAll(Arrays.asList("key1", "key2", "key3"));
+        Assert.assertEquals(values.size(), 2);
+        Assert.assertEquals(values.get("key1"), "1");
+        Assert.assertEquals(values.get("key2"), "2");
+        Assert.assertEquals(cache.query("key2"), "2");
+        Assert.assertNull(cache.query("key3"));
+        Assert.assertEquals(cache.getMetrics().getMissCount(), 3);
+        PowerMock.verify(aerospikeClient);
+
+        StripedLruMap<Integer, Integer> lru = new StripedLruMap<>(4, 1);
+        for (int i = 0; i < 4; i++) {
+            lru.put(i, i);
+        }
+        lru.get(0);
+        lru.put(4, 4);
+        Assert.assertEquals(lru.size(), 4);
+        Assert.assertEquals(lru.get(0), Integer.valueOf(0));
+        Assert.assertNull(lru.get(1));
+    }
+
+    private static Record binRecord(int value) {
+        Map<String, Object> bins = new HashMap<>();
+        bins.put("bin", value);
+        return new Record(bins, 1, 1);
+    }
+
+    private static class BinValueMapper implements AerospikeValueMapper<String> {
+
+        @Override
+        public String toValue(Record record) {
+            return record.getValue("bin").toString();
+        }
+    }
+
+    /**
+     * Hands records of keys in [from, to) to the scan callback.
+     */
+    private static class ScanAnswer implements IAnswer<Object> {
+
+        private final String namespace;
+        private final String set;
+        private final int from;
+        private final int to;
+
+        private ScanAnswer(String namespace, String set, int from, int to) {
+            this.namespace = namespace;
+            this.set = set;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Object answer() {
+            ScanCallback callback = (ScanCallback) EasyMock.getCurrentArguments()[4];
+            for (int i = from; i < to; i++) {
+                Map<String, Object> bins = new HashMap<>();
+                bins.put("bin", i);
+                callback.scanCallback(new Key(namespace, set, "key" + i), new Record(bins, 1, 1));
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Puts a single entry holding the number of the load, and blocks every load but the first
+     * till released.
+     */
+    private static class GenerationLoaderDelegate implements AerospikeLoaderDelegate {
+
+        private final AtomicInteger generation = new AtomicInteger();
+        private final CountDownLatch loading = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <K, V> void addEntry(RecordSet recordSet, Map<K, V> entries) {
+            int current = generation.incrementAndGet();
+            entries.put((K) "key", (V) ("generation" + current));
+            if (current > 1) {
+                loading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
     private class TestLoaderDelegate implements AerospikeLoaderDelegate {
 
         @Override
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr;
+
+import com.zapr.bluewhale.cache.primitive.LongObjectCache;
+import com.zapr.bluewhale.cache.primitive.LongObjectLoaderDelegate;
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+import com.zapr.bluewhale.map.LongObjectSink;
+import com.zapr.bluewhale.metrics.CacheMetrics;
+import com.zapr.bluewhale.metrics.CacheMetricsListener;
+import com.zapr.bluewhale.metrics.Log2Histogram;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CacheMetricsTest {
+
+    @Test
+    public void testQueryAndLoadMetrics() throws BlueWhaleCacheException {
+        final List<Long> loadedRows = new ArrayList<>();
+        final List<Throwable> failures = new ArrayList<>();
+        LongObjectCache<String, Integer> cache = new LongObjectCache<>(new LongObjectLoaderDelegate<String, Integer>() {
+            @Override
+            public void addEntries(Integer source, LongObjectSink<String> sink) throws BlueWhaleCacheException {
+                if (source < 0) {
+                    throw new BlueWhaleCacheException("Source unavailable");
+                }
+                for (long id = 0; id < source; id++) {
+                    sink.put(id, "value" + id);
+                }
+            }
+        }, "metered_cache", true, 60);
+        cache.setMetricsListener(new CacheMetricsListener() {
+            @Override
+            public void onLoad(String cacheName, CacheMetrics metrics, boolean refresh,
+                               long durationNanos, long rows) {
+                Assert.assertEquals(cacheName, "metered_cache");
+                loadedRows.add(rows);
+            }
+
+            @Override
+            public void onLoadFailure(String cacheName, CacheMetrics metrics, Throwable cause) {
+                failures.add(cause);
+            }
+        });
+
+        CacheMetrics metrics = cache.getMetrics();
+        Assert.assertEquals(metrics.getLastSuccessAgeMillis(), -1L);
+
+        cache.init(100);
+        for (long id = 0; id < 150; id++) {
+            cache.query(id);
+        }
+        cache.query(Long.valueOf(1));
+
+        Assert.assertEquals(metrics.getQueryCount(), 151);
+        Assert.assertEquals(metrics.getHitCount(), 101);
+        Assert.assertEquals(metrics.getMissCount(), 50);
+        Assert.assertEquals(metrics.getHitRatio(), 101.0 / 151, 1e-9);
+        Assert.assertTrue(metrics.getLastSuccessAgeMillis() >= 0);
+        Assert.assertTrue(metrics.getEstimatedRetainedBytes() > 100 * 48);
+
+        cache.refresh(200);
+        try {
+            cache.refresh(-1);
+            Assert.fail("Refresh from an unavailable source must fail");
+        } catch (BlueWhaleCacheException e) {
+            // Expected
+        }
+
+        Assert.assertEquals(loadedRows.size(), 2);
+        Assert.assertEquals(loadedRows.get(1).longValue(), 200L);
+        Assert.assertEquals(failures.size(), 1);
+        Assert.assertEquals(metrics.getLoadCount(), 2);
+        Assert.assertEquals(metrics.getLoadFailureCount(), 1);
+        Assert.assertEquals(metrics.getLoadDurations().getCount(), 1);
+        Assert.assertEquals(metrics.getRefreshDurations().getCount(), 1);
+        Assert.assertEquals(metrics.getLoadedRows().getSum(), 300);
+        // Failed refresh leaves the cache as it was
+        Assert.assertEquals(cache.getSize(), 200);
+    }
+
+    @Test
+    public void testLog2Histogram() {
+        Log2Histogram histogram = new Log2Histogram();
+        Assert.assertEquals(histogram.getValueAtPercentile(99), 0L);
+
+        for (int value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+        histogram.record(-5);
+
+        Assert.assertEquals(histogram.getCount(), 1001);
+        Assert.assertEquals(histogram.getSum(), 500500);
+        Assert.assertEquals(histogram.getMax(), 1000);
+        Assert.assertEquals(histogram.getBucketCounts()[0], 1);
+        // Median 500 lies in [256, 512)
+        Assert.assertEquals(histogram.getValueAtPercentile(50), 511L);
+        Assert.assertEquals(histogram.getValueAtPercentile(100), 1000L);
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr;
+
+import com.zapr.bluewhale.cache.CacheSnapshot;
+import com.zapr.bluewhale.cache.FixedSourceProvider;
+import com.zapr.bluewhale.cache.SourceProvider;
+import com.zapr.bluewhale.cache.composite.CompositeBlueWhaleCache;
+import com.zapr.bluewhale.cache.primitive.LongObjectCache;
+import com.zapr.bluewhale.cache.primitive.LongObjectLoaderDelegate;
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+import com.zapr.bluewhale.exception.BlueWhaleCacheUpdationException;
+import com.zapr.bluewhale.map.LongObjectSink;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CompositeCacheTest {
+
+    @Test
+    public void testMembersSwapTogether() throws BlueWhaleCacheException {
+        final AtomicInteger version = new AtomicInteger(1);
+        SourceProvider<Integer> versions = new SourceProvider<Integer>() {
+            @Override
+            public Integer acquire() {
+                return version.get();
+            }
+
+            @Override
+            public void release(Integer source) {
+            }
+        };
+
+        CompositeBlueWhaleCache composite = new CompositeBlueWhaleCache("campaigns", 60);
+        CompositeBlueWhaleCache.Member<Long, String, Integer> names =
+                composite.add(versionedCache("names", "name"), versions);
+        CompositeBlueWhaleCache.Member<Long, String, Integer> budgets =
+                composite.add(versionedCache("budgets", "budget"), versions);
+
+        Assert.assertEquals(composite.generation().getNumber(), 0L);
+        composite.init();
+        Assert.assertTrue(composite.isCacheInitialized());
+        Assert.assertEquals(composite.getSize(), 2);
+
+        CompositeBlueWhaleCache.Generation first = composite.generation();
+        Assert.assertEquals(first.getNumber(), 1L);
+        Assert.assertEquals(first.query(names, 5L), "name1-5");
+        Assert.assertEquals(first.query(budgets, 5L), "budget1-5");
+        Assert.assertEquals(composite.query("budgets").size(), 100);
+
+        version.set(2);
+        composite.refresh();
+        CompositeBlueWhaleCache.Generation second = composite.generation();
+        Assert.assertEquals(second.getNumber(), 2L);
+        Assert.assertEquals(second.query(names, 5L), "name2-5");
+        Assert.assertEquals(second.query(budgets, 5L), "budget2-5");
+        // A pinned generation keeps reading the entries it was published with
+        Assert.assertEquals(first.query(names, 5L), "name1-5");
+
+        // A failing member keeps every member on the current generation
+        version.set(-1);
+        try {
+            composite.refresh();
+            Assert.fail("Refresh should fail when a member fails");
+        } catch (BlueWhaleCacheUpdationException e) {
+            // expected
+        }
+        Assert.assertSame(composite.generation(), second);
+        Assert.assertEquals(composite.generation().query(budgets, 5L), "budget2-5");
+    }
+
+    @Test
+    public void testFailedLoadWaitsForOtherMembers() throws BlueWhaleCacheException {
+        final AtomicInteger version = new AtomicInteger(1);
+        final AtomicBoolean slowLoadRunning = new AtomicBoolean(false);
+        SourceProvider<Integer> versions = new SourceProvider<Integer>() {
+            @Override
+            public Integer acquire() {
+                return version.get();
+            }
+
+            @Override
+            public void release(Integer source) {
+            }
+        };
+        // Loads slowly, ignoring interrupts as most loaders do
+        LongObjectCache<String, Integer> slow = new LongObjectCache<>(new LongObjectLoaderDelegate<String, Integer>() {
+            @Override
+            public void addEntries(Integer source, LongObjectSink<String> sink) {
+                slowLoadRunning.set(true);
+                long end = System.currentTimeMillis() + 500;
+                while (System.currentTimeMillis() < end) {
+                    Thread.yield();
+                }
+                sink.put(1L, "slow" + source);
+                slowLoadRunning.set(false);
+            }
+        }, "slow", true, 60);
+
+        CompositeBlueWhaleCache composite = new CompositeBlueWhaleCache("slow_and_broken", 60);
+        composite.add(slow, versions);
+        composite.add(versionedCache("broken", "broken"), versions);
+        composite.init();
+
+        version.set(-1);
+        try {
+            composite.refresh();
+            Assert.fail("Refresh should fail when a member fails");
+        } catch (BlueWhaleCacheUpdationException e) {
+            // expected
+        }
+        Assert.assertFalse(slowLoadRunning.get(), "Refresh returned while a member was still loading");
+        Assert.assertEquals(composite.generation().getNumber(), 1L);
+        // The member which loaded has published in its own cache, unlike the composite
+        Assert.assertEquals(slow.query(1L), "slow-1");
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testAddAfterInit() throws BlueWhaleCacheException {
+        CompositeBlueWhaleCache composite = new CompositeBlueWhaleCache("late", 0);
+        composite.add(versionedCache("first", "first"), new FixedSourceProvider<>(1));
+        composite.init();
+        composite.add(versionedCache("second", "second"), new FixedSourceProvider<>(1));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testForeignMember() throws BlueWhaleCacheException {
+        CompositeBlueWhaleCache one = new CompositeBlueWhaleCache("one", 0);
+        CompositeBlueWhaleCache other = new CompositeBlueWhaleCache("other", 0);
+        one.add(versionedCache("first", "first"), new FixedSourceProvider<>(1));
+        CompositeBlueWhaleCache.Member<Long, String, Integer> foreign =
+                other.add(versionedCache("first", "first"), new FixedSourceProvider<>(1));
+        one.init();
+        CacheSnapshot<Long, String> snapshot = one.generation().get(foreign);
+        Assert.fail("Looked up a member of another composite: " + snapshot);
+    }
+
+    private static LongObjectCache<String, Integer> versionedCache(String name, final String prefix) {
+        return new LongObjectCache<>(new LongObjectLoaderDelegate<String, Integer>() {
+            @Override
+            public void addEntries(Integer version, LongObjectSink<String> sink) {
+                if (version < 0) {
+                    throw new IllegalStateException("Source of version " + version + " is broken");
+                }
+                for (long id = 0; id < 100; id++) {
+                    sink.put(id, prefix + version + "-" + id);
+                }
+            }
+        }, name, true, 60);
+    }
+}
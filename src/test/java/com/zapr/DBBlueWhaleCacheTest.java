@@ -0,0 +1,414 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr;
+
+import com.zapr.bluewhale.cache.CacheSink;
+import com.zapr.bluewhale.cache.CacheSnapshot;
+import com.zapr.bluewhale.cache.CacheSnapshotFile;
+import com.zapr.bluewhale.cache.IndexExtractor;
+import com.zapr.bluewhale.cache.sqlDB.DBBlueWhaleCache;
+import com.zapr.bluewhale.cache.sqlDB.DBDeltaLoaderDelegate;
+import com.zapr.bluewhale.cache.sqlDB.DBLoaderDelegate;
+import com.zapr.bluewhale.cache.sqlDB.DBLoaderDelegateAdapter;
+import com.zapr.bluewhale.cache.sqlDB.DBRowMapper;
+import com.zapr.bluewhale.cache.sqlDB.KeyRangePartitionScheme;
+import com.zapr.bluewhale.cache.sqlDB.ModuloPartitionScheme;
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+import com.zapr.bluewhale.map.PersistentHashMap;
+import com.zapr.bluewhale.serializer.Serializers;
+
+import org.easymock.EasyMock;
+import org.h2.jdbcx.JdbcDataSource;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DBBlueWhaleCacheTest {
+
+    private static final String DELTA_QUERY =
+            "SELECT id, name, deleted FROM candidate WHERE updated_at > ?";
+
+    private static final String DB_URL = "jdbc:h2:mem:bluewhale;DB_CLOSE_DELAY=-1";
+
+    private Connection connection;
+
+    @BeforeMethod
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection(DB_URL);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE candidate (id INT PRIMARY KEY, name VARCHAR(64), " +
+                    "deleted BOOLEAN, updated_at TIMESTAMP)");
+        }
+        long anHourAgo = System.currentTimeMillis() - 3600 * 1000L;
+        upsert(1, "Sunita", false, anHourAgo);
+        upsert(2, "Jaya", false, anHourAgo);
+        upsert(3, "Mamata", false, anHourAgo);
+    }
+
+    @AfterMethod
+    public void tearDown() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    @Test
+    public void testDeltaRefreshAppliesUpdatesAndDeletes() throws BlueWhaleCacheException, SQLException {
+        DBBlueWhaleCache<Integer, String> cache = new DBBlueWhaleCache<>(new CandidateDeltaDelegate(),
+                "candidates", DELTA_QUERY, 60);
+        cache.init(connection);
+        Assert.assertTrue(cache.isDeltaRefreshed());
+        Assert.assertEquals(cache.getSize(), 3);
+        Map<Integer, String> beforeRefresh = cache.getAll();
+
+        long anHourLater = System.currentTimeMillis() + 3600 * 1000L;
+        upsert(1, "Sunita Devi", false, anHourLater);
+        upsert(2, "Jaya", true, anHourLater);
+        upsert(4, "Indira", false, anHourLater);
+        cache.refresh(connection);
+
+        Assert.assertEquals(cache.getSize(), 3);
+        Assert.assertEquals(cache.query(1), "Sunita Devi");
+        Assert.assertNull(cache.query(2));
+        Assert.assertEquals(cache.query(3), "Mamata");
+        Assert.assertEquals(cache.query(4), "Indira");
+
+        // Readers holding the older entries are not affected by the refresh
+        Assert.assertEquals(beforeRefresh.size(), 3);
+        Assert.assertEquals(beforeRefresh.get(1), "Sunita");
+        Assert.assertEquals(beforeRefresh.get(2), "Jaya");
+    }
+
+    @Test
+    public void testIndexesFollowDeltaRefresh() throws BlueWhaleCacheException, SQLException {
+        DBBlueWhaleCache<Integer, String> cache = new DBBlueWhaleCache<>(new CandidateDeltaDelegate(),
+                "candidates", DELTA_QUERY, 60);
+        cache.addIndex("initial", new IndexExtractor<String, Character>() {
+            @Override
+            public Character extract(String name) {
+                return name.charAt(0);
+            }
+        });
+        cache.init(connection);
+        Assert.assertEquals(new HashSet<>(cache.queryBy("initial", 'S')), Collections.singleton("Sunita"));
+        Assert.assertEquals(new HashSet<>(cache.queryBy("initial", 'J')), Collections.singleton("Jaya"));
+        Assert.assertTrue(cache.queryBy("initial", 'I').isEmpty());
+
+        // Index added to a loaded cache is built over its current entries
+        cache.addIndex("long", new IndexExtractor<String, Boolean>() {
+            @Override
+            public Boolean extract(String name) {
+                return name.length() > 5 ? Boolean.TRUE : null;
+            }
+        });
+        Assert.assertEquals(new HashSet<>(cache.queryBy("long", true)),
+                new HashSet<>(Arrays.asList("Sunita", "Mamata")));
+        CacheSnapshot<Integer, String> beforeRefresh = cache.snapshot();
+
+        long anHourLater = System.currentTimeMillis() + 3600 * 1000L;
+        upsert(1, "Sunita Devi", false, anHourLater);
+        upsert(2, "Jaya", true, anHourLater);
+        upsert(3, "Mamta", false, anHourLater);
+        upsert(4, "Indira", false, anHourLater);
+        upsert(5, "Sushma", false, anHourLater);
+        cache.refresh(connection);
+
+        Assert.assertEquals(new HashSet<>(cache.queryBy("initial", 'S')),
+                new HashSet<>(Arrays.asList("Sunita Devi", "Sushma")));
+        Assert.assertTrue(cache.queryBy("initial", 'J').isEmpty());
+        Assert.assertEquals(new HashSet<>(cache.queryBy("initial", 'M')), Collections.singleton("Mamta"));
+        Assert.assertEquals(new HashSet<>(cache.queryBy("initial", 'I')), Collections.singleton("Indira"));
+        Assert.assertEquals(new HashSet<>(cache.queryBy("long", true)),
+                new HashSet<>(Arrays.asList("Sunita Devi", "Indira", "Sushma")));
+        Assert.assertEquals(cache.snapshot().getIndex("initial").size(), 3);
+
+        // Indexes of a pinned snapshot agree with its entries
+        Assert.assertEquals(new HashSet<>(beforeRefresh.queryBy("initial", 'J')), Collections.singleton("Jaya"));
+        Assert.assertEquals(new HashSet<>(beforeRefresh.queryBy("long", true)),
+                new HashSet<>(Arrays.asList("Sunita", "Mamata")));
+        try {
+            cache.queryBy("surname", "Devi");
+            Assert.fail("Unknown index must be rejected");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testRowMapperAndLegacyAdapter() throws BlueWhaleCacheException, SQLException {
+        DBBlueWhaleCache<Integer, String> cache = new DBBlueWhaleCache<>(new DBRowMapper<Integer, String>() {
+            @Override
+            public void mapRow(ResultSet rs, CacheSink<Integer, String> sink) throws SQLException {
+                if (rs.getBoolean("deleted")) {
+                    sink.remove(rs.getInt("id"));
+                } else {
+                    sink.put(rs.getInt("id"), rs.getString("name"));
+                }
+            }
+        }, "candidates", DELTA_QUERY, true, 60);
+        cache.init(connection);
+        Assert.assertEquals(cache.getSize(), 3);
+
+        long anHourLater = System.currentTimeMillis() + 3600 * 1000L;
+        upsert(2, "Jaya", true, anHourLater);
+        upsert(4, "Indira", false, anHourLater);
+        cache.refresh(connection);
+        Assert.assertEquals(cache.getSize(), 3);
+        Assert.assertNull(cache.query(2));
+        Assert.assertEquals(cache.query(4), "Indira");
+        // Refresh counts the two rows it applied, not the size of the cache
+        Assert.assertEquals(cache.getMetrics().getLoadedRows().getSum(), 3 + 2);
+
+        // Delegates filling a HashMap work with sinks of any other structure too
+        PersistentHashMap.Editor<Integer, String> editor = PersistentHashMap.<Integer, String>empty().edit();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, name FROM candidate")) {
+            new DBLoaderDelegateAdapter<Integer, String>(new CandidateLoaderDelegate()).addEntries(rs, editor);
+        }
+        PersistentHashMap<Integer, String> entries = editor.persistent();
+        Assert.assertEquals(entries.size(), 4);
+        Assert.assertEquals(entries.get(1), "Sunita");
+    }
+
+    @Test
+    public void testSizeHints() throws BlueWhaleCacheException, SQLException {
+        DBBlueWhaleCache<Integer, String> cache = new DBBlueWhaleCache<>(new CandidateLoaderDelegate(),
+                "candidates", "SELECT id, name FROM candidate WHERE updated_at > ?", true, 60);
+        cache.setSizeHintQuery("SELECT COUNT(*) FROM candidate");
+        cache.setLoadFactor(0.5f);
+        cache.init(connection);
+        Assert.assertEquals(cache.getSize(), 3);
+
+        // A broken hint only costs the pre-sizing, not the load, and partitioned loads don't run it
+        DBBlueWhaleCache<Integer, String> unhinted = new DBBlueWhaleCache<>(new CandidateLoaderDelegate(),
+                "candidates", "SELECT id, name FROM candidate WHERE updated_at > ?", true, 60);
+        unhinted.setSizeHintQuery("SELECT COUNT(*) FROM no_such_table");
+        unhinted.init(dataSource(), "SELECT id, name FROM candidate WHERE updated_at > ? AND MOD(ABS(id), ?) = ?",
+                new ModuloPartitionScheme(2), 2);
+        Assert.assertEquals(unhinted.getSize(), 3);
+
+        try {
+            cache.setLoadFactor(1.5f);
+            Assert.fail("Load factor must be below 1");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        Assert.assertEquals(cache.getLoadFactor(), 0.5f);
+    }
+
+    @Test
+    public void testPartitionedInit() throws BlueWhaleCacheException, SQLException {
+        long anHourAgo = System.currentTimeMillis() - 3600 * 1000L;
+        for (int id = 4; id <= 100; id++) {
+            upsert(id, "candidate" + id, false, anHourAgo);
+        }
+
+        DBBlueWhaleCache<Integer, String> cache = new DBBlueWhaleCache<>(new CandidateLoaderDelegate(),
+                "candidates", "SELECT id, name FROM candidate WHERE updated_at > ?", true, 60);
+        cache.init(dataSource(), "SELECT id, name FROM candidate WHERE updated_at > ? AND MOD(ABS(id), ?) = ?",
+                new ModuloPartitionScheme(4), 2);
+
+        Assert.assertTrue(cache.isCacheInitialized());
+        Assert.assertEquals(cache.getSize(), 100);
+        Assert.assertEquals(cache.query(1), "Sunita");
+        Assert.assertEquals(cache.query(100), "candidate100");
+    }
+
+    @Test
+    public void testEvenlySplitNearLongLimits() {
+        KeyRangePartitionScheme scheme = KeyRangePartitionScheme.evenlySplit(Long.MIN_VALUE, Long.MAX_VALUE - 1, 4);
+        Assert.assertEquals(scheme.getPartitionCount(), 4);
+
+        scheme = KeyRangePartitionScheme.evenlySplit(Long.MAX_VALUE - 3, Long.MAX_VALUE - 1, 5);
+        Assert.assertEquals(scheme.getPartitionCount(), 3);
+
+        try {
+            KeyRangePartitionScheme.evenlySplit(0, Long.MAX_VALUE, 4);
+            Assert.fail("Exclusive upper boundary of Long.MAX_VALUE overflows");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testPartitionedInitOfDeltaRefreshedCache() throws BlueWhaleCacheException, SQLException {
+        DBBlueWhaleCache<Integer, String> cache = new DBBlueWhaleCache<>(new CandidateDeltaDelegate(),
+                "candidates", DELTA_QUERY, 60);
+        cache.init(dataSource(), DELTA_QUERY + " AND id >= ? AND id < ?",
+                KeyRangePartitionScheme.evenlySplit(1, 3, 3), 3);
+        Assert.assertEquals(cache.getSize(), 3);
+
+        upsert(2, "Jaya Lalitha", false, System.currentTimeMillis() + 3600 * 1000L);
+        cache.refresh(connection);
+
+        Assert.assertEquals(cache.getSize(), 3);
+        Assert.assertEquals(cache.query(2), "Jaya Lalitha");
+    }
+
+    @Test
+    public void testSnapshotOutlivesRefresh() throws BlueWhaleCacheException, SQLException {
+        DBBlueWhaleCache<Integer, String> cache = new DBBlueWhaleCache<>(new CandidateLoaderDelegate(),
+                "candidates", "SELECT id, name FROM candidate WHERE updated_at > ?", true, 60);
+        cache.init(connection);
+        CacheSnapshot<Integer, String> snapshot = cache.snapshot();
+
+        upsert(1, "Sunita W", false, System.currentTimeMillis() + 3600 * 1000L);
+        cache.refresh(connection);
+
+        Assert.assertEquals(cache.query(1), "Sunita W");
+        Assert.assertEquals(snapshot.get(1), "Sunita");
+        Assert.assertEquals(cache.snapshot().getVersion(), snapshot.getVersion() + 1);
+        try {
+            cache.getAll().put(4, "Medha");
+            Assert.fail("Entries must not be modifiable through getAll");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+        Assert.assertEquals(cache.getSize(), 3);
+    }
+
+    @Test
+    public void testLoadWithFetchSizeAndQueryTimeout() throws BlueWhaleCacheException {
+        DBBlueWhaleCache<Integer, String> cache = new DBBlueWhaleCache<>(new CandidateLoaderDelegate(),
+                "candidates", "SELECT id, name FROM candidate", false, 0);
+        cache.setFetchSize(2);
+        cache.setQueryTimeout(10);
+        cache.init(connection);
+
+        Assert.assertEquals(cache.getSize(), 3);
+        Assert.assertEquals(cache.query(3), "Mamata");
+    }
+
+    @Test
+    public void testStreamingLoadStatement() throws BlueWhaleCacheException, SQLException {
+        Connection mockConnection = EasyMock.createMock(Connection.class);
+        Statement stmt = EasyMock.createMock(Statement.class);
+        ResultSet rs = EasyMock.createMock(ResultSet.class);
+
+        EasyMock.expect(mockConnection.createStatement(ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY)).andReturn(stmt);
+        stmt.setFetchSize(Integer.MIN_VALUE);
+        stmt.setQueryTimeout(30);
+        EasyMock.expect(stmt.executeQuery("SELECT id, name FROM candidate")).andReturn(rs);
+        EasyMock.expect(rs.next()).andReturn(false);
+        rs.close();
+        stmt.close();
+        EasyMock.replay(mockConnection, stmt, rs);
+
+        DBBlueWhaleCache<Integer, String> cache = new DBBlueWhaleCache<>(new CandidateLoaderDelegate(),
+                "candidates", "SELECT id, name FROM candidate", false, 0);
+        cache.enableStreaming();
+        cache.setQueryTimeout(30);
+        cache.init(mockConnection);
+
+        EasyMock.verify(mockConnection, stmt, rs);
+        Assert.assertEquals(cache.getSize(), 0);
+    }
+
+    @Test
+    public void testWarmRestartFromSnapshotFile() throws BlueWhaleCacheException, SQLException, IOException {
+        File file = File.createTempFile("bluewhale", ".snapshot");
+        file.deleteOnExit();
+        CacheSnapshotFile<Integer, String> snapshotFile = new CacheSnapshotFile<>(file,
+                Serializers.INTEGER, Serializers.STRING, 3600 * 1000L);
+
+        DBBlueWhaleCache<Integer, String> cache = new DBBlueWhaleCache<>(new CandidateDeltaDelegate(),
+                "candidates", DELTA_QUERY, 60);
+        cache.setSnapshotFile(snapshotFile);
+        cache.init(connection);
+        Assert.assertTrue(snapshotFile.isFresh());
+
+        upsert(3, "Mamata B", false, System.currentTimeMillis() + 3600 * 1000L);
+
+        CandidateDeltaDelegate restartedDelegate = new CandidateDeltaDelegate();
+        DBBlueWhaleCache<Integer, String> restarted = new DBBlueWhaleCache<>(restartedDelegate,
+                "candidates", DELTA_QUERY, 60);
+        restarted.setSnapshotFile(snapshotFile);
+        restarted.init(connection);
+
+        // Only the row changed after the snapshot is read from DB
+        Assert.assertEquals(restartedDelegate.rows.get(), 1);
+        Assert.assertEquals(restarted.getSize(), 3);
+        Assert.assertEquals(restarted.query(1), "Sunita");
+        Assert.assertEquals(restarted.query(3), "Mamata B");
+    }
+
+    private JdbcDataSource dataSource() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL(DB_URL);
+        return dataSource;
+    }
+
+    private void upsert(int id, String name, boolean deleted, long updatedAt) throws SQLException {
+        try (PreparedStatement pstmt = connection.prepareStatement(
+                "MERGE INTO candidate (id, name, deleted, updated_at) VALUES (?, ?, ?, ?)")) {
+            pstmt.setInt(1, id);
+            pstmt.setString(2, name);
+            pstmt.setBoolean(3, deleted);
+            pstmt.setTimestamp(4, new Timestamp(updatedAt));
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static class CandidateLoaderDelegate implements DBLoaderDelegate {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <K, V> void addEntry(ResultSet rs, HashMap<K, V> entries) throws SQLException {
+            while (rs.next()) {
+                entries.put((K) Integer.valueOf(rs.getInt("id")), (V) rs.getString("name"));
+            }
+        }
+    }
+
+    private static class CandidateDeltaDelegate implements DBDeltaLoaderDelegate<Integer, String> {
+
+        private final AtomicInteger rows = new AtomicInteger();
+
+        @Override
+        public void addEntries(ResultSet rs, CacheSink<Integer, String> sink) throws SQLException {
+            while (rs.next()) {
+                rows.incrementAndGet();
+                if (rs.getBoolean("deleted")) {
+                    sink.remove(rs.getInt("id"));
+                } else {
+                    sink.put(rs.getInt("id"), rs.getString("name"));
+                }
+            }
+        }
+    }
+}
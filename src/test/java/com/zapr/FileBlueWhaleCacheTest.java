@@ -0,0 +1,571 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr;
+
+import com.zapr.bluewhale.cache.CacheSink;
+import com.zapr.bluewhale.cache.CacheSnapshotFile;
+import com.zapr.bluewhale.cache.MapCacheSink;
+import com.zapr.bluewhale.cache.file.Compression;
+import com.zapr.bluewhale.cache.file.DelimitedFormat;
+import com.zapr.bluewhale.cache.file.DelimitedRecord;
+import com.zapr.bluewhale.cache.file.DelimitedRecordMapper;
+import com.zapr.bluewhale.cache.file.DirectoryBlueWhaleCache;
+import com.zapr.bluewhale.cache.file.FileBlueWhaleCache;
+import com.zapr.bluewhale.cache.file.FileLineDelegate;
+import com.zapr.bluewhale.cache.file.FileReaderDelegate;
+import com.zapr.bluewhale.cache.file.FileWatcher;
+import com.zapr.bluewhale.cache.file.MappedFileLoader;
+import com.zapr.bluewhale.cache.file.ReadAheadInputStream;
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+import com.zapr.bluewhale.serializer.Serializers;
+
+import org.apache.commons.lang.StringUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class FileBlueWhaleCacheTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Test
+    public void testParallelMappedLoad() throws IOException, BlueWhaleCacheException {
+        File file = File.createTempFile("bluewhale", ".csv");
+        file.deleteOnExit();
+        int lines = 200000;
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), UTF_8)) {
+            writer.write("id,name\n");
+            for (int i = 0; i < lines; i++) {
+                writer.write(i + ",na\u00efve_" + i + (i % 2 == 0 ? "\r\n" : "\n"));
+            }
+            // Removal of a key loaded in the first chunk, and a last line without line feed
+            writer.write("-7\n");
+            writer.write("7,\u00fcberschrieben");
+        }
+
+        FileBlueWhaleCache<Integer, String> cache = new FileBlueWhaleCache<>(new CsvLineDelegate(),
+                "mapped_cache", true, 60);
+        cache.setCharset(UTF_8);
+        cache.setParallelism(4);
+        cache.init(file);
+
+        Assert.assertEquals(cache.getSize(), lines);
+        Assert.assertEquals(cache.query(0), "na\u00efve_0");
+        Assert.assertEquals(cache.query(lines - 1), "na\u00efve_" + (lines - 1));
+        Assert.assertEquals(cache.query(7), "\u00fcberschrieben");
+
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), UTF_8)) {
+            writer.write("\n-8\n");
+        }
+        file.setLastModified(System.currentTimeMillis() + 1000);
+        cache.refresh(file);
+
+        Assert.assertEquals(cache.getSize(), lines - 1);
+        Assert.assertNull(cache.query(8));
+    }
+
+    @Test
+    public void testDelegateFailureReportedAlikeForOneAndManyChunks() throws IOException {
+        File small = File.createTempFile("bluewhale", ".csv");
+        small.deleteOnExit();
+        File large = File.createTempFile("bluewhale", ".csv");
+        large.deleteOnExit();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(small), UTF_8)) {
+            writer.write("1,one\nnot_a_number,two\n");
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(large), UTF_8)) {
+            for (int i = 0; i < 200000; i++) {
+                writer.write(i + ",value_" + i + "\n");
+            }
+            writer.write("not_a_number,two\n");
+        }
+
+        for (File file : new File[]{small, large}) {
+            MappedFileLoader<Integer, String> loader = new MappedFileLoader<>(new CsvLineDelegate(), UTF_8, 4);
+            try {
+                loader.load(file, new MapCacheSink<>(new HashMap<Integer, String>()));
+                Assert.fail("Load of " + file + " should fail");
+            } catch (BlueWhaleCacheException e) {
+                Assert.assertTrue(e.getCause() instanceof NumberFormatException, String.valueOf(e.getCause()));
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMappedLoadRejectsCharsetsWithoutAsciiLineFeeds() {
+        new MappedFileLoader<>(new CsvLineDelegate(), Charset.forName("UTF-16"), 4);
+    }
+
+    @Test
+    public void testInitFromSnapshotFile() throws IOException, BlueWhaleCacheException {
+        File file = File.createTempFile("bluewhale", ".csv");
+        file.deleteOnExit();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), UTF_8)) {
+            writer.write("1,Sunita\n2,Jaya\n");
+        }
+        file.setLastModified(System.currentTimeMillis() - 60000);
+        File snapshot = File.createTempFile("bluewhale", ".snapshot");
+        snapshot.deleteOnExit();
+        CacheSnapshotFile<Integer, String> snapshotFile = new CacheSnapshotFile<>(snapshot,
+                Serializers.INTEGER, Serializers.STRING, 3600 * 1000L);
+
+        CsvLineDelegate delegate = new CsvLineDelegate();
+        FileBlueWhaleCache<Integer, String> cache = new FileBlueWhaleCache<>(delegate, "snapshot_cache", true, 60);
+        cache.setSnapshotFile(snapshotFile);
+        cache.init(file);
+        Assert.assertEquals(delegate.lines.get(), 2);
+
+        CsvLineDelegate restartedDelegate = new CsvLineDelegate();
+        FileBlueWhaleCache<Integer, String> restarted = new FileBlueWhaleCache<>(restartedDelegate,
+                "snapshot_cache", true, 60);
+        restarted.setSnapshotFile(snapshotFile);
+        restarted.init(file);
+        Assert.assertEquals(restartedDelegate.lines.get(), 0);
+        Assert.assertEquals(restarted.getSize(), 2);
+        Assert.assertEquals(restarted.query(2), "Jaya");
+
+        // File modified after the snapshot is parsed again
+        file.setLastModified(System.currentTimeMillis() + 1000);
+        restarted.init(file);
+        Assert.assertEquals(restartedDelegate.lines.get(), 2);
+    }
+
+    @Test
+    public void testSkipsReloadOfUnchangedContent() throws IOException, BlueWhaleCacheException {
+        File file = File.createTempFile("bluewhale", ".csv");
+        file.deleteOnExit();
+        write(file, "1,Sunita\n2,Jaya\n");
+        file.setLastModified(System.currentTimeMillis() - 60000);
+
+        CsvLineDelegate delegate = new CsvLineDelegate();
+        FileBlueWhaleCache<Integer, String> cache = new FileBlueWhaleCache<>(delegate, "fingerprinted_cache", true, 60);
+        cache.setSkipUnchangedContent(true);
+        cache.init(file);
+        long version = cache.snapshot().getVersion();
+
+        // Touched, or copied over with the same bytes
+        file.setLastModified(System.currentTimeMillis() - 30000);
+        cache.refresh(file);
+        Assert.assertEquals(delegate.lines.get(), 2);
+        Assert.assertEquals(cache.snapshot().getVersion(), version);
+
+        // Same size, other bytes
+        write(file, "1,Sunita\n2,Rita\n");
+        file.setLastModified(System.currentTimeMillis() - 20000);
+        cache.refresh(file);
+        Assert.assertEquals(delegate.lines.get(), 4);
+        Assert.assertEquals(cache.query(2), "Rita");
+        Assert.assertEquals(cache.snapshot().getVersion(), version + 1);
+    }
+
+    @Test
+    public void testWatchPicksUpRenamedFile() throws IOException, BlueWhaleCacheException, InterruptedException {
+        File directory = Files.createTempDirectory("bluewhale").toFile();
+        File file = new File(directory, "candidates.csv");
+        write(file, "1,Sunita\n");
+        FileBlueWhaleCache<Integer, String> cache = new FileBlueWhaleCache<>(new CsvLineDelegate(),
+                "watched_cache", true, 60);
+        cache.init(file);
+
+        try (FileWatcher watcher = cache.watch(file, 100)) {
+            // Written next to the file and renamed over it, as deploy tools do
+            File next = new File(directory, "candidates.csv.tmp");
+            write(next, "1,Sunita Devi\n2,Jaya\n");
+            Files.move(next.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+            long deadline = System.currentTimeMillis() + 10000;
+            while (cache.getSize() != 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            Assert.assertFalse(watcher.isClosed());
+        }
+        Assert.assertEquals(cache.getSize(), 2);
+        Assert.assertEquals(cache.query(1), "Sunita Devi");
+        file.delete();
+        directory.delete();
+    }
+
+    @Test
+    public void testAppendOnlyLoadsOnlyAppendedLines() throws IOException, BlueWhaleCacheException {
+        File directory = Files.createTempDirectory("bluewhale").toFile();
+        File file = new File(directory, "events.log");
+        write(file, "1,Sunita\n2,Jaya\n3,Mam");
+
+        CsvLineDelegate delegate = new CsvLineDelegate();
+        FileBlueWhaleCache<Integer, String> cache = new FileBlueWhaleCache<>(delegate, "tailed_cache", true, 60);
+        cache.setAppendOnly(true);
+        cache.init(file);
+        // Last line is still being written
+        Assert.assertEquals(cache.getSize(), 2);
+        Assert.assertNull(cache.query(3));
+
+        append(file, "ata\n-1\n4,Indira\n");
+        cache.refresh(file);
+        Assert.assertEquals(delegate.lines.get(), 5);
+        Assert.assertEquals(cache.getSize(), 3);
+        Assert.assertNull(cache.query(1));
+        Assert.assertEquals(cache.query(3), "Mamata");
+        Assert.assertEquals(cache.query(4), "Indira");
+
+        cache.refresh(file);
+        Assert.assertEquals(delegate.lines.get(), 5);
+
+        // Rotated, the new file is loaded from its start
+        File rotated = new File(directory, "events.log.next");
+        write(rotated, "5,Sushma\n6,Medha\n7,Smriti\n8,Nirmala\n9,Brinda\n");
+        Files.move(rotated.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        cache.refresh(file);
+        Assert.assertEquals(cache.getSize(), 5);
+        Assert.assertNull(cache.query(4));
+        Assert.assertEquals(cache.query(9), "Brinda");
+
+        // Truncated and written again
+        write(file, "10,Kiran\n");
+        cache.refresh(file);
+        Assert.assertEquals(cache.getSize(), 1);
+        Assert.assertEquals(cache.query(10), "Kiran");
+        file.delete();
+        directory.delete();
+    }
+
+    @Test
+    public void testDirectoryReloadsOnlyChangedParts() throws IOException, BlueWhaleCacheException {
+        File directory = Files.createTempDirectory("bluewhale").toFile();
+        long past = System.currentTimeMillis() - 60000;
+        for (int part = 0; part < 4; part++) {
+            File file = new File(directory, String.format("part-%05d", part));
+            write(file, part + ",part" + part + "\n" + (10 + part) + ",part" + part + "\n");
+            file.setLastModified(past);
+        }
+        write(new File(directory, "_SUCCESS"), "");
+
+        CsvLineDelegate delegate = new CsvLineDelegate();
+        DirectoryBlueWhaleCache<Integer, String> cache = new DirectoryBlueWhaleCache<>(delegate,
+                "directory_cache", true, 60);
+        cache.setParallelism(2);
+        cache.init(directory);
+        Assert.assertEquals(cache.getPartNames().size(), 4);
+        Assert.assertEquals(cache.getSize(), 8);
+        Assert.assertEquals(delegate.lines.get(), 8);
+
+        cache.refresh(directory);
+        Assert.assertEquals(delegate.lines.get(), 8);
+
+        // A later part overrides keys of earlier ones, and parts which are gone are dropped
+        File changed = new File(directory, "part-00002");
+        write(changed, "2,changed\n0,overridden\n");
+        changed.setLastModified(past + 1000);
+        new File(directory, "part-00003").delete();
+        cache.refresh(directory);
+        Assert.assertEquals(delegate.lines.get(), 10);
+        Assert.assertEquals(cache.getPartNames().size(), 3);
+        Assert.assertEquals(cache.getSize(), 5);
+        Assert.assertEquals(cache.query(0), "overridden");
+        Assert.assertEquals(cache.query(2), "changed");
+        Assert.assertNull(cache.query(12));
+        Assert.assertNull(cache.query(3));
+        Assert.assertEquals(cache.query(11), "part1");
+
+        // A key no longer overridden falls back to the earlier part holding it
+        write(changed, "2,changed\n");
+        changed.setLastModified(past + 2000);
+        cache.refresh(directory);
+        Assert.assertEquals(delegate.lines.get(), 11);
+        Assert.assertEquals(cache.getSize(), 5);
+        Assert.assertEquals(cache.query(0), "part0");
+        Assert.assertEquals(cache.query(2), "changed");
+        Assert.assertEquals(cache.query(10), "part0");
+
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testLoadsCompressedFiles() throws IOException, BlueWhaleCacheException {
+        StringBuilder content = new StringBuilder("id,name\n");
+        int lines = 100000;
+        for (int i = 0; i < lines; i++) {
+            content.append(i).append(",na\u00efve_").append(i).append('\n');
+        }
+        content.append("-7\n");
+        byte[] bytes = content.toString().getBytes(UTF_8);
+
+        File gzip = File.createTempFile("bluewhale", ".csv.gz");
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(gzip))) {
+            out.write(bytes);
+        }
+        File zlib = File.createTempFile("bluewhale", ".csv.z");
+        try (OutputStream out = new DeflaterOutputStream(new FileOutputStream(zlib))) {
+            out.write(bytes);
+        }
+        File zip = File.createTempFile("bluewhale", ".zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            int half = bytes.length / 2;
+            while (bytes[half - 1] != '\n') {
+                half++;
+            }
+            out.putNextEntry(new ZipEntry("part-00000"));
+            out.write(bytes, 0, half);
+            out.putNextEntry(new ZipEntry("part-00001"));
+            out.write(bytes, half, bytes.length - half);
+        }
+        File bgzf = File.createTempFile("bluewhale", ".csv.bgz");
+        writeBgzf(bgzf, bytes);
+
+        Assert.assertEquals(Compression.detect(gzip), Compression.GZIP);
+        Assert.assertEquals(Compression.detect(zlib), Compression.NONE);
+        Assert.assertEquals(Compression.detect(zip), Compression.ZIP);
+        Assert.assertEquals(Compression.detect(bgzf), Compression.BGZF);
+        for (File file : new File[]{gzip, zlib, zip, bgzf}) {
+            FileBlueWhaleCache<Integer, String> cache = new FileBlueWhaleCache<>(new CsvLineDelegate(),
+                    "compressed_cache", true, 60);
+            cache.setCharset(UTF_8);
+            cache.setParallelism(4);
+            if (file == zlib) {
+                cache.setCompression(Compression.ZLIB);
+            }
+            cache.init(file);
+            Assert.assertEquals(cache.getSize(), lines - 1, file.getName());
+            Assert.assertNull(cache.query(7));
+            Assert.assertEquals(cache.query(lines - 1), "na\u00efve_" + (lines - 1));
+            Assert.assertEquals(cache.query(lines / 2), "na\u00efve_" + (lines / 2));
+            Assert.assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void testPlainTextWithZlibLikeHeadIsNotDecompressed() throws IOException, BlueWhaleCacheException {
+        // "HK" is 0x484b, a multiple of 31 with deflate method and no dictionary, as in a zlib header
+        File file = File.createTempFile("bluewhale", ".csv");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), UTF_8)) {
+            writer.write("HK,Hong Kong\n");
+            writer.write("IN,India\n");
+        }
+
+        Assert.assertEquals(Compression.detect(file), Compression.NONE);
+        // Through the legacy reader delegate, as caches set up before decompression was added are
+        FileBlueWhaleCache<String, String> cache = new FileBlueWhaleCache<>(new FileReaderDelegate() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> void addEntry(BufferedReader br, HashMap<K, V> entries) throws IOException {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    String[] fields = line.split(",");
+                    entries.put((K) fields[0], (V) fields[1]);
+                }
+            }
+        }, "country_cache", true, 60);
+        cache.setCharset(UTF_8);
+        cache.init(file);
+        Assert.assertEquals(cache.query("HK"), "Hong Kong");
+        Assert.assertEquals(cache.query("IN"), "India");
+        Assert.assertTrue(file.delete());
+    }
+
+    /**
+     * Writes bytes as BGZF: gzip members of at most 64KB holding their size in a BC extra field,
+     * followed by an empty member.
+     */
+    private static void writeBgzf(File file, byte[] bytes) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            for (int start = 0; start <= bytes.length; start += 60000) {
+                int length = Math.min(60000, bytes.length - start);
+                ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+                Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+                try (DeflaterOutputStream deflating = new DeflaterOutputStream(deflated, deflater)) {
+                    deflating.write(bytes, start, length);
+                }
+                deflater.end();
+                CRC32 crc = new CRC32();
+                crc.update(bytes, start, length);
+                int blockSize = 18 + deflated.size() + 8;
+                out.write(new byte[]{0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0, 'B', 'C', 2, 0,
+                        (byte) (blockSize - 1), (byte) ((blockSize - 1) >> 8)});
+                deflated.writeTo(out);
+                long value = crc.getValue();
+                out.write(new byte[]{(byte) value, (byte) (value >> 8), (byte) (value >> 16), (byte) (value >> 24),
+                        (byte) length, (byte) (length >> 8), (byte) (length >> 16), (byte) (length >> 24)});
+            }
+        }
+    }
+
+    @Test
+    public void testDelimitedRecords() throws IOException, BlueWhaleCacheException {
+        File file = File.createTempFile("bluewhale", ".csv");
+        write(file, "id,name,assets,prob\r\n" +
+                "1,Sunita,90,0.46\r\n" +
+                "2,\"Jaya, \"\"Amma\"\"\",-9223372036854775808, 1.5e3\n" +
+                "\n" +
+                "3,na\u00efve,7,-0.125\n" +
+                "-1");
+
+        DelimitedRecordMapper<Integer, String> mapper = new DelimitedRecordMapper<Integer, String>() {
+            @Override
+            public void map(DelimitedRecord record, CacheSink<Integer, String> sink) {
+                if (record.getFieldCount() == 1) {
+                    sink.remove(-record.getInt(0));
+                    return;
+                }
+                int id = record.getInt("id");
+                sink.put(id, record.getChars(1) + "|" + record.getLong("assets") + "|" + record.getDouble(3) + "|" +
+                        record.getFloat("prob"));
+            }
+        };
+        FileBlueWhaleCache<Integer, String> cache = new FileBlueWhaleCache<>(DelimitedFormat.CSV.withHeader(true),
+                mapper, "delimited_cache", true, 60);
+        cache.setCharset(UTF_8);
+        cache.init(file);
+        Assert.assertEquals(cache.getSize(), 2);
+        Assert.assertNull(cache.query(1));
+        Assert.assertEquals(cache.query(2), "Jaya, \"Amma\"|-9223372036854775808|1500.0|1500.0");
+        Assert.assertEquals(cache.query(3), "na\u00efve|7|-0.125|-0.125");
+        Assert.assertTrue(file.delete());
+    }
+
+    @Test
+    public void testDelimitedHeaderAfterBlankLines() throws IOException, BlueWhaleCacheException {
+        File file = File.createTempFile("bluewhale", ".csv");
+        write(file, "\r\n\nid,name\n1,Sunita\n");
+        FileBlueWhaleCache<Integer, String> cache = new FileBlueWhaleCache<>(DelimitedFormat.CSV.withHeader(true),
+                new DelimitedRecordMapper<Integer, String>() {
+                    @Override
+                    public void map(DelimitedRecord record, CacheSink<Integer, String> sink) {
+                        sink.put(record.getInt("id"), record.getString("name"));
+                    }
+                }, "blank_header_cache", true, 60);
+        cache.init(file);
+        Assert.assertEquals(cache.getSize(), 1);
+        Assert.assertEquals(cache.query(1), "Sunita");
+        Assert.assertTrue(file.delete());
+    }
+
+    @Test(timeOut = 10000)
+    public void testReadAheadFailureReachesReader() throws IOException {
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() {
+                throw new IllegalStateException("Corrupt block");
+            }
+        };
+        try (InputStream in = new ReadAheadInputStream(failing, 16, 2, "read-ahead-test")) {
+            in.read();
+            Assert.fail("Read past a failed read ahead");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testDelimitedRecordAccessors() throws IOException, BlueWhaleCacheException {
+        File file = File.createTempFile("bluewhale", ".tsv");
+        write(file, "7\t\"quoted\"\t\t 0.1 \t12a\t99999999999\t9223372036854775808\n");
+        final AtomicInteger checked = new AtomicInteger();
+        FileBlueWhaleCache<Integer, String> cache = new FileBlueWhaleCache<>(DelimitedFormat.TSV,
+                new DelimitedRecordMapper<Integer, String>() {
+                    @Override
+                    public void map(DelimitedRecord record, CacheSink<Integer, String> sink) {
+                        Assert.assertEquals(record.getFieldCount(), 7);
+                        Assert.assertEquals(record.getInt(0), 7);
+                        // TSV has no quotes
+                        Assert.assertEquals(record.getString(1), "\"quoted\"");
+                        Assert.assertTrue(record.isEmpty(2));
+                        Assert.assertTrue(record.isEmpty(7));
+                        Assert.assertEquals(record.getDouble(3), 0.1);
+                        Assert.assertEquals(record.getFloat(3), 0.1f);
+                        Assert.assertEquals(record.column("id"), -1);
+                        for (int column : new int[]{2, 4}) {
+                            try {
+                                record.getLong(column);
+                                Assert.fail("Parsed " + record.getString(column));
+                            } catch (NumberFormatException expected) {
+                            }
+                        }
+                        try {
+                            record.getInt(5);
+                            Assert.fail("Parsed int out of range");
+                        } catch (NumberFormatException expected) {
+                        }
+                        try {
+                            record.getLong(6);
+                            Assert.fail("Parsed long out of range");
+                        } catch (NumberFormatException expected) {
+                        }
+                        checked.incrementAndGet();
+                        sink.put(record.getInt(0), record.getString(1));
+                    }
+                }, "tsv_cache", true, 60);
+        cache.init(file);
+        Assert.assertEquals(checked.get(), 1);
+        Assert.assertEquals(cache.getSize(), 1);
+        Assert.assertTrue(file.delete());
+    }
+
+    private static void append(File file, String content) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), UTF_8)) {
+            writer.write(content);
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), UTF_8)) {
+            writer.write(content);
+        }
+    }
+
+    private static class CsvLineDelegate implements FileLineDelegate<Integer, String> {
+
+        private final AtomicInteger lines = new AtomicInteger();
+
+        @Override
+        public void addLine(String line, CacheSink<Integer, String> sink) {
+            lines.incrementAndGet();
+            if (line.startsWith("id")) {
+                return;
+            }
+            if (line.startsWith("-")) {
+                sink.remove(Integer.valueOf(line.substring(1)));
+                return;
+            }
+            String[] vals = StringUtils.split(line, ",");
+            sink.put(Integer.valueOf(vals[0]), vals[1]);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr;
+
+import com.zapr.bluewhale.cache.CacheLoaderDelegate;
+import com.zapr.bluewhale.cache.CacheSink;
+import com.zapr.bluewhale.cache.CacheSnapshot;
+import com.zapr.bluewhale.cache.offheap.OffHeapBlueWhaleCache;
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+import com.zapr.bluewhale.map.OffHeapMap;
+import com.zapr.bluewhale.serializer.Serializers;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class OffHeapCacheTest {
+
+    @Test
+    public void testOffHeapCache() throws BlueWhaleCacheException, InterruptedException {
+        OffHeapBlueWhaleCache<Integer, String, Integer> cache = new OffHeapBlueWhaleCache<>(
+                new CacheLoaderDelegate<Integer, String, Integer>() {
+                    @Override
+                    public void addEntries(Integer source, CacheSink<Integer, String> sink) {
+                        for (int id = 0; id < source; id++) {
+                            sink.put(id, "candidate \u00e9" + id);
+                        }
+                        sink.remove(0);
+                    }
+                }, Serializers.STRING, "offheap_cache", true, 60);
+        // Small segments, so that values span many of them
+        cache.setSegmentSize(4096);
+        cache.setReleaseDelayMillis(0);
+
+        cache.init(10000);
+        Assert.assertEquals(cache.getSize(), 9999);
+        Assert.assertNull(cache.query(0));
+        Assert.assertEquals(cache.query(1), "candidate \u00e91");
+        Assert.assertEquals(cache.query(9999), "candidate \u00e99999");
+        Assert.assertTrue(cache.getOffHeapBytes() > 9999 * 10);
+
+        Map<Integer, String> replaced = cache.getAll();
+        cache.refresh(10);
+        Assert.assertEquals(cache.getSize(), 9);
+        Assert.assertEquals(cache.query(9), "candidate \u00e99");
+
+        for (int i = 0; i < 50 && !((OffHeapMap<Integer, String>) replaced).isClosed(); i++) {
+            Thread.sleep(100);
+        }
+        Assert.assertTrue(((OffHeapMap<Integer, String>) replaced).isClosed());
+        cache.close();
+    }
+
+    @Test
+    public void testOffHeapKeys() throws BlueWhaleCacheException {
+        OffHeapBlueWhaleCache<Integer, String, Integer> cache = new OffHeapBlueWhaleCache<>(
+                new CacheLoaderDelegate<Integer, String, Integer>() {
+                    @Override
+                    public void addEntries(Integer source, CacheSink<Integer, String> sink) {
+                        for (int id = 0; id < source; id++) {
+                            sink.put(id, "candidate " + id);
+                        }
+                        sink.remove(0);
+                    }
+                }, Serializers.INTEGER, Serializers.STRING, "offheap_keys_cache", true, 60);
+        cache.setReleaseDelayMillis(3600 * 1000L);
+
+        cache.init(1000);
+        Assert.assertEquals(cache.getSize(), 999);
+        Assert.assertNull(cache.query(0));
+        Assert.assertEquals(cache.query(999), "candidate 999");
+        // Only the index is on heap, and segments are sized for a small cache
+        OffHeapMap<Integer, String> entries = (OffHeapMap<Integer, String>) cache.getAll();
+        Assert.assertFalse(entries.hasHeapKeys());
+        Assert.assertEquals(cache.getMetrics().getEstimatedRetainedBytes(), entries.getIndexHeapBytes());
+        Assert.assertTrue(cache.getOffHeapBytes() < OffHeapMap.DEFAULT_SEGMENT_SIZE);
+
+        CacheSnapshot<Integer, String> snapshot = cache.snapshot();
+        cache.refresh(10);
+        Assert.assertEquals(snapshot.get(999), "candidate 999");
+        Assert.assertEquals(cache.query(9), "candidate 9");
+        cache.close();
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testReadAfterCloseFails() {
+        OffHeapMap.Builder<Integer, Long> builder = OffHeapMap.builder(Serializers.INTEGER, Serializers.LONG, 0, 0L,
+                OffHeapMap.DEFAULT_SEGMENT_SIZE);
+        builder.put(1, 1L);
+        OffHeapMap<Integer, Long> map = builder.build();
+        Assert.assertEquals(map.get(1), Long.valueOf(1L));
+        map.close();
+        map.get(1);
+    }
+
+    @Test
+    public void testBuilderOverwriteAndRemove() {
+        OffHeapMap.Builder<String, Long> builder = OffHeapMap.builder(Serializers.LONG, 0, 64);
+        for (long i = 0; i < 1000; i++) {
+            builder.put("key" + (i % 100), i);
+        }
+        for (int i = 0; i < 100; i += 2) {
+            builder.remove("key" + i);
+        }
+        OffHeapMap<String, Long> map = builder.build();
+
+        Assert.assertEquals(map.size(), 50);
+        Assert.assertNull(map.get("key0"));
+        Assert.assertEquals(map.get("key1"), Long.valueOf(901));
+        Assert.assertEquals(map.get("key99"), Long.valueOf(999));
+        map.close();
+
+        OffHeapMap.Builder<String, Long> keysOffHeap = OffHeapMap.builder(Serializers.STRING, Serializers.LONG, 0,
+                0L, 64);
+        for (long i = 0; i < 1000; i++) {
+            keysOffHeap.put("key" + (i % 100), i);
+        }
+        for (int i = 0; i < 100; i += 2) {
+            keysOffHeap.remove("key" + i);
+        }
+        map = keysOffHeap.build();
+
+        Assert.assertEquals(map.size(), 50);
+        Assert.assertNull(map.get("key0"));
+        Assert.assertEquals(map.get("key1"), Long.valueOf(901));
+        Assert.assertEquals(map.get("key99"), Long.valueOf(999));
+        Assert.assertEquals(new HashMap<>(map).size(), 50);
+        map.close();
+    }
+}
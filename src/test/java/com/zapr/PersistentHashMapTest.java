@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr;
+
+import com.zapr.bluewhale.map.PersistentHashMap;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class PersistentHashMapTest {
+
+    @Test
+    public void testUpdatesLeaveOlderVersionsUnchanged() {
+        PersistentHashMap<String, Integer> first = PersistentHashMap.<String, Integer>empty().plus("a", 1);
+        PersistentHashMap<String, Integer> second = first.plus("b", 2).plus("a", 3);
+        PersistentHashMap<String, Integer> third = second.minus("a");
+
+        Assert.assertEquals(first.size(), 1);
+        Assert.assertEquals(first.get("a"), Integer.valueOf(1));
+        Assert.assertNull(first.get("b"));
+        Assert.assertEquals(second.size(), 2);
+        Assert.assertEquals(second.get("a"), Integer.valueOf(3));
+        Assert.assertEquals(third.size(), 1);
+        Assert.assertFalse(third.containsKey("a"));
+        Assert.assertEquals(third.get("b"), Integer.valueOf(2));
+    }
+
+    @Test
+    public void testRandomEditsMatchHashMap() {
+        Random random = new Random(42);
+        Map<CollidingKey, Integer> expected = new HashMap<>();
+        PersistentHashMap<CollidingKey, Integer> actual = PersistentHashMap.empty();
+
+        for (int batch = 0; batch < 20; batch++) {
+            PersistentHashMap<CollidingKey, Integer> before = actual;
+            Map<CollidingKey, Integer> expectedBefore = new HashMap<>(expected);
+
+            PersistentHashMap.Editor<CollidingKey, Integer> editor = actual.edit();
+            for (int i = 0; i < 5000; i++) {
+                CollidingKey key = new CollidingKey(random.nextInt(20000));
+                if (random.nextInt(4) == 0) {
+                    editor.remove(key);
+                    expected.remove(key);
+                } else {
+                    editor.put(key, i);
+                    expected.put(key, i);
+                }
+            }
+            actual = editor.persistent();
+
+            Assert.assertEquals(actual, expected);
+            Assert.assertEquals(before, expectedBefore);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testEditorNotUsableAfterPersistent() {
+        PersistentHashMap.Editor<String, String> editor = PersistentHashMap.<String, String>empty().edit();
+        editor.persistent();
+        editor.put("a", "b");
+    }
+
+    /**
+     * Key with only a handful of distinct hash codes, to exercise full hash collisions.
+     */
+    private static class CollidingKey {
+
+        private final int id;
+
+        CollidingKey(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return id % 3000;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof CollidingKey && ((CollidingKey) other).id == id;
+        }
+    }
+}
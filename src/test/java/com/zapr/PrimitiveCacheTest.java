@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr;
+
+import com.zapr.bluewhale.cache.primitive.IntObjectCache;
+import com.zapr.bluewhale.cache.primitive.IntObjectLoaderDelegate;
+import com.zapr.bluewhale.cache.primitive.LongObjectCache;
+import com.zapr.bluewhale.cache.primitive.LongObjectLoaderDelegate;
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+import com.zapr.bluewhale.map.IntObjectSink;
+import com.zapr.bluewhale.map.LongObjectHashMap;
+import com.zapr.bluewhale.map.LongObjectSink;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class PrimitiveCacheTest {
+
+    @Test
+    public void testLongObjectHashMapMatchesHashMap() {
+        Random random = new Random(7);
+        LongObjectHashMap<Integer> actual = new LongObjectHashMap<>();
+        Map<Long, Integer> expected = new HashMap<>();
+
+        for (int i = 0; i < 200000; i++) {
+            // Narrow key range, so that removals hit existing keys often
+            long key = random.nextInt(5000) * 1000003L;
+            if (random.nextInt(3) == 0) {
+                actual.remove(key);
+                expected.remove(key);
+            } else {
+                actual.put(key, Integer.valueOf(i));
+                expected.put(key, i);
+            }
+        }
+
+        Assert.assertEquals(actual.size(), expected.size());
+        for (long id = 0; id < 5000; id++) {
+            Assert.assertEquals(actual.get(id * 1000003L), expected.get(id * 1000003L));
+        }
+        Assert.assertEquals(actual, expected);
+    }
+
+    @Test
+    public void testLongObjectCache() throws BlueWhaleCacheException {
+        LongObjectCache<String, Integer> cache = new LongObjectCache<>(new LongObjectLoaderDelegate<String, Integer>() {
+            @Override
+            public void addEntries(Integer source, LongObjectSink<String> sink) {
+                for (long id = 0; id < source; id++) {
+                    sink.put(id, "value" + id);
+                }
+            }
+        }, "long_cache", true, 60);
+
+        Assert.assertNull(cache.query(1L));
+        cache.init(1000);
+        Assert.assertTrue(cache.isCacheInitialized());
+        Assert.assertEquals(cache.getSize(), 1000);
+        Assert.assertEquals(cache.query(999L), "value999");
+        Assert.assertEquals(cache.query(Long.valueOf(10)), "value10");
+
+        cache.refresh(10);
+        Assert.assertEquals(cache.getSize(), 10);
+        Assert.assertNull(cache.query(999L));
+    }
+
+    @Test
+    public void testIntObjectCache() throws BlueWhaleCacheException {
+        IntObjectCache<String, Integer> cache = new IntObjectCache<>(new IntObjectLoaderDelegate<String, Integer>() {
+            @Override
+            public void addEntries(Integer source, IntObjectSink<String> sink) {
+                for (int id = -source; id < source; id++) {
+                    sink.put(id, "value" + id);
+                }
+                sink.remove(0);
+            }
+        }, "int_cache", false, 0);
+
+        cache.init(100);
+        Assert.assertEquals(cache.getSize(), 199);
+        Assert.assertEquals(cache.query(-100), "value-100");
+        Assert.assertNull(cache.query(0));
+        Assert.assertEquals(cache.getAll().get(99), "value99");
+    }
+
+    @Test
+    public void testBatchQueries() throws BlueWhaleCacheException {
+        LongObjectCache<String, Integer> cache = new LongObjectCache<>(new LongObjectLoaderDelegate<String, Integer>() {
+            @Override
+            public void addEntries(Integer source, LongObjectSink<String> sink) {
+                for (long id = 0; id < source; id++) {
+                    sink.put(id, "value" + id);
+                }
+            }
+        }, "batch_cache", true, 60);
+        cache.init(100);
+
+        String[] values = new String[4];
+        Assert.assertEquals(cache.queryInto(new long[]{1, 99, 100, -1}, values), 2);
+        Assert.assertEquals(values, new String[]{"value1", "value99", null, null});
+
+        Long[] boxedKeys = {5L, 500L};
+        Assert.assertEquals(cache.queryInto(boxedKeys, values), 1);
+        Assert.assertEquals(values[0], "value5");
+        Assert.assertNull(values[1]);
+
+        Map<Long, String> found = cache.queryAll(Arrays.asList(7L, 8L, 700L));
+        Assert.assertEquals(found.size(), 2);
+        Assert.assertEquals(found.get(8L), "value8");
+
+        Assert.assertEquals(cache.getMetrics().getHitCount(), 5);
+        Assert.assertEquals(cache.getMetrics().getMissCount(), 4);
+    }
+}
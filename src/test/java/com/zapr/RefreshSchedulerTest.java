@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2017-present, Red Brick Lane Marketing Solutions Pvt. Ltd.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.zapr;
+
+import com.zapr.bluewhale.cache.FixedSourceProvider;
+import com.zapr.bluewhale.cache.RefreshableBlueWhaleCache;
+import com.zapr.bluewhale.cache.refresh.RefreshScheduler;
+import com.zapr.bluewhale.cache.refresh.ScheduledRefresh;
+import com.zapr.bluewhale.exception.BlueWhaleCacheException;
+import com.zapr.bluewhale.exception.BlueWhaleCacheUpdationException;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RefreshSchedulerTest {
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNonUpdatableCacheRejected() {
+        RefreshScheduler scheduler = new RefreshScheduler(1);
+        try {
+            scheduler.register(new CountingCache(false, 1, 0), new FixedSourceProvider<>("source"));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testRefreshRetriedAfterFailure() throws InterruptedException {
+        RefreshScheduler scheduler = new RefreshScheduler(1);
+        CountingCache cache = new CountingCache(true, 1, 1);
+
+        ScheduledRefresh<String, String, String> scheduledRefresh =
+                scheduler.register(cache, new FixedSourceProvider<>("source"));
+        try {
+            Assert.assertTrue(cache.refreshed.await(10, TimeUnit.SECONDS));
+            Assert.assertEquals(cache.attempts.get(), 2);
+        } finally {
+            scheduledRefresh.cancel();
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testRefreshRetriedAfterError() throws InterruptedException {
+        RefreshScheduler scheduler = new RefreshScheduler(1);
+        CountingCache cache = new CountingCache(true, 1, 1);
+        cache.failWithError = true;
+
+        ScheduledRefresh<String, String, String> scheduledRefresh =
+                scheduler.register(cache, new FixedSourceProvider<>("source"));
+        try {
+            Assert.assertTrue(cache.refreshed.await(10, TimeUnit.SECONDS));
+            Assert.assertEquals(cache.attempts.get(), 2);
+        } finally {
+            scheduledRefresh.cancel();
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void testCancelStopsRefresh() throws InterruptedException {
+        RefreshScheduler scheduler = new RefreshScheduler(1);
+        CountingCache cache = new CountingCache(true, 1, 0);
+
+        ScheduledRefresh<String, String, String> scheduledRefresh =
+                scheduler.register(cache, new FixedSourceProvider<>("source"));
+        scheduledRefresh.cancel();
+        Thread.sleep(1500);
+        scheduler.shutdown();
+
+        Assert.assertEquals(cache.attempts.get(), 0);
+    }
+
+    private static class CountingCache implements RefreshableBlueWhaleCache<String, String, String> {
+
+        private final boolean updatable;
+        private final int refreshInterval;
+        private final int failuresToSimulate;
+        private final AtomicInteger attempts = new AtomicInteger();
+        private final CountDownLatch refreshed = new CountDownLatch(1);
+        private volatile boolean failWithError = false;
+
+        CountingCache(boolean updatable, int refreshInterval, int failuresToSimulate) {
+            this.updatable = updatable;
+            this.refreshInterval = refreshInterval;
+            this.failuresToSimulate = failuresToSimulate;
+        }
+
+        @Override
+        public void refresh(String source) throws BlueWhaleCacheException {
+            if (attempts.incrementAndGet() <= failuresToSimulate) {
+                if (failWithError) {
+                    throw new AssertionError("Simulated error");
+                }
+                throw new BlueWhaleCacheUpdationException("Simulated failure");
+            }
+            refreshed.countDown();
+        }
+
+        @Override
+        public String getName() {
+            return "counting_cache";
+        }
+
+        @Override
+        public boolean isCacheUpdatable() {
+            return updatable;
+        }
+
+        @Override
+        public int getRefreshInterval() {
+            return refreshInterval;
+        }
+
+        @Override
+        public String query(String key) {
+            return null;
+        }
+
+        @Override
+        public void init(String source) {
+        }
+
+        @Override
+        public void unsafeUpdate(String source) {
+        }
+
+        @Override
+        public Map<String, String> getAll() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public int getSize() {
+            return 0;
+        }
+    }
+}